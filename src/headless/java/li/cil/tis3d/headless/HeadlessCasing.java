@@ -0,0 +1,93 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.block.entity.CasingBlockEntity;
+import li.cil.tis3d.common.module.ExecutionModule;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A casing of a {@link HeadlessController}, for benchmarks and the {@link Simulator}.
+ * <p>
+ * Wraps an actual casing block entity without a world. Modules must be
+ * created for {@link #getCasing()} and installed before the controller
+ * is started.
+ */
+public final class HeadlessCasing {
+    private final CasingBlockEntity blockEntity;
+
+    // --------------------------------------------------------------------- //
+
+    HeadlessCasing(final CasingBlockEntity blockEntity) {
+        this.blockEntity = blockEntity;
+    }
+
+    /**
+     * The casing to create modules for.
+     *
+     * @return the casing.
+     */
+    public Casing getCasing() {
+        return blockEntity.getCasing();
+    }
+
+    public BlockPos getPosition() {
+        return blockEntity.getPos();
+    }
+
+    /**
+     * Install a module on the specified face.
+     *
+     * @param face   the face to install the module on.
+     * @param module the module to install.
+     * @throws IllegalStateException if the controller was already started.
+     */
+    public void setModule(final Face face, final Module module) {
+        if (blockEntity.isCasingEnabled()) {
+            throw new IllegalStateException("Modules must be installed before starting the controller.");
+        }
+        blockEntity.setModule(face, module);
+    }
+
+    /**
+     * Install an execution module running the specified program on the specified face.
+     *
+     * @param face the face to install the module on.
+     * @param code the lines of the program to run.
+     * @return the installed module.
+     */
+    public ExecutionModule setProgram(final Face face, final String... code) {
+        final ExecutionModule module = new ExecutionModule(getCasing(), face);
+        try {
+            Compiler.compile(Arrays.asList(code), module.getState());
+        } catch (final ParseException e) {
+            throw new IllegalArgumentException("Invalid program: " + e.getMessage(), e);
+        }
+        setModule(face, module);
+        return module;
+    }
+
+    @Nullable
+    public Module getModule(final Face face) {
+        return blockEntity.getModule(face);
+    }
+
+    /**
+     * Get the number of values written by the module on the specified face
+     * via the specified port so far.
+     *
+     * @param face the face of the sending module.
+     * @param port the port the module sent the values on.
+     * @return the number of values written.
+     */
+    public long getTransferCount(final Face face, final Port port) {
+        return blockEntity.getTransferCount(face, port);
+    }
+}
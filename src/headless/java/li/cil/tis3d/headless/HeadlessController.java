@@ -0,0 +1,133 @@
+package li.cil.tis3d.headless;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A controller block entity without a world, stepping its {@link HeadlessCasing}s
+ * with the same code as in game, including the event driven scheduling of
+ * modules and pipes and the batching of steps.
+ * <p>
+ * The controller is at the origin. Casings placed next to each other, or
+ * next to the controller, are connected like in a world, including the
+ * pipes between their faces.
+ * <p>
+ * Effects that would need a world, such as client sync, are dropped after
+ * each step.
+ */
+public final class HeadlessController {
+    private final HeadlessMultiBlock multiBlock = new HeadlessMultiBlock(BlockPos.ORIGIN);
+    private final List<HeadlessCasing> casings = new ArrayList<>();
+    private boolean isHalted;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Create a new casing controlled by this controller. The casing is not
+     * connected to the controller or any other casing.
+     *
+     * @return the new casing.
+     */
+    public HeadlessCasing addCasing() {
+        // Leave a gap to the controller and all other casings.
+        BlockPos position = new BlockPos(2, 0, 0);
+        while (!isIsolated(position)) {
+            position = position.east(2);
+        }
+        return addCasing(position);
+    }
+
+    /**
+     * Create a new casing at the specified position, connected to the
+     * controller and casings next to it.
+     *
+     * @param position the position of the casing.
+     * @return the new casing.
+     * @throws IllegalArgumentException if the position is already taken.
+     */
+    public HeadlessCasing addCasing(final BlockPos position) {
+        final HeadlessCasing casing = new HeadlessCasing(multiBlock.addCasing(position));
+        casings.add(casing);
+        return casing;
+    }
+
+    /**
+     * Whether the controller or a casing is at the specified position.
+     *
+     * @param position the position to check.
+     * @return <tt>true</tt> if the position is taken.
+     */
+    public boolean isOccupied(final BlockPos position) {
+        return multiBlock.isOccupied(position);
+    }
+
+    /**
+     * Whether the specified casing is connected to the controller via casings
+     * next to each other, as required for a controller to find it in a world.
+     *
+     * @param casing the casing to check.
+     * @return <tt>true</tt> if the casing is connected to the controller.
+     */
+    public boolean isConnectedToController(final HeadlessCasing casing) {
+        return multiBlock.isConnectedToController(casing.getPosition());
+    }
+
+    /**
+     * Get all casings controlled by this controller, in creation order.
+     *
+     * @return the list of casings.
+     */
+    public List<HeadlessCasing> getCasings() {
+        return casings;
+    }
+
+    /**
+     * Enable all modules. Called automatically on the first step, after which
+     * no more casings or modules can be added.
+     */
+    public void start() {
+        if (!multiBlock.isStarted()) {
+            multiBlock.start();
+        }
+    }
+
+    /**
+     * Whether a step caused the controller to halt and catch fire, after
+     * which it does not step anymore.
+     *
+     * @return <tt>true</tt> if the controller halted.
+     */
+    public boolean isHalted() {
+        return isHalted;
+    }
+
+    /**
+     * Advance all casings by one step.
+     *
+     * @return <tt>false</tt> if the controller halted and caught fire.
+     */
+    public boolean step() {
+        start();
+        if (!multiBlock.step(1)) {
+            isHalted = true;
+        }
+        return !isHalted;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private boolean isIsolated(final BlockPos position) {
+        if (isOccupied(position)) {
+            return false;
+        }
+        for (final Direction direction : Direction.values()) {
+            if (isOccupied(position.offset(direction))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
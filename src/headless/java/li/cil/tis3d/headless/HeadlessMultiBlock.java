@@ -0,0 +1,287 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.common.block.entity.AbstractComputerBlockEntity;
+import li.cil.tis3d.common.block.entity.CasingBlockEntity;
+import li.cil.tis3d.common.block.entity.ControllerBlockEntity;
+import li.cil.tis3d.common.block.entity.ControllerBlockEntity.ControllerState;
+import li.cil.tis3d.common.machine.DeferredEffects;
+import li.cil.tis3d.common.machine.StepStatistics;
+import net.minecraft.Bootstrap;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * A controller and casings without a world, stepped by the actual controller
+ * code. The parts of the block entities needed to assemble and run a
+ * multi-block outside of the game are internal to them, so they are
+ * accessed via reflection, keeping the shipped classes free of hooks
+ * only the headless code needs.
+ * <p>
+ * Parts are connected to the parts next to them like in a world, including
+ * the pipes between casings. Unlike in a world, casings do not need to be
+ * connected to the controller, unconnected casings behave like separate
+ * multi-blocks that happen to be stepped by the same controller.
+ */
+final class HeadlessMultiBlock {
+    static {
+        // Block entities use item stacks, which need the registries.
+        Bootstrap.initialize();
+    }
+
+    private static final Field NEIGHBORS = getField(AbstractComputerBlockEntity.class, "neighbors");
+    private static final Method REBUILD_OVERRIDES = getMethod(AbstractComputerBlockEntity.class, "rebuildOverrides");
+    private static final Method ON_ENABLED = getMethod(CasingBlockEntity.class, "onEnabled");
+    private static final Method ON_DISABLED = getMethod(CasingBlockEntity.class, "onDisabled");
+    private static final Field CONTROLLER_CASINGS = getField(ControllerBlockEntity.class, "casings");
+    private static final Field CONTROLLER_STEPPED_CASINGS = getField(ControllerBlockEntity.class, "steppedCasings");
+    private static final Field CONTROLLER_STATE = getField(ControllerBlockEntity.class, "state");
+    private static final Field CONTROLLER_SCHEDULED_STEPS = getField(ControllerBlockEntity.class, "scheduledSteps");
+    private static final Field CONTROLLER_SCHEDULED_HCF = getField(ControllerBlockEntity.class, "scheduledHaltAndCatchFire");
+    private static final Field CONTROLLER_DEFERRED_EFFECTS = getField(ControllerBlockEntity.class, "deferredEffects");
+    private static final Method CONTROLLER_SET_SCHEDULED_STEPS = getMethod(ControllerBlockEntity.class, "setScheduledSteps", int.class);
+    private static final Method CONTROLLER_RUN_SCHEDULED_STEPS = getMethod(ControllerBlockEntity.class, "runScheduledSteps");
+
+    /**
+     * Buffer for the effects of enabling and disabling modules, which are
+     * dropped like the effects of steps.
+     */
+    private final DeferredEffects stateEffects = new DeferredEffects();
+
+    private final ControllerBlockEntity controller = new ControllerBlockEntity();
+    private final List<CasingBlockEntity> casings = new ArrayList<>();
+    private final Map<BlockPos, AbstractComputerBlockEntity> parts = new HashMap<>();
+    private boolean isStarted;
+
+    // --------------------------------------------------------------------- //
+
+    HeadlessMultiBlock(final BlockPos controllerPosition) {
+        controller.setPos(controllerPosition);
+        parts.put(controller.getPos(), controller);
+    }
+
+    /**
+     * Add a casing at the specified position.
+     *
+     * @param position the position of the casing.
+     * @return the new casing.
+     * @throws IllegalStateException    if the multi-block was already started.
+     * @throws IllegalArgumentException if the position is already taken.
+     */
+    CasingBlockEntity addCasing(final BlockPos position) {
+        if (isStarted) {
+            throw new IllegalStateException("Cannot add casings after starting.");
+        }
+        if (parts.containsKey(position)) {
+            throw new IllegalArgumentException("Position " + position + " is already taken.");
+        }
+
+        final CasingBlockEntity casing = new CasingBlockEntity();
+        casing.setPos(position);
+        parts.put(casing.getPos(), casing);
+        casings.add(casing);
+        return casing;
+    }
+
+    /**
+     * Connect all parts to their neighbors and start running.
+     *
+     * @throws IllegalStateException if the multi-block was already started.
+     */
+    void start() {
+        if (isStarted) {
+            throw new IllegalStateException("Already started.");
+        }
+        isStarted = true;
+
+        // Only the neighbor references, setNeighbor() needs a world. Pipes
+        // are connected when rebuilding the overrides below.
+        for (final AbstractComputerBlockEntity part : parts.values()) {
+            final AbstractComputerBlockEntity[] neighbors = (AbstractComputerBlockEntity[])get(NEIGHBORS, part);
+            for (final Face face : Face.VALUES) {
+                neighbors[face.ordinal()] = getPart(part.getPos().offset(Face.toDirection(face)));
+            }
+        }
+
+        final List<CasingBlockEntity> controllerCasings = getControllerCasings();
+        controllerCasings.clear();
+        controllerCasings.addAll(casings);
+        set(CONTROLLER_STEPPED_CASINGS, controller, null);
+        controllerCasings.forEach(c -> c.setController(controller));
+
+        // Same as after a scan, see ControllerBlockEntity.scan().
+        controllerCasings.forEach(c -> invoke(REBUILD_OVERRIDES, c));
+        invoke(REBUILD_OVERRIDES, controller);
+        controllerCasings.sort(Comparator.comparing(CasingBlockEntity::getPosition));
+
+        setState(ControllerState.RUNNING, ON_ENABLED);
+    }
+
+    /**
+     * Whether there is a part at the specified position.
+     *
+     * @param position the position to check.
+     * @return <tt>true</tt> if the controller or a casing is at the position.
+     */
+    boolean isOccupied(final BlockPos position) {
+        return parts.containsKey(position);
+    }
+
+    /**
+     * Whether the specified position is connected to the controller via a
+     * chain of parts next to each other, i.e. whether a casing there would
+     * be found by a controller scan in a world.
+     *
+     * @param position the position to check.
+     * @return <tt>true</tt> if the position is connected to the controller.
+     */
+    boolean isConnectedToController(final BlockPos position) {
+        if (!isOccupied(position)) {
+            return false;
+        }
+
+        final Set<BlockPos> visited = new HashSet<>();
+        final Queue<BlockPos> queue = new ArrayDeque<>();
+        visited.add(position);
+        queue.add(position);
+        while (!queue.isEmpty()) {
+            final BlockPos current = queue.remove();
+            if (current.equals(controller.getPos())) {
+                return true;
+            }
+            for (final Face face : Face.VALUES) {
+                final BlockPos neighbor = current.offset(Face.toDirection(face));
+                if (isOccupied(neighbor) && visited.add(neighbor)) {
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean isStarted() {
+        return isStarted;
+    }
+
+    /**
+     * Run the specified number of steps in one batch, like a controller does
+     * in a single tick.
+     *
+     * @param steps the number of steps to run.
+     * @return <tt>false</tt> if the controller halted and caught fire.
+     * @throws IllegalStateException if the multi-block was not started yet.
+     */
+    boolean step(final int steps) {
+        if (!isStarted) {
+            throw new IllegalStateException("Not started.");
+        }
+        if (controller.getState() != ControllerState.RUNNING) {
+            return false;
+        }
+
+        // Same as when ticking, but dropping the effects of the steps, which
+        // would need a world.
+        invoke(CONTROLLER_SET_SCHEDULED_STEPS, controller, steps);
+        invoke(CONTROLLER_RUN_SCHEDULED_STEPS, controller);
+        ((DeferredEffects)get(CONTROLLER_DEFERRED_EFFECTS, controller)).discard();
+        set(CONTROLLER_SCHEDULED_STEPS, controller, 0);
+
+        if ((Boolean)get(CONTROLLER_SCHEDULED_HCF, controller)) {
+            set(CONTROLLER_SCHEDULED_HCF, controller, false);
+            setState(ControllerState.READY, ON_DISABLED);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the counters of the event driven module and pipe scheduler.
+     *
+     * @return the current scheduler statistics.
+     */
+    StepStatistics getStepStatistics() {
+        return controller.getStepStatistics();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @Nullable
+    private AbstractComputerBlockEntity getPart(final BlockPos position) {
+        return parts.get(position);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CasingBlockEntity> getControllerCasings() {
+        return (List<CasingBlockEntity>)get(CONTROLLER_CASINGS, controller);
+    }
+
+    private void setState(final ControllerState state, final Method casingCallback) {
+        stateEffects.begin();
+        try {
+            set(CONTROLLER_STATE, controller, state);
+            getControllerCasings().forEach(c -> invoke(casingCallback, c));
+        } finally {
+            stateEffects.end();
+            stateEffects.discard();
+        }
+    }
+
+    private static Field getField(final Class<?> type, final String name) {
+        try {
+            final Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (final NoSuchFieldException e) {
+            throw new IllegalStateException("Missing field " + type.getSimpleName() + "." + name + ".", e);
+        }
+    }
+
+    private static Method getMethod(final Class<?> type, final String name, final Class<?>... parameterTypes) {
+        try {
+            final Method method = type.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return method;
+        } catch (final NoSuchMethodException e) {
+            throw new IllegalStateException("Missing method " + type.getSimpleName() + "." + name + ".", e);
+        }
+    }
+
+    private static Object get(final Field field, final Object instance) {
+        try {
+            return field.get(instance);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(final Field field, final Object instance, @Nullable final Object value) {
+        try {
+            field.set(instance, value);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void invoke(final Method method, final Object instance, final Object... args) {
+        try {
+            method.invoke(instance, args);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (final InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.prefab.module.AbstractModule;
+
+/**
+ * Feeds a fixed sequence of values into a simulated machine.
+ * <p>
+ * Behaves like the queue module: the next value is written to all ports, and
+ * each value can only be read from one port.
+ */
+public final class InputModule extends AbstractModule {
+    private final short[] values;
+    private int next = 0;
+
+    // --------------------------------------------------------------------- //
+
+    public InputModule(final Casing casing, final Face face, final short[] values) {
+        super(casing, face);
+        this.values = values;
+    }
+
+    /**
+     * Get the number of values that have been read from this module so far.
+     *
+     * @return the number of values read.
+     */
+    public int getConsumedCount() {
+        return next;
+    }
+
+    /**
+     * Get the number of values this module was configured to provide.
+     *
+     * @return the number of values in total.
+     */
+    public int getValueCount() {
+        return values.length;
+    }
+
+    // --------------------------------------------------------------------- //
+    // Module
+
+    @Override
+    public void step() {
+        stepOutput();
+    }
+
+    @Override
+    public void onBeforeWriteComplete(final Port port) {
+        next++;
+
+        // If one completes, cancel all other writes to ensure a value is only
+        // written once.
+        cancelWrite();
+    }
+
+    @Override
+    public void onWriteComplete(final Port port) {
+        // Re-cancel in case step() was called after onBeforeWriteComplete() to
+        // ensure all our writes are in sync.
+        cancelWrite();
+
+        stepOutput();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void stepOutput() {
+        if (next >= values.length) {
+            return;
+        }
+
+        for (final Port port : Port.VALUES) {
+            final Pipe sendingPipe = getCasing().getSendingPipe(getFace(), port);
+            if (!sendingPipe.isWriting()) {
+                sendingPipe.beginWrite(values[next]);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.module.DisplayModule;
+import li.cil.tis3d.common.module.ExecutionModule;
+import li.cil.tis3d.common.module.QueueModule;
+import li.cil.tis3d.common.module.RandomAccessMemoryModule;
+import li.cil.tis3d.common.module.StackModule;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Sets up {@link HeadlessCasing}s from a machine description file.
+ * <p>
+ * A description lists casings and the modules on their faces, one per line.
+ * Empty lines and lines starting with <tt>#</tt> are ignored:
+ * <pre>
+ * casing
+ * Y_POS execution adder.tis
+ * Y_NEG execution
+ *   MOV UP, ACC
+ *   ADD ACC
+ *   MOV ACC, DOWN
+ * end
+ * X_POS input 1 2 3
+ * X_NEG output 2 4 6
+ * Z_POS stack
+ * </pre>
+ * Each <tt>casing</tt> line starts a new casing, the following lines install
+ * modules on its faces. Casings may be given a position relative to the
+ * controller at <tt>0 0 0</tt>, e.g. <tt>casing 1 0 0</tt>, in which case
+ * casings next to each other are connected like in a world and must all be
+ * connected to the controller, and faces covered by another casing or the
+ * controller cannot have modules. Either all or no casings must have a
+ * position, casings without one are not connected to any other casing.
+ * <p>
+ * Supported modules are <tt>execution</tt>, <tt>stack</tt>, <tt>queue</tt>,
+ * <tt>ram</tt> and <tt>display</tt>, as well as the simulator's <tt>input</tt>
+ * module, which provides the listed values, and <tt>output</tt> module, which
+ * collects values and optionally checks them against the listed ones.
+ * Execution modules load their code from the specified file, relative to the
+ * description, or, if no file is specified, from the following lines up to a
+ * line containing only <tt>end</tt>.
+ */
+public final class MachineLoader {
+    private static final String KEYWORD_CASING = "casing";
+    private static final String KEYWORD_END = "end";
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Load a machine description into the specified controller.
+     *
+     * @param file       the description to load.
+     * @param controller the controller to add the described casings to.
+     * @throws IOException              if the description or a code file could not be read.
+     * @throws IllegalArgumentException if the description or any code is invalid.
+     */
+    public static void load(final Path file, final HeadlessController controller) throws IOException {
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        final Map<HeadlessCasing, Integer> casingLines = new HashMap<>();
+        final Map<HeadlessCasing, int[]> moduleLines = new HashMap<>();
+        boolean hasPositions = false;
+        HeadlessCasing casing = null;
+        for (int lineNumber = 0; lineNumber < lines.size(); lineNumber++) {
+            final String line = lines.get(lineNumber).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            final String[] tokens = line.split("\\s+");
+            if (KEYWORD_CASING.equalsIgnoreCase(tokens[0])) {
+                if (tokens.length != 1 && tokens.length != 4) {
+                    throw error(file, lineNumber, "Expected no arguments or a position after '" + KEYWORD_CASING + "'.");
+                }
+                final boolean hasPosition = tokens.length == 4;
+                if (!casingLines.isEmpty() && hasPosition != hasPositions) {
+                    throw error(file, lineNumber, "Either all or no casings must have a position.");
+                }
+                hasPositions = hasPosition;
+
+                if (hasPosition) {
+                    final BlockPos position = parsePosition(file, lineNumber, tokens);
+                    if (controller.isOccupied(position)) {
+                        throw error(file, lineNumber, "Position " + tokens[1] + " " + tokens[2] + " " + tokens[3] + " is already taken.");
+                    }
+                    casing = controller.addCasing(position);
+                } else {
+                    casing = controller.addCasing();
+                }
+                casingLines.put(casing, lineNumber);
+                moduleLines.put(casing, new int[Face.VALUES.length]);
+                continue;
+            }
+
+            if (casing == null) {
+                throw error(file, lineNumber, "Expected '" + KEYWORD_CASING + "' before the first module.");
+            }
+            if (tokens.length < 2) {
+                throw error(file, lineNumber, "Expected a face and a module type.");
+            }
+
+            final Face face = parseFace(tokens[0]);
+            if (face == null) {
+                throw error(file, lineNumber, "Unknown face '" + tokens[0] + "'.");
+            }
+            if (casing.getModule(face) != null) {
+                throw error(file, lineNumber, "Face " + face + " already has a module.");
+            }
+
+            final String type = tokens[1].toLowerCase(Locale.ROOT);
+            final Module module;
+            switch (type) {
+                case "execution": {
+                    final List<String> code;
+                    final Path codeFile;
+                    final int codeLineOffset;
+                    if (tokens.length > 2) {
+                        codeFile = file.resolveSibling(line.split("\\s+", 3)[2]);
+                        code = Files.readAllLines(codeFile, StandardCharsets.UTF_8);
+                        codeLineOffset = 0;
+                    } else {
+                        codeFile = file;
+                        codeLineOffset = lineNumber + 1;
+                        code = new ArrayList<>();
+                        while (true) {
+                            lineNumber++;
+                            if (lineNumber >= lines.size()) {
+                                throw error(file, codeLineOffset - 1, "Missing '" + KEYWORD_END + "' after code.");
+                            }
+                            if (KEYWORD_END.equalsIgnoreCase(lines.get(lineNumber).trim())) {
+                                break;
+                            }
+                            code.add(lines.get(lineNumber));
+                        }
+                    }
+
+                    final ExecutionModule executionModule = new ExecutionModule(casing.getCasing(), face);
+                    try {
+                        Compiler.compile(code, executionModule.getState());
+                    } catch (final ParseException e) {
+                        throw error(codeFile, codeLineOffset + e.getLineNumber(), e.getMessage());
+                    }
+                    module = executionModule;
+                    break;
+                }
+                case "stack":
+                    module = new StackModule(casing.getCasing(), face);
+                    break;
+                case "queue":
+                    module = new QueueModule(casing.getCasing(), face);
+                    break;
+                case "ram":
+                    module = new RandomAccessMemoryModule(casing.getCasing(), face);
+                    break;
+                case "display":
+                    module = new DisplayModule(casing.getCasing(), face);
+                    break;
+                case "input":
+                    module = new InputModule(casing.getCasing(), face, parseValues(file, lineNumber, tokens));
+                    break;
+                case "output":
+                    module = new OutputModule(casing.getCasing(), face, tokens.length > 2 ? parseValues(file, lineNumber, tokens) : null);
+                    break;
+                default:
+                    throw error(file, lineNumber, "Unknown module type '" + tokens[1] + "'.");
+            }
+
+            casing.setModule(face, module);
+            moduleLines.get(casing)[face.ordinal()] = lineNumber;
+        }
+
+        if (hasPositions) {
+            validatePositions(file, controller, casingLines, moduleLines);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Check that all casings are connected to the controller and that no
+     * module is installed on a face covered by another part.
+     */
+    private static void validatePositions(final Path file, final HeadlessController controller, final Map<HeadlessCasing, Integer> casingLines, final Map<HeadlessCasing, int[]> moduleLines) {
+        for (final HeadlessCasing casing : controller.getCasings()) {
+            if (!controller.isConnectedToController(casing)) {
+                throw error(file, casingLines.get(casing), "Casing is not connected to the controller.");
+            }
+            for (final Face face : Face.VALUES) {
+                if (casing.getModule(face) != null && controller.isOccupied(casing.getPosition().offset(Face.toDirection(face)))) {
+                    throw error(file, moduleLines.get(casing)[face.ordinal()], "Face " + face + " is covered by a neighbor.");
+                }
+            }
+        }
+    }
+
+    private static BlockPos parsePosition(final Path file, final int lineNumber, final String[] tokens) {
+        try {
+            return new BlockPos(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]));
+        } catch (final NumberFormatException e) {
+            throw error(file, lineNumber, "Invalid position '" + tokens[1] + " " + tokens[2] + " " + tokens[3] + "'.");
+        }
+    }
+
+    @Nullable
+    private static Face parseFace(final String name) {
+        for (final Face face : Face.VALUES) {
+            if (face.name().equalsIgnoreCase(name)) {
+                return face;
+            }
+        }
+        return null;
+    }
+
+    private static short[] parseValues(final Path file, final int lineNumber, final String[] tokens) {
+        final short[] values = new short[tokens.length - 2];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                // Same range as literals in code, negative or unsigned.
+                final int value = Integer.decode(tokens[i + 2]);
+                if (value < Short.MIN_VALUE || value > 0xFFFF) {
+                    throw error(file, lineNumber, "Value '" + tokens[i + 2] + "' out of range.");
+                }
+                values[i] = (short)value;
+            } catch (final NumberFormatException e) {
+                throw error(file, lineNumber, "Invalid value '" + tokens[i + 2] + "'.");
+            }
+        }
+        return values;
+    }
+
+    private static IllegalArgumentException error(final Path file, final int lineNumber, final String message) {
+        return new IllegalArgumentException(file + ":" + (lineNumber + 1) + ": " + message);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private MachineLoader() {
+    }
+}
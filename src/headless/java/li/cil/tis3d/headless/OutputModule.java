@@ -0,0 +1,88 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.prefab.module.AbstractModule;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Collects the values written into a simulated machine.
+ * <p>
+ * Continuously reads from all ports. If expected values are specified, the
+ * received values can be checked against them once enough were received.
+ */
+public final class OutputModule extends AbstractModule {
+    @Nullable
+    private final short[] expected;
+    private short[] received = new short[16];
+    private int count = 0;
+
+    // --------------------------------------------------------------------- //
+
+    public OutputModule(final Casing casing, final Face face, @Nullable final short[] expected) {
+        super(casing, face);
+        this.expected = expected;
+    }
+
+    /**
+     * Get the values received so far.
+     *
+     * @return the received values.
+     */
+    public short[] getReceived() {
+        return Arrays.copyOf(received, count);
+    }
+
+    /**
+     * Get the values this module expects to receive, if any.
+     *
+     * @return the expected values, or <tt>null</tt> if there are none.
+     */
+    @Nullable
+    public short[] getExpected() {
+        return expected;
+    }
+
+    /**
+     * Whether this module received at least as many values as it expects.
+     * Always <tt>true</tt> if it does not expect any values.
+     *
+     * @return <tt>true</tt> if all expected values were received.
+     */
+    public boolean isComplete() {
+        return expected == null || count >= expected.length;
+    }
+
+    /**
+     * Whether the received values are the expected ones, in order. Values
+     * received after all expected ones count as mismatches.
+     *
+     * @return <tt>true</tt> if the received values match the expected ones.
+     */
+    public boolean isMatch() {
+        return expected == null || Arrays.equals(expected, getReceived());
+    }
+
+    // --------------------------------------------------------------------- //
+    // Module
+
+    @Override
+    public void step() {
+        for (final Port port : Port.VALUES) {
+            final Pipe receivingPipe = getCasing().getReceivingPipe(getFace(), port);
+            if (!receivingPipe.isReading()) {
+                receivingPipe.beginRead();
+            }
+            if (receivingPipe.canTransfer()) {
+                if (count == received.length) {
+                    received = Arrays.copyOf(received, received.length * 2);
+                }
+                received[count++] = receivingPipe.read();
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package li.cil.tis3d.headless;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a machine outside of Minecraft, as fast as the host allows.
+ * <p>
+ * Loads a machine description (see {@link MachineLoader}) and steps it the
+ * same way a controller does, where each cycle corresponds to one step of
+ * all modules and pipes, i.e. one controller step in game. The simulation
+ * runs until all output modules with expected values received as many values
+ * as they expect, the cycle limit is reached or the controller halts and
+ * catches fire. Afterwards the number of cycles, the throughput, the values
+ * sent per module port and the values received by output modules are
+ * reported.
+ * <p>
+ * Run using <tt>./gradlew simulate -Pmachine=&lt;file&gt;</tt>; pass
+ * <tt>-Pcycles=&lt;n&gt;</tt> to change the cycle limit. Exits with status
+ * <tt>1</tt> if an output module did not receive the expected values or the
+ * controller halted, and with status <tt>2</tt> if the description could not
+ * be loaded.
+ */
+public final class Simulator {
+    private static final long DEFAULT_MAX_CYCLES = 1_000_000;
+
+    private static final int EXIT_MISMATCH = 1;
+    private static final int EXIT_INVALID = 2;
+
+    // --------------------------------------------------------------------- //
+
+    public static void main(final String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: Simulator <machine file> [max cycles]");
+            System.exit(EXIT_INVALID);
+            return;
+        }
+
+        final Path file = Paths.get(args[0]);
+        final long maxCycles;
+        try {
+            maxCycles = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_MAX_CYCLES;
+        } catch (final NumberFormatException e) {
+            System.err.println("Invalid cycle limit: " + args[1]);
+            System.exit(EXIT_INVALID);
+            return;
+        }
+
+        final HeadlessController controller = new HeadlessController();
+        try {
+            MachineLoader.load(file, controller);
+        } catch (final IOException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(EXIT_INVALID);
+            return;
+        }
+
+        final List<OutputModule> outputs = new ArrayList<>();
+        for (final HeadlessCasing casing : controller.getCasings()) {
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module instanceof OutputModule) {
+                    outputs.add((OutputModule)module);
+                }
+            }
+        }
+
+        controller.start();
+
+        final long start = System.nanoTime();
+        final long cycles = run(controller, outputs, maxCycles);
+        final long elapsedNanos = System.nanoTime() - start;
+
+        final boolean isMatch = report(System.out, controller, cycles, elapsedNanos);
+        if (!isMatch) {
+            System.exit(EXIT_MISMATCH);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Step the machine until all outputs are complete or the limit is hit.
+     *
+     * @param controller the controller to step.
+     * @param outputs    the output modules of the machine.
+     * @param maxCycles  the maximum number of cycles to run.
+     * @return the number of cycles run.
+     */
+    private static long run(final HeadlessController controller, final List<OutputModule> outputs, final long maxCycles) {
+        // Only stop early if there is something to wait for.
+        final List<OutputModule> expecting = new ArrayList<>();
+        for (final OutputModule output : outputs) {
+            if (output.getExpected() != null) {
+                expecting.add(output);
+            }
+        }
+
+        long cycles = 0;
+        while (cycles < maxCycles) {
+            if (!expecting.isEmpty() && isComplete(expecting)) {
+                break;
+            }
+            cycles++;
+            if (!controller.step()) {
+                break;
+            }
+        }
+
+        return cycles;
+    }
+
+    private static boolean isComplete(final List<OutputModule> outputs) {
+        for (final OutputModule output : outputs) {
+            if (!output.isComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Print the results of a simulation run.
+     *
+     * @param out          the stream to print to.
+     * @param controller   the controller that was stepped.
+     * @param cycles       the number of cycles run.
+     * @param elapsedNanos the time it took to run the cycles.
+     * @return <tt>true</tt> if all outputs received the expected values.
+     */
+    private static boolean report(final PrintStream out, final HeadlessController controller, final long cycles, final long elapsedNanos) {
+        final double seconds = elapsedNanos / 1e9;
+        out.printf("Ran %d cycles in %.3f ms (%.2f M cycles/s).%n", cycles, seconds * 1e3, seconds > 0 ? cycles / seconds / 1e6 : 0.0);
+
+        boolean isMatch = true;
+        if (controller.isHalted()) {
+            out.println("Halted and caught fire.");
+            isMatch = false;
+        }
+
+        final List<HeadlessCasing> casings = controller.getCasings();
+        for (int index = 0; index < casings.size(); index++) {
+            final HeadlessCasing casing = casings.get(index);
+            final BlockPos position = casing.getPosition();
+            out.printf("Casing %d at %d %d %d:%n", index, position.getX(), position.getY(), position.getZ());
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module == null) {
+                    continue;
+                }
+
+                out.printf("  %-5s %s%n", face, module.getClass().getSimpleName());
+                for (final Port port : Port.VALUES) {
+                    final long count = casing.getTransferCount(face, port);
+                    if (count > 0) {
+                        out.printf("    %-5s sent %d values%n", port, count);
+                    }
+                }
+
+                if (module instanceof InputModule) {
+                    final InputModule input = (InputModule)module;
+                    out.printf("    consumed %d of %d values%n", input.getConsumedCount(), input.getValueCount());
+                }
+
+                if (module instanceof OutputModule) {
+                    final OutputModule output = (OutputModule)module;
+                    out.printf("    received %s%n", Arrays.toString(output.getReceived()));
+                    final short[] expected = output.getExpected();
+                    if (expected != null) {
+                        if (output.isMatch()) {
+                            out.println("    matches expected values");
+                        } else {
+                            out.printf("    MISMATCH, expected %s%n", Arrays.toString(expected));
+                            isMatch = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        return isMatch;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private Simulator() {
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Headless casings and controller for running machines outside of Minecraft,
+ * used by the benchmarks and the {@link li.cil.tis3d.headless.Simulator}.
+ */
+@ParametersAreNonnullByDefault
+package li.cil.tis3d.headless;
+
+import javax.annotation.ParametersAreNonnullByDefault;
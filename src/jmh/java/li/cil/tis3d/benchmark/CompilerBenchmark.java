@@ -0,0 +1,240 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.common.module.execution.Program;
+import li.cil.tis3d.common.module.execution.compiler.LegacyCompiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.ParsedLine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput of the compiler front end.
+ * <p>
+ * Compares {@link ParsedLine} with the regular expressions the compiler used
+ * before, on the code snippets from the bundled manual, where each operation
+ * is one pass over all snippet lines, including normalizing them to upper
+ * case. Also compares compiling the whole programs bundled with the
+ * benchmarks with the current and the {@link LegacyCompiler}, bypassing the
+ * program cache, where each operation compiles all programs once.
+ * <p>
+ * Setting up the programs fails if the compilers disagree on any of them,
+ * or on invalid variants of them, in the instructions generated or in the
+ * message, line and columns of the error reported.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerBenchmark {
+    private static final String[] MANUAL_PAGES = {
+        "module_execution.md",
+        "module_bundled_redstone.md",
+        "module_random_access_memory.md",
+        "module_display.md"
+    };
+    private static final Pattern PATTERN_SNIPPET = Pattern.compile("^`(?<code>[^`]+)`\\s*$");
+
+    private static final String[] PROGRAMS = {
+        "accumulate.tis",
+        "multiply.tis",
+        "signal.tis",
+        "sort.tis"
+    };
+
+    /**
+     * Invalid programs for comparing errors, in addition to the variants
+     * generated from the bundled programs.
+     */
+    private static final String[][] INVALID_PROGRAMS = {
+        {"MOV UP ACC DOWN"},
+        {"  MOV  UP ,ACC X"},
+        {"MOV UP"},
+        {"MOV UP,"},
+        {"JRO"},
+        {"ADD FOO"},
+        {"SWP ACC"},
+        {"FOO BAR"},
+        {"MOV BAK, ACC"},
+        {"MOV 0x10000x, UP"},
+        {"A: NOP", " A : NOP"},
+        {"JMP NOWHERE"},
+        {"L: JMP L, X"},
+        {"#DEFINE X FOO", "MOV X, ACC"},
+        {"#DEFINE X UP", "#UNDEF X", "ADD X"},
+        {"MOV UP, ACC # LONG!"},
+        {"::"},
+        {"A:B: NOP"}
+    };
+
+    // The patterns previously used by the compiler.
+    private static final Pattern PATTERN_COMMENT = Pattern.compile("#.*$");
+    private static final Pattern PATTERN_DEFINE = Pattern.compile("#DEFINE\\s+(?<key>\\S+)\\s*(?<value>\\S+)\\s*$");
+    private static final Pattern PATTERN_UNDEFINE = Pattern.compile("#UNDEF\\s+(?<key>\\S+)\\s*$");
+    private static final Pattern PATTERN_LINE = Pattern.compile("^\\s*(?:(?<label>[^:\\s]+)\\s*:\\s*)?(?:(?<name>\\S+)\\s*(?<arg1>[^,\\s]+)?\\s*,?\\s*(?<arg2>[^,\\s]+)?\\s*(?<excess>.+)?)?\\s*$");
+
+    /**
+     * The code snippets of the manual, one line each.
+     */
+    @State(Scope.Thread)
+    public static class ManualCode {
+        final List<String> lines = new ArrayList<>();
+        final ParsedLine parsedLine = new ParsedLine();
+
+        @Setup
+        public void setup() throws IOException {
+            for (final String page : MANUAL_PAGES) {
+                final String path = "/assets/tis3d/doc/en_us/item/" + page;
+                try (final InputStream stream = CompilerBenchmark.class.getResourceAsStream(path)) {
+                    if (stream == null) {
+                        throw new IOException("Missing manual page: " + path);
+                    }
+                    final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        final Matcher matcher = PATTERN_SNIPPET.matcher(line);
+                        if (matcher.matches()) {
+                            lines.add(matcher.group("code"));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The bundled programs, normalized to upper case.
+     */
+    @State(Scope.Thread)
+    public static class Programs {
+        final List<String[]> programs = new ArrayList<>();
+
+        @Setup
+        public void setup() throws IOException {
+            for (final String name : PROGRAMS) {
+                final String path = "/programs/" + name;
+                try (final InputStream stream = CompilerBenchmark.class.getResourceAsStream(path)) {
+                    if (stream == null) {
+                        throw new IOException("Missing program: " + path);
+                    }
+                    final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+                    final List<String> lines = new ArrayList<>();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines.add(line.toUpperCase(Locale.US));
+                    }
+                    programs.add(lines.toArray(new String[0]));
+                }
+            }
+
+            for (final String[] program : programs) {
+                checkParity(program);
+                for (int lineNumber = 0; lineNumber < program.length; lineNumber++) {
+                    final String[] excess = program.clone();
+                    excess[lineNumber] = excess[lineNumber] + " X";
+                    checkParity(excess);
+
+                    final String[] missing = program.clone();
+                    missing[lineNumber] = missing[lineNumber].replaceFirst(",.*$", "");
+                    checkParity(missing);
+                }
+            }
+            for (final String[] program : INVALID_PROGRAMS) {
+                checkParity(program);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @Benchmark
+    public void compile(final Programs state, final Blackhole blackhole) {
+        for (final String[] program : state.programs) {
+            blackhole.consume(LegacyCompiler.compileCurrent(program));
+        }
+    }
+
+    @Benchmark
+    public void compileLegacy(final Programs state, final Blackhole blackhole) {
+        for (final String[] program : state.programs) {
+            blackhole.consume(LegacyCompiler.compile(program));
+        }
+    }
+
+    @Benchmark
+    public void parsedLine(final ManualCode state, final Blackhole blackhole) {
+        final ParsedLine parsedLine = state.parsedLine;
+        for (final String code : state.lines) {
+            parsedLine.parse(code.toUpperCase(Locale.US));
+            blackhole.consume(parsedLine.getDefineKey());
+            blackhole.consume(parsedLine.getUndefineKey());
+            blackhole.consume(parsedLine.get(ParsedLine.Token.LABEL));
+            blackhole.consume(parsedLine.get(ParsedLine.Token.NAME));
+            blackhole.consume(parsedLine.get(ParsedLine.Token.ARG1));
+            blackhole.consume(parsedLine.get(ParsedLine.Token.ARG2));
+            blackhole.consume(parsedLine.start(ParsedLine.Token.EXCESS));
+        }
+    }
+
+    @Benchmark
+    public void regex(final ManualCode state, final Blackhole blackhole) {
+        for (final String code : state.lines) {
+            final String normalized = code.toUpperCase(Locale.US);
+
+            final Matcher defineMatcher = PATTERN_DEFINE.matcher(normalized);
+            if (defineMatcher.matches()) {
+                blackhole.consume(defineMatcher.group("key"));
+            }
+            final Matcher undefineMatcher = PATTERN_UNDEFINE.matcher(normalized);
+            if (undefineMatcher.matches()) {
+                blackhole.consume(undefineMatcher.group("key"));
+            }
+
+            final String line = PATTERN_COMMENT.matcher(normalized).replaceFirst("").trim();
+            final Matcher lineMatcher = PATTERN_LINE.matcher(line);
+            if (lineMatcher.matches()) {
+                blackhole.consume(lineMatcher.group("label"));
+                blackhole.consume(lineMatcher.group("name"));
+                blackhole.consume(lineMatcher.group("arg1"));
+                blackhole.consume(lineMatcher.group("arg2"));
+                blackhole.consume(lineMatcher.start("excess"));
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void checkParity(final String[] program) {
+        final Program current = LegacyCompiler.compileCurrent(program);
+        final Program legacy = LegacyCompiler.compile(program);
+        final ParseException currentError = current.error;
+        final ParseException legacyError = legacy.error;
+        if (currentError == null || legacyError == null) {
+            if (currentError != legacyError || current.instructions.size() != legacy.instructions.size() || !current.labels.equals(legacy.labels)) {
+                throw new IllegalStateException("Compilers disagree on " + Arrays.toString(program) + ": " + currentError + " vs " + legacyError);
+            }
+            return;
+        }
+
+        if (!Objects.equals(currentError.getMessage(), legacyError.getMessage()) ||
+            currentError.getLineNumber() != legacyError.getLineNumber() ||
+            currentError.getStart() != legacyError.getStart() ||
+            currentError.getEnd() != legacyError.getEnd()) {
+            throw new IllegalStateException("Compilers disagree on " + Arrays.toString(program) + ": " + currentError + " vs " + legacyError);
+        }
+    }
+}
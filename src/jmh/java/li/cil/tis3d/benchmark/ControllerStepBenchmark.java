@@ -0,0 +1,122 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.common.module.RandomAccessMemoryModule;
+import li.cil.tis3d.common.module.StackModule;
+import li.cil.tis3d.headless.HeadlessCasing;
+import li.cil.tis3d.headless.HeadlessController;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps per second of representative multi-block setups.
+ * <p>
+ * Each operation is one full controller step, i.e. one cycle of all modules
+ * and pipes, run by the actual controller code like a tick in game. Run with <tt>-prof gc</tt> (the default for the <tt>jmh</tt>
+ * Gradle task) to also get the allocation rate per step.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerStepBenchmark {
+    /**
+     * Six execution modules running a short arithmetic loop, no pipe traffic.
+     */
+    @State(Scope.Thread)
+    public static class AddLoop {
+        final HeadlessController controller = new HeadlessController();
+
+        @Setup
+        public void setup() {
+            final HeadlessCasing casing = controller.addCasing();
+            for (final Face face : Face.VALUES) {
+                casing.setProgram(face,
+                    "L: ADD 1",
+                    "SAV",
+                    "SUB 1",
+                    "JNZ L");
+            }
+            controller.start();
+        }
+    }
+
+    /**
+     * Four execution modules writing to a fifth one reading from any port.
+     */
+    @State(Scope.Thread)
+    public static class FanIn {
+        @Param({"1", "64", "512"})
+        public int casingCount;
+
+        final HeadlessController controller = new HeadlessController();
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < casingCount; i++) {
+                setupFanIn(controller.addCasing());
+            }
+            controller.start();
+        }
+    }
+
+    /**
+     * Execution modules storing and loading values in a RAM and a stack module.
+     */
+    @State(Scope.Thread)
+    public static class MemoryRoundTrip {
+        final HeadlessController controller = new HeadlessController();
+
+        @Setup
+        public void setup() {
+            final HeadlessCasing ramCasing = controller.addCasing();
+            ramCasing.setModule(Face.X_POS, new RandomAccessMemoryModule(ramCasing.getCasing(), Face.X_POS));
+            ramCasing.setProgram(Face.Y_POS,
+                "MOV 0, ANY",
+                "MOV ACC, ANY",
+                "MOV 0, ANY",
+                "MOV ANY, ACC",
+                "ADD 1");
+
+            final HeadlessCasing stackCasing = controller.addCasing();
+            stackCasing.setModule(Face.X_POS, new StackModule(stackCasing.getCasing(), Face.X_POS));
+            stackCasing.setProgram(Face.Y_POS,
+                "MOV ACC, ANY",
+                "MOV ANY, ACC",
+                "ADD 1");
+
+            controller.start();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @Benchmark
+    public void addLoop(final AddLoop state) {
+        state.controller.step();
+    }
+
+    @Benchmark
+    public void fanIn(final FanIn state) {
+        state.controller.step();
+    }
+
+    @Benchmark
+    public void memoryRoundTrip(final MemoryRoundTrip state) {
+        state.controller.step();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    static void setupFanIn(final HeadlessCasing casing) {
+        // All side faces are adjacent to the top face.
+        casing.setProgram(Face.Y_POS,
+            "ADD ANY");
+        for (final Face face : new Face[]{Face.X_NEG, Face.X_POS, Face.Z_NEG, Face.Z_POS}) {
+            casing.setProgram(face,
+                "MOV 1, ANY");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package li.cil.tis3d.benchmark;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.headless.HeadlessController;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single value transfer over a pipe, including the pipe steps it
+ * takes to synchronize reader and writer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipeBenchmark {
+    @State(Scope.Thread)
+    public static class SinglePipe {
+        PipeImpl pipe;
+
+        @Setup
+        public void setup() {
+            // A pipe of an actual casing, so the host notifications are included.
+            final HeadlessController controller = new HeadlessController();
+            pipe = (PipeImpl)controller.addCasing().getCasing().getReceivingPipe(Face.Y_POS, Port.UP);
+        }
+    }
+
+    @Benchmark
+    public short transfer(final SinglePipe state) {
+        final PipeImpl pipe = state.pipe;
+        pipe.beginWrite((short)1);
+        pipe.beginRead();
+        pipe.step();
+        final short value = pipe.read();
+        pipe.step();
+        return value;
+    }
+}
@@ -0,0 +1,103 @@
+package li.cil.tis3d.benchmark;
+
+import com.google.common.collect.ImmutableMap;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.module.ExecutionModule;
+import li.cil.tis3d.common.module.execution.MachineImpl;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.target.Target;
+import li.cil.tis3d.common.module.execution.target.TargetInterface;
+import li.cil.tis3d.headless.HeadlessCasing;
+import li.cil.tis3d.headless.HeadlessController;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving the interface for the source and destination of a
+ * <tt>MOV</tt>, taking into account the rotation of the execution module.
+ * <p>
+ * Compares the table {@link MachineImpl#getInterface(Target)} uses with
+ * rotating the target and looking it up in a map on every access, as done
+ * before. Each operation resolves one target per port.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetDispatchBenchmark {
+    private static final Target[] PORT_TARGETS = {Target.LEFT, Target.RIGHT, Target.UP, Target.DOWN};
+
+    @State(Scope.Thread)
+    public static class RotatedModule {
+        ExecutionModule module;
+        MachineImpl machine;
+        Map<Target, TargetInterface> interfaces;
+
+        @Setup
+        public void setup() throws ParseException {
+            final HeadlessCasing casing = new HeadlessController().addCasing();
+            module = casing.setProgram(Face.Y_NEG, "MOV ACC, NIL");
+            module.setFacing(Port.LEFT);
+
+            machine = new MachineImpl(module, Face.Y_NEG);
+            Compiler.compile(Arrays.asList("MOV ACC, NIL"), machine.getState());
+
+            // The unrotated interfaces, as previously kept by the machine.
+            final ImmutableMap.Builder<Target, TargetInterface> builder = ImmutableMap.builder();
+            for (final Target target : Target.VALUES) {
+                builder.put(getRotatedTarget(target, module), machine.getInterface(target));
+            }
+            interfaces = builder.build();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @Benchmark
+    public void table(final RotatedModule state, final Blackhole blackhole) {
+        for (final Target target : PORT_TARGETS) {
+            blackhole.consume(state.machine.getInterface(target));
+        }
+    }
+
+    @Benchmark
+    public void rotateAndLookup(final RotatedModule state, final Blackhole blackhole) {
+        for (final Target target : PORT_TARGETS) {
+            blackhole.consume(state.interfaces.get(getRotatedTarget(target, state.module)));
+        }
+    }
+
+    /**
+     * A full register to register move, resolving both of its targets.
+     */
+    @Benchmark
+    public boolean move(final RotatedModule state) {
+        return state.machine.step();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static Target getRotatedTarget(final Target target, final ExecutionModule module) {
+        switch (target) {
+            case LEFT:
+            case RIGHT:
+            case UP:
+            case DOWN:
+                int rotation = Port.ROTATION[module.getFacing().ordinal()];
+                if (module.getFace() == Face.Y_NEG) {
+                    rotation = -rotation;
+                }
+                final Port port = Target.toPort(target);
+                final Port rotatedPort = port.rotated(rotation);
+                return Target.fromPort(rotatedPort);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * JMH benchmarks for the compiler, machine, pipes and controller stepping.
+ * <p>
+ * Run using <tt>./gradlew jmh</tt>; pass <tt>-PjmhInclude=&lt;regex&gt;</tt>
+ * to only run matching benchmarks. Results are written to
+ * <tt>build/reports/jmh/results.json</tt>.
+ */
+@ParametersAreNonnullByDefault
+package li.cil.tis3d.benchmark;
+
+import javax.annotation.ParametersAreNonnullByDefault;
@@ -0,0 +1,283 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import com.google.common.collect.ImmutableMap;
+import li.cil.tis3d.common.Constants;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
+import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Program;
+import li.cil.tis3d.common.module.execution.instruction.*;
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The compiler as it was before lines were split by {@link ParsedLine}, using
+ * regular expressions for defines, comments and the line format, for
+ * comparing it with the current {@link Compiler} in benchmarks.
+ * <p>
+ * Both compile normalized lines directly, bypassing the {@link ProgramCache}.
+ */
+public final class LegacyCompiler {
+    /**
+     * Compile the specified normalized lines using the regular expressions.
+     *
+     * @param lines the upper case lines of code to compile.
+     * @return the compiled program, holding the error if the code is invalid.
+     */
+    public static Program compile(final String[] lines) {
+        final List<Instruction> instructions = new ArrayList<>(lines.length);
+        final Map<String, Integer> labels = new HashMap<>();
+        final Map<Integer, Integer> lineNumbers = new HashMap<>();
+
+        try {
+            final List<Validator> validators = new ArrayList<>();
+            final Map<String, String> defines = new HashMap<>();
+            for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+                if (lines[lineNumber].length() > Settings.maxColumnsPerLine) {
+                    throw new ParseException(Constants.MESSAGE_TOO_MANY_COLUMNS, lineNumber, Settings.maxColumnsPerLine, Settings.maxColumnsPerLine);
+                }
+
+                final Matcher defineMatcher = PATTERN_DEFINE.matcher(lines[lineNumber]);
+                if (defineMatcher.matches()) {
+                    parseDefine(defineMatcher, defines);
+                }
+
+                final Matcher undefineMatcher = PATTERN_UNDEFINE.matcher(lines[lineNumber]);
+                if (undefineMatcher.matches()) {
+                    defines.remove(undefineMatcher.group("key"));
+                }
+
+                final Matcher commentMatcher = PATTERN_COMMENT.matcher(lines[lineNumber]);
+                final String line = commentMatcher.replaceFirst("").trim();
+
+                final Matcher lineMatcher = PATTERN_LINE.matcher(line);
+                if (lineMatcher.matches()) {
+                    parseLabel(lineMatcher, instructions, labels, lineNumber);
+                    parseInstruction(lineMatcher, instructions, lineNumbers, lineNumber, defines, validators);
+                } else {
+                    throw new ParseException(Constants.MESSAGE_INVALID_FORMAT, lineNumber, 0, 0);
+                }
+            }
+
+            final MachineState state = new MachineState();
+            state.program = new Program(lines, instructions, labels, lineNumbers, null, null);
+            for (final Validator validator : validators) {
+                validator.accept(state);
+            }
+
+            return new Program(lines, instructions, labels, lineNumbers, CompiledProgram.lower(state), null);
+        } catch (final ParseException e) {
+            return new Program(lines, Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), null, e);
+        }
+    }
+
+    /**
+     * Compile the specified normalized lines using the current compiler.
+     *
+     * @param lines the upper case lines of code to compile.
+     * @return the compiled program, holding the error if the code is invalid.
+     */
+    public static Program compileCurrent(final String[] lines) {
+        return Compiler.compile(lines);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void parseDefine(final Matcher matcher, final Map<String, String> defines) {
+        final String key = matcher.group("key");
+        String value = matcher.group("value");
+        if (key.equals(value)) {
+            return;
+        }
+
+        if (defines.containsKey(value)) {
+            value = defines.get(value);
+        }
+
+        defines.put(key, value);
+    }
+
+    private static void parseLabel(final Matcher matcher, final List<Instruction> instructions, final Map<String, Integer> labels, final int lineNumber) throws ParseException {
+        final String label = matcher.group("label");
+        if (label == null) {
+            return;
+        }
+
+        if (labels.containsKey(label)) {
+            throw new ParseException(Constants.MESSAGE_LABEL_DUPLICATE, lineNumber, matcher.start("label"), matcher.end("label"));
+        }
+        labels.put(label, instructions.size());
+    }
+
+    private static void parseInstruction(final Matcher matcher, final List<Instruction> instructions, final Map<Integer, Integer> lineNumbers, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final String name = matcher.group("name");
+        if (name == null) {
+            return;
+        }
+
+        final Emitter emitter = EMITTER_MAP.get(name);
+        if (emitter == null) {
+            throw new ParseException(Constants.MESSAGE_INVALID_INSTRUCTION, lineNumber, matcher.start("name"), matcher.end("name"));
+        }
+
+        lineNumbers.put(instructions.size(), lineNumber);
+        instructions.add(emitter.compile(matcher, lineNumber, defines, validators));
+    }
+
+    // --------------------------------------------------------------------- //
+    // The previous instruction emitters, which took the line's matcher.
+
+    @FunctionalInterface
+    private interface Emitter {
+        Instruction compile(final Matcher matcher, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException;
+    }
+
+    private static Emitter unary(final Instruction instruction) {
+        return (matcher, lineNumber, defines, validators) -> {
+            checkExcess(lineNumber, matcher, "arg1");
+            return instruction;
+        };
+    }
+
+    private static Emitter label(final Function<String, Instruction> constructor) {
+        return (matcher, lineNumber, defines, validators) -> {
+            final String label = checkArg(lineNumber, matcher, "arg1", "name");
+            checkExcess(lineNumber, matcher, "arg2");
+
+            final int start = matcher.start("arg1");
+            final int end = matcher.end("arg1");
+            validators.add(state -> {
+                if (!state.program.labels.containsKey(label)) {
+                    throw new ParseException(Constants.MESSAGE_LABEL_NOT_FOUND, lineNumber, start, end);
+                }
+            });
+
+            return constructor.apply(label);
+        };
+    }
+
+    private static Emitter targetOrImmediate(final Function<Target, Instruction> target, final Function<Short, Instruction> immediate) {
+        return (matcher, lineNumber, defines, validators) -> {
+            final Object src = checkTargetOrNumber(checkArg(lineNumber, matcher, "arg1", "name"),
+                                                   lineNumber, defines, matcher.start("arg1"), matcher.end("arg1"));
+            checkExcess(lineNumber, matcher, "arg2");
+
+            if (src instanceof Target) {
+                return target.apply((Target)src);
+            } else {
+                return immediate.apply((Short)src);
+            }
+        };
+    }
+
+    private static Instruction move(final Matcher matcher, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final Object src = checkTargetOrNumber(checkArg(lineNumber, matcher, "arg1", "name"),
+                                               lineNumber, defines, matcher.start("arg1"), matcher.end("arg1"));
+        final Target dst = checkTarget(checkArg(lineNumber, matcher, "arg2", "arg1"),
+                                       lineNumber, defines, matcher.start("arg2"), matcher.end("arg2"));
+        checkExcess(lineNumber, matcher, "excess");
+
+        if (src instanceof Target) {
+            return new MoveInstruction((Target)src, dst);
+        } else {
+            return new MoveImmediateInstruction((Short)src, dst);
+        }
+    }
+
+    private static void checkExcess(final int lineNumber, final Matcher matcher, final String name) throws ParseException {
+        final int start = matcher.start(name);
+        if (start >= 0) {
+            throw new ParseException(Constants.MESSAGE_PARAMETER_OVERFLOW, lineNumber, start, matcher.end());
+        }
+    }
+
+    private static String checkArg(final int lineNumber, final Matcher matcher, final String name, final String previous) throws ParseException {
+        final String arg = matcher.group(name);
+        if (arg == null) {
+            throw new ParseException(Constants.MESSAGE_PARAMETER_UNDERFLOW, lineNumber, matcher.end(previous) + 1, matcher.end(previous) + 1);
+        }
+        return arg;
+    }
+
+    private static Target checkTarget(String name, final int lineNumber, final Map<String, String> defines, final int start, final int end) throws ParseException {
+        name = defines.getOrDefault(name, name);
+        try {
+            final Target target = Enum.valueOf(Target.class, name);
+            if (!Target.VALID_TARGETS.contains(target)) {
+                throw new ParseException(Constants.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
+            }
+            return target;
+        } catch (final IllegalArgumentException ex) {
+            throw new ParseException(Constants.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
+        }
+    }
+
+    private static Object checkTargetOrNumber(String name, final int lineNumber, final Map<String, String> defines, final int start, final int end) throws ParseException {
+        name = defines.getOrDefault(name, name);
+        try {
+            final Target target = Enum.valueOf(Target.class, name);
+            if (!Target.VALID_TARGETS.contains(target)) {
+                throw new ParseException(Constants.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
+            }
+            return target;
+        } catch (final IllegalArgumentException ex) {
+            try {
+                return Integer.decode(name).shortValue();
+            } catch (final NumberFormatException ignored) {
+                throw new ParseException(Constants.MESSAGE_PARAMETER_INVALID, lineNumber, start, end);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static final Pattern PATTERN_COMMENT = Pattern.compile("#.*$");
+    private static final Pattern PATTERN_DEFINE = Pattern.compile("#DEFINE\\s+(?<key>\\S+)\\s*(?<value>\\S+)\\s*$");
+    private static final Pattern PATTERN_UNDEFINE = Pattern.compile("#UNDEF\\s+(?<key>\\S+)\\s*$");
+    private static final Pattern PATTERN_LINE = Pattern.compile("^\\s*(?:(?<label>[^:\\s]+)\\s*:\\s*)?(?:(?<name>\\S+)\\s*(?<arg1>[^,\\s]+)?\\s*,?\\s*(?<arg2>[^,\\s]+)?\\s*(?<excess>.+)?)?\\s*$");
+
+    private static final Map<String, Emitter> EMITTER_MAP;
+
+    static {
+        final ImmutableMap.Builder<String, Emitter> builder = ImmutableMap.builder();
+
+        builder.put("NOP", unary(new AddInstruction(Target.NIL)));
+        builder.put(HaltAndCatchFireInstruction.NAME, unary(HaltAndCatchFireInstruction.INSTANCE));
+
+        builder.put(JumpInstruction.NAME, label(JumpInstruction::new));
+        builder.put(JumpEqualZeroInstruction.NAME, label(JumpEqualZeroInstruction::new));
+        builder.put(JumpGreaterThanZeroInstruction.NAME, label(JumpGreaterThanZeroInstruction::new));
+        builder.put(JumpLessThanZeroInstruction.NAME, label(JumpLessThanZeroInstruction::new));
+        builder.put(JumpNotZeroInstruction.NAME, label(JumpNotZeroInstruction::new));
+        builder.put(JumpRelativeInstruction.NAME, targetOrImmediate(JumpRelativeInstruction::new, JumpRelativeImmediateInstruction::new));
+
+        builder.put(MoveInstruction.NAME, LegacyCompiler::move);
+        builder.put(SaveInstruction.NAME, unary(SaveInstruction.INSTANCE));
+        builder.put(SwapInstruction.NAME, unary(SwapInstruction.INSTANCE));
+
+        builder.put(NegateInstruction.NAME, unary(NegateInstruction.INSTANCE));
+        builder.put(AddInstruction.NAME, targetOrImmediate(AddInstruction::new, AddImmediateInstruction::new));
+        builder.put(SubtractInstruction.NAME, targetOrImmediate(SubtractInstruction::new, SubtractImmediateInstruction::new));
+        builder.put(MulInstruction.NAME, targetOrImmediate(MulInstruction::new, MulImmediateInstruction::new));
+        builder.put(DivInstruction.NAME, targetOrImmediate(DivInstruction::new, DivImmediateInstruction::new));
+
+        builder.put(BitwiseNotInstruction.NAME, unary(BitwiseNotInstruction.INSTANCE));
+        builder.put(BitwiseAndInstruction.NAME, targetOrImmediate(BitwiseAndInstruction::new, BitwiseAndImmediateInstruction::new));
+        builder.put(BitwiseOrInstruction.NAME, targetOrImmediate(BitwiseOrInstruction::new, BitwiseOrImmediateInstruction::new));
+        builder.put(BitwiseXorInstruction.NAME, targetOrImmediate(BitwiseXorInstruction::new, BitwiseXorImmediateInstruction::new));
+        builder.put(BitwiseShiftLeftInstruction.NAME, targetOrImmediate(BitwiseShiftLeftInstruction::new, BitwiseShiftLeftImmediateInstruction::new));
+        builder.put(BitwiseShiftRightInstruction.NAME, targetOrImmediate(BitwiseShiftRightInstruction::new, BitwiseShiftRightImmediateInstruction::new));
+
+        builder.put(LastRotateLeftInstruction.NAME, unary(LastRotateLeftInstruction.INSTANCE));
+        builder.put(LastRotateRightInstruction.NAME, unary(LastRotateRightInstruction.INSTANCE));
+
+        EMITTER_MAP = builder.build();
+    }
+
+    private LegacyCompiler() {
+    }
+}
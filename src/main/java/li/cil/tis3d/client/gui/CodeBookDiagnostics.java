@@ -0,0 +1,151 @@
+package li.cil.tis3d.client.gui;
+
+import li.cil.tis3d.common.item.CodeBookItem;
+import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles the program on the selected page of a code book in the background
+ * while it is being edited, to show errors without stalling the render thread.
+ * <p>
+ * Each edit submits the current code, replacing any earlier request that has
+ * not started yet. Results of requests that were replaced while running are
+ * dropped, so the error reported is always the one of the latest code that
+ * finished compiling.
+ * <p>
+ * The code of the pages around the selected one, included via the
+ * <tt>#BWTM</tt> macro, is cached until another page is selected or pages
+ * are removed, since only the selected page can be edited.
+ */
+@SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+@Environment(EnvType.CLIENT)
+final class CodeBookDiagnostics {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "TIS-3D Code Book Compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // --------------------------------------------------------------------- //
+
+    private final CodeBookItem.Data data;
+
+    /**
+     * Code of previous and next pages belonging to the program on the selected
+     * page, <tt>null</tt> if not computed for the selected page yet.
+     */
+    @Nullable
+    private List<String> leadingCode, trailingCode;
+
+    /**
+     * Incremented for every request, used to detect stale results.
+     */
+    private volatile int generation;
+
+    /**
+     * The last submitted request, if any.
+     */
+    @Nullable
+    private Future<?> pending;
+
+    /**
+     * The error of the last request that finished compiling.
+     */
+    private volatile Optional<ParseException> compileError = Optional.empty();
+
+    // --------------------------------------------------------------------- //
+
+    CodeBookDiagnostics(final CodeBookItem.Data data) {
+        this.data = data;
+    }
+
+    /**
+     * The error in the latest code that finished compiling, with its line
+     * number relative to the selected page.
+     *
+     * @return the current compile error, if any.
+     */
+    Optional<ParseException> getCompileError() {
+        return compileError;
+    }
+
+    /**
+     * Forget the cached code of surrounding pages, must be called when another
+     * page was selected or pages were added or removed.
+     */
+    void invalidate() {
+        leadingCode = null;
+        trailingCode = null;
+    }
+
+    /**
+     * Request compiling the program with the specified code on the selected page.
+     *
+     * @param page the current code on the selected page.
+     */
+    void update(final List<String> page) {
+        if (leadingCode == null || trailingCode == null) {
+            leadingCode = new ArrayList<>();
+            trailingCode = new ArrayList<>();
+            data.getExtendedProgram(data.getSelectedPage(), Collections.singletonList(CodeBookItem.Data.CONTINUATION_MACRO), leadingCode, trailingCode);
+        }
+
+        final List<String> program = new ArrayList<>(leadingCode.size() + page.size() + trailingCode.size());
+        program.addAll(leadingCode);
+        program.addAll(page);
+        if (CodeBookItem.Data.isPartialProgram(page)) {
+            program.addAll(trailingCode);
+        }
+
+        final int lineOffset = leadingCode.size();
+        final int requestGeneration = ++generation;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending = EXECUTOR.submit(() -> compile(program, lineOffset, requestGeneration));
+    }
+
+    /**
+     * Drop all pending requests, called when the GUI is closed.
+     */
+    void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void compile(final List<String> program, final int lineOffset, final int requestGeneration) {
+        if (requestGeneration != generation) {
+            return;
+        }
+
+        Optional<ParseException> result = Optional.empty();
+        try {
+            Compiler.compile(program, new MachineState());
+        } catch (final ParseException e) {
+            // Adjust line number for current page.
+            final int lineNumber = e.getLineNumber() - lineOffset;
+            result = Optional.of(new ParseException(e.getMessage(), lineNumber, e.getStart(), e.getEnd()));
+        }
+
+        if (requestGeneration == generation) {
+            compileError = result;
+        }
+    }
+}
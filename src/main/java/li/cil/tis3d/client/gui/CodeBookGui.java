@@ -6,8 +6,6 @@ import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.init.Items;
 import li.cil.tis3d.common.item.CodeBookItem;
-import li.cil.tis3d.common.module.execution.MachineState;
-import li.cil.tis3d.common.module.execution.compiler.Compiler;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.CodeBookDataMessage;
@@ -65,12 +63,12 @@ public final class CodeBookGui extends Screen {
     private final Hand hand;
     private final CodeBookItem.Data data;
     private final List<StringBuilder> lines = new ArrayList<>();
+    private final CodeBookDiagnostics diagnostics;
 
     private int guiX = 0;
     private int guiY = 0;
     private int selectionStart = 0;
     private int selectionEnd = 0;
-    private Optional<ParseException> compileError = Optional.empty();
 
     // --------------------------------------------------------------------- //
 
@@ -79,6 +77,7 @@ public final class CodeBookGui extends Screen {
         this.player = player;
         this.hand = hand;
         this.data = CodeBookItem.Data.loadFromStack(player.getStackInHand(hand));
+        this.diagnostics = new CodeBookDiagnostics(data);
 
         rebuildLines();
     }
@@ -111,6 +110,7 @@ public final class CodeBookGui extends Screen {
 
         // Write changes back to our data tag.
         saveProgram();
+        diagnostics.cancel();
 
         // Save any changes made and send them to the server.
         final CompoundTag nbt = new CompoundTag();
@@ -485,23 +485,7 @@ public final class CodeBookGui extends Screen {
     }
 
     private void recompile() {
-        compileError = Optional.empty();
-
-        final List<String> program = lines.stream().map(StringBuilder::toString).collect(Collectors.toList());
-
-        final List<String> leadingCode = new ArrayList<>();
-        final List<String> trailingCode = new ArrayList<>();
-        data.getExtendedProgram(data.getSelectedPage(), program, leadingCode, trailingCode);
-        program.addAll(0, leadingCode);
-        program.addAll(trailingCode);
-
-        try {
-            Compiler.compile(program, new MachineState());
-        } catch (final ParseException e) {
-            // Adjust line number for current page.
-            final int lineNumber = e.getLineNumber() - leadingCode.size();
-            compileError = Optional.of(new ParseException(e.getMessage(), lineNumber, e.getStart(), e.getEnd()));
-        }
+        diagnostics.update(lines.stream().map(StringBuilder::toString).collect(Collectors.toList()));
     }
 
     private boolean deleteSelection() {
@@ -576,6 +560,7 @@ public final class CodeBookGui extends Screen {
         lines.clear();
         program.forEach(line -> lines.add(new StringBuilder(line.toUpperCase(Locale.US))));
 
+        diagnostics.invalidate();
         recompile();
     }
 
@@ -616,6 +601,7 @@ public final class CodeBookGui extends Screen {
         }
 
         // Part one of error handling, draw red underline, *behind* the blinking cursor.
+        final Optional<ParseException> compileError = diagnostics.getCompileError();
         if (compileError.isPresent()) {
             final ParseException exception = compileError.get();
             final int localLineNumber, startX, rawEndX;
@@ -25,7 +25,6 @@ import li.cil.tis3d.common.init.Blocks;
 import li.cil.tis3d.common.init.BootstrapCommon;
 import li.cil.tis3d.common.init.Entities;
 import li.cil.tis3d.common.init.Items;
-import li.cil.tis3d.common.module.DisplayModule;
 import li.cil.tis3d.common.network.Network;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.api.EnvType;
@@ -64,7 +63,6 @@ public final class BootstrapClient implements ClientModInitializer {
         clientAPI.manual = API.manual;
 
         // Register event handlers.
-        ClientTickCallback.EVENT.register(client -> DisplayModule.LeakDetector.tick());
         ClientTickCallback.EVENT.register(client -> Network.INSTANCE.clientTick());
         ClientSpriteRegistryCallback.event(SpriteAtlasTexture.BLOCK_ATLAS_TEX).register((spriteAtlasTexture, registry) -> Textures.registerSprites(registry));
         ClientPickBlockGatherCallback.EVENT.register(BootstrapClient::handlePickBlock);
@@ -0,0 +1,24 @@
+package li.cil.tis3d.client.mixin;
+
+import li.cil.tis3d.client.render.DisplayAtlas;
+import net.minecraft.client.gui.hud.DebugHud;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Shows the slot counts of the {@link DisplayAtlas} on the debug screen.
+ */
+@Mixin(DebugHud.class)
+public abstract class DisplayAtlasDebugHudMixin {
+    @Inject(method = "getLeftText", at = @At("RETURN"))
+    private void addDisplayAtlasText(final CallbackInfoReturnable<List<String>> cir) {
+        final DisplayAtlas atlas = DisplayAtlas.INSTANCE;
+        cir.getReturnValue().add(String.format(Locale.ROOT, "TIS-3D displays: %d live, %d pooled, %d leaked",
+            atlas.getLiveCount(), atlas.getPooledCount(), atlas.getLeakedCount()));
+    }
+}
@@ -1,5 +1,6 @@
 package li.cil.tis3d.client.mixin;
 
+import li.cil.tis3d.client.render.DisplayAtlas;
 import li.cil.tis3d.common.block.entity.CasingBlockEntity;
 import li.cil.tis3d.common.machine.CasingImpl;
 import net.minecraft.block.entity.BlockEntity;
@@ -39,5 +40,7 @@ public abstract class WorldUnloadMinecraftClientMixin {
                 casing.onDisposed();
             }
         }
+
+        DisplayAtlas.INSTANCE.onWorldUnload();
     }
 }
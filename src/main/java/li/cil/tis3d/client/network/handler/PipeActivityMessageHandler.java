@@ -0,0 +1,63 @@
+package li.cil.tis3d.client.network.handler;
+
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.block.entity.AbstractComputerBlockEntity;
+import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.network.handler.AbstractMessageHandlerWithLocation;
+import li.cil.tis3d.common.network.message.PipeActivityHiddenMessage;
+import li.cil.tis3d.common.network.message.PipeActivityMessage;
+import li.cil.tis3d.util.WorldUtils;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.network.PacketContext;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.particle.DustParticleEffect;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+@Environment(EnvType.CLIENT)
+public final class PipeActivityMessageHandler extends AbstractMessageHandlerWithLocation<PipeActivityMessage> {
+    @Override
+    protected void onMessageSynchronized(final PipeActivityMessage message, final PacketContext context) {
+        if (!Settings.showPipeActivity) {
+            // Ask the server to stop sending these. May be sent a few times,
+            // until the server got the first one.
+            Network.INSTANCE.sendToServer(new PipeActivityHiddenMessage());
+            return;
+        }
+
+        final World world = getWorld(message, context);
+        if (world == null) {
+            return;
+        }
+
+        for (int i = 0; i < message.getHostCount(); i++) {
+            final BlockPos hostPosition = message.getHost(i);
+            if (!WorldUtils.isBlockLoaded(world, hostPosition)) {
+                continue;
+            }
+
+            final BlockEntity blockEntity = world.getBlockEntity(hostPosition);
+            if (!(blockEntity instanceof AbstractComputerBlockEntity)) {
+                continue;
+            }
+
+            final AbstractComputerBlockEntity host = (AbstractComputerBlockEntity)blockEntity;
+            int mask = message.getMask(i);
+            while (mask != 0) {
+                final int index = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+
+                final Vec3d position = host.getPipeEffectPosition(index);
+                final BlockPos blockPosition = new BlockPos(position);
+                if (world.getBlockState(blockPosition).isOpaque()) {
+                    // Skip particle emission when inside a block where they aren't visible anyway.
+                    continue;
+                }
+
+                world.addParticle(DustParticleEffect.RED, position.x, position.y, position.z, 0, 0, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package li.cil.tis3d.client.render;
+
+import li.cil.tis3d.api.util.RenderLayerAccess;
+import li.cil.tis3d.client.ext.TextureManagerExt;
+import li.cil.tis3d.common.API;
+import li.cil.tis3d.common.TIS3D;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the images of all display modules into a few shared textures.
+ * <p>
+ * Each display gets a fixed size slot in one of the pages of the atlas. All
+ * displays on the same page are rendered with the same render layer, so they
+ * end up in the same batch, and changes to a display only upload the changed
+ * part of its slot.
+ * <p>
+ * Slots are not padded. Texture filtering is nearest neighbor and displays
+ * never draw into their outer pixels, so neighboring slots can't bleed into
+ * each other.
+ * <p>
+ * Displays release their slots explicitly when they are disposed. Pages that
+ * become empty are kept around for reuse, up to a limit, instead of freeing
+ * and allocating their images again. When the client leaves a world, slots
+ * that were not released are released forcibly and counted as leaked. The
+ * slot counts are shown on the debug screen.
+ */
+@Environment(EnvType.CLIENT)
+public final class DisplayAtlas {
+    public static final DisplayAtlas INSTANCE = new DisplayAtlas();
+
+    /**
+     * The size of a single slot in pixels, width = height. Matches the
+     * resolution of the display module.
+     */
+    public static final int SLOT_SIZE = 32;
+
+    /**
+     * The size of a page in pixels, width = height.
+     */
+    private static final int PAGE_SIZE = 512;
+
+    /**
+     * The number of slots per row and column of a page.
+     */
+    private static final int SLOTS_PER_ROW = PAGE_SIZE / SLOT_SIZE;
+
+    /**
+     * The number of slots on a single page.
+     */
+    private static final int SLOTS_PER_PAGE = SLOTS_PER_ROW * SLOTS_PER_ROW;
+
+    /**
+     * The maximum number of empty pages kept for reuse.
+     */
+    private static final int MAX_POOLED_PAGES = 2;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * A region in a page reserved for a single display.
+     */
+    public static final class Slot {
+        private final Page page;
+        private final int index;
+        private final int x, y;
+        private boolean isReleased;
+
+        private Slot(final Page page, final int index) {
+            this.page = page;
+            this.index = index;
+            this.x = (index % SLOTS_PER_ROW) * SLOT_SIZE;
+            this.y = (index / SLOTS_PER_ROW) * SLOT_SIZE;
+        }
+
+        /**
+         * Whether this slot was given back, either explicitly or because the
+         * world was unloaded. Released slots must not be used anymore.
+         *
+         * @return <tt>true</tt> if the slot was released.
+         */
+        public boolean isReleased() {
+            return isReleased;
+        }
+
+        /**
+         * The render layer shared by all slots on the same page.
+         *
+         * @return the render layer to render the slot with.
+         */
+        public RenderLayer getRenderLayer() {
+            return page.renderLayer;
+        }
+
+        public float getU0() {
+            return x / (float)PAGE_SIZE;
+        }
+
+        public float getV0() {
+            return y / (float)PAGE_SIZE;
+        }
+
+        public float getU1() {
+            return (x + SLOT_SIZE) / (float)PAGE_SIZE;
+        }
+
+        public float getV1() {
+            return (y + SLOT_SIZE) / (float)PAGE_SIZE;
+        }
+
+        /**
+         * Set the color of a pixel in the slot. Only becomes visible after
+         * uploading the region the pixel is in.
+         *
+         * @param x    the x position of the pixel in the slot.
+         * @param y    the y position of the pixel in the slot.
+         * @param abgr the new color of the pixel.
+         */
+        public void setPixel(final int x, final int y, final int abgr) {
+            page.image.setPixelColor(this.x + x, this.y + y, abgr);
+        }
+
+        /**
+         * Upload a region of the slot to the GPU.
+         *
+         * @param x0 the left edge of the region, inclusive.
+         * @param y0 the top edge of the region, inclusive.
+         * @param x1 the right edge of the region, exclusive.
+         * @param y1 the bottom edge of the region, exclusive.
+         */
+        public void upload(final int x0, final int y0, final int x1, final int y1) {
+            if (isReleased || x1 <= x0 || y1 <= y0) {
+                return;
+            }
+
+            page.texture.bindTexture();
+            page.image.upload(0, x + x0, y + y0, x + x0, y + y0, x1 - x0, y1 - y0, false, false);
+        }
+    }
+
+    /**
+     * A single texture holding a number of slots.
+     */
+    private static final class Page {
+        private final Identifier id;
+        private final NativeImageBackedTexture texture;
+        private final NativeImage image;
+        private final RenderLayer renderLayer;
+        private final Slot[] slots = new Slot[SLOTS_PER_PAGE];
+        private int slotsInUse;
+
+        private Page(final int id) {
+            this.id = new Identifier(API.MOD_ID, "dynamic/display_atlas_" + id);
+            this.texture = new NativeImageBackedTexture(PAGE_SIZE, PAGE_SIZE, false);
+            this.image = texture.getImage();
+            this.renderLayer = RenderLayerAccess.getCutoutNoDiffLight(this.id);
+
+            // Start out fully transparent, the image is not cleared on creation.
+            image.fillRect(0, 0, PAGE_SIZE, PAGE_SIZE, 0);
+            texture.upload();
+
+            MinecraftClient.getInstance().getTextureManager().registerTexture(this.id, texture);
+        }
+
+        private boolean isFull() {
+            return slotsInUse == SLOTS_PER_PAGE;
+        }
+
+        private boolean isEmpty() {
+            return slotsInUse == 0;
+        }
+
+        private Slot allocate() {
+            for (int index = 0; index < slots.length; index++) {
+                if (slots[index] == null) {
+                    slots[index] = new Slot(this, index);
+                    slotsInUse++;
+                    return slots[index];
+                }
+            }
+            throw new IllegalStateException("Page is full. Check isFull().");
+        }
+
+        private void release(final Slot slot) {
+            slot.isReleased = true;
+            slots[slot.index] = null;
+            slotsInUse--;
+        }
+
+        /**
+         * Release all slots still in use.
+         *
+         * @return the number of slots that were released.
+         */
+        private int releaseAll() {
+            final int released = slotsInUse;
+            for (final Slot slot : slots) {
+                if (slot != null) {
+                    release(slot);
+                }
+            }
+            return released;
+        }
+
+        private void close() {
+            TextureManagerExt.from(MinecraftClient.getInstance().getTextureManager()).unregisterTexture(id);
+            texture.close(); // Also closes the image.
+        }
+    }
+
+    private final List<Page> pages = new ArrayList<>();
+    private final List<Page> pooledPages = new ArrayList<>();
+    private int pageIdCounter;
+
+    /**
+     * Number of slots that were still in use when the world was unloaded.
+     */
+    private int leakedSlots;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Reserve a slot for a display, adding a page if all are full.
+     * <p>
+     * The contents of the slot are undefined until the display uploads its
+     * whole image.
+     *
+     * @return the reserved slot.
+     */
+    public Slot allocate() {
+        Page page = null;
+        for (final Page candidate : pages) {
+            if (!candidate.isFull()) {
+                page = candidate;
+                break;
+            }
+        }
+        if (page == null) {
+            if (!pooledPages.isEmpty()) {
+                page = pooledPages.remove(pooledPages.size() - 1);
+            } else {
+                page = new Page(pageIdCounter++);
+            }
+            pages.add(page);
+        }
+
+        return page.allocate();
+    }
+
+    /**
+     * Give back a slot reserved via {@link #allocate()}. If it was the last
+     * slot in use on its page, the page is pooled or freed. Releasing a slot
+     * more than once has no effect.
+     *
+     * @param slot the slot to release.
+     */
+    public void release(final Slot slot) {
+        if (slot.isReleased) {
+            return;
+        }
+        slot.isReleased = true;
+
+        final Page page = slot.page;
+        page.release(slot);
+        if (page.isEmpty()) {
+            pages.remove(page);
+            recycle(page);
+        }
+    }
+
+    /**
+     * Called when the client leaves a world, after all casings have been
+     * disposed. Releases all slots that are still in use, which would
+     * otherwise never be freed.
+     */
+    public void onWorldUnload() {
+        int released = 0;
+        for (final Page page : pages) {
+            released += page.releaseAll();
+            recycle(page);
+        }
+        pages.clear();
+
+        if (released > 0) {
+            leakedSlots += released;
+            TIS3D.getLog().warn("Released {} display texture slots that were still in use after unloading the world.", released);
+        }
+    }
+
+    /**
+     * The number of slots currently in use, i.e. displays that were rendered
+     * and not disposed yet.
+     *
+     * @return the number of live slots.
+     */
+    public int getLiveCount() {
+        int count = 0;
+        for (final Page page : pages) {
+            count += page.slotsInUse;
+        }
+        return count;
+    }
+
+    /**
+     * The number of slots that can be handed out without allocating a new
+     * page, including those on pooled pages.
+     *
+     * @return the number of pooled slots.
+     */
+    public int getPooledCount() {
+        return (pages.size() + pooledPages.size()) * SLOTS_PER_PAGE - getLiveCount();
+    }
+
+    /**
+     * The number of slots that were never released by their display, since
+     * the game started.
+     *
+     * @return the number of leaked slots.
+     */
+    public int getLeakedCount() {
+        return leakedSlots;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Keep an empty page for reuse, or free it if enough pages are pooled.
+     * Pooled pages stay registered, their contents are replaced by the next
+     * displays using them.
+     *
+     * @param page the empty page.
+     */
+    private void recycle(final Page page) {
+        if (pooledPages.size() < MAX_POOLED_PAGES) {
+            pooledPages.add(page);
+        } else {
+            page.close();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private DisplayAtlas() {
+    }
+}
@@ -9,6 +9,7 @@ import li.cil.tis3d.client.init.Textures;
 import li.cil.tis3d.common.TIS3D;
 import li.cil.tis3d.common.block.entity.CasingBlockEntity;
 import li.cil.tis3d.common.init.Items;
+import li.cil.tis3d.common.machine.StaticRenderModule;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.render.RenderLayer;
@@ -24,9 +25,11 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Quaternion;
 import net.minecraft.util.math.Vec3d;
 
+import javax.annotation.Nullable;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -41,6 +44,15 @@ import java.util.Set;
 public final class CasingBlockEntityRenderer extends BlockEntityRenderer<CasingBlockEntity> {
     private final static Set<Class<?>> BLACKLIST = new HashSet<>();
 
+    private final static Quaternion[] FACE_ROTATIONS = new Quaternion[Face.VALUES.length];
+    private final static Quaternion PORT_ROTATION = new Quaternion(Vector3f.POSITIVE_Z, 90, true);
+
+    static {
+        for (final Face face : Face.VALUES) {
+            FACE_ROTATIONS[face.ordinal()] = getFaceRotation(face);
+        }
+    }
+
     public CasingBlockEntityRenderer(final BlockEntityRenderDispatcher dispatcher) {
         super(dispatcher);
     }
@@ -48,6 +60,9 @@ public final class CasingBlockEntityRenderer extends BlockEntityRenderer<CasingB
     @Override
     public void render(final CasingBlockEntity casing, final float partialTicks, final MatrixStack matrices,
                        final VertexConsumerProvider vertexConsumers, final int light, final int overlay) {
+        final boolean isObserverHoldingKey = isObserverHoldingKey();
+        final CasingRenderCache cache = casing.getRenderCache();
+
         matrices.push();
         matrices.translate(0.5, 0.5, 0.5);
 
@@ -60,11 +75,8 @@ public final class CasingBlockEntityRenderer extends BlockEntityRenderer<CasingB
             matrices.push();
             setupMatrix(face, matrices);
 
-            if (!isObserverHoldingKey() || !drawConfigOverlay(casing, face, matrices, vertexConsumers, overlay)) {
-                // Grab neighbor lighting for module rendering because the casing itself is opaque and hence fully dark.
-                final BlockPos neighborPos = casing.getPos().offset(Face.toDirection(face));
-                final int neighborLight = WorldRenderer.getLightmapCoordinates(dispatcher.world, neighborPos);
-                drawModuleOverlay(casing, face, partialTicks, matrices, vertexConsumers, neighborLight, overlay);
+            if (!isObserverHoldingKey || !drawConfigOverlay(casing, face, matrices, vertexConsumers, overlay)) {
+                drawModuleOverlay(casing, cache.getFace(face), face, partialTicks, matrices, vertexConsumers, overlay);
             }
 
             matrices.pop();
@@ -75,14 +87,22 @@ public final class CasingBlockEntityRenderer extends BlockEntityRenderer<CasingB
 
     private boolean isBackFace(final BlockPos blockPos, final Face face) {
         final Vec3d cameraPosition = dispatcher.camera.getPos();
-        final Vec3d blockCenter = Vec3d.of(blockPos).add(0.5, 0.5, 0.5);
-        final Vec3d faceNormal = new Vec3d(Face.toDirection(face).getUnitVector());
-        final Vec3d faceCenter = blockCenter.add(faceNormal.multiply(0.5));
-        final Vec3d cameraToFaceCenter = faceCenter.subtract(cameraPosition);
-        return faceNormal.dotProduct(cameraToFaceCenter) > 0;
+        final Direction direction = Face.toDirection(face);
+        final double cameraToFaceCenterX = blockPos.getX() + 0.5 + direction.getOffsetX() * 0.5 - cameraPosition.x;
+        final double cameraToFaceCenterY = blockPos.getY() + 0.5 + direction.getOffsetY() * 0.5 - cameraPosition.y;
+        final double cameraToFaceCenterZ = blockPos.getZ() + 0.5 + direction.getOffsetZ() * 0.5 - cameraPosition.z;
+        return direction.getOffsetX() * cameraToFaceCenterX +
+               direction.getOffsetY() * cameraToFaceCenterY +
+               direction.getOffsetZ() * cameraToFaceCenterZ > 0;
     }
 
     private void setupMatrix(final Face face, final MatrixStack matrices) {
+        matrices.multiply(FACE_ROTATIONS[face.ordinal()]);
+        matrices.translate(0.5f, 0.5f, -0.505f);
+        matrices.scale(-1, -1, 1);
+    }
+
+    private static Quaternion getFaceRotation(final Face face) {
         final Vector3f axis;
         final int degree;
 
@@ -115,9 +135,7 @@ public final class CasingBlockEntityRenderer extends BlockEntityRenderer<CasingB
                 throw new RuntimeException("Invalid face");
         }
 
-        matrices.multiply(new Quaternion(axis, degree, true));
-        matrices.translate(0.5f, 0.5f, -0.505f);
-        matrices.scale(-1, -1, 1);
+        return new Quaternion(axis, degree, true);
     }
 
     private boolean drawConfigOverlay(final CasingBlockEntity casing, final Face face,
@@ -169,7 +187,7 @@ public final class CasingBlockEntityRenderer extends BlockEntityRenderer<CasingB
                 }
 
                 matrices.translate(0.5f, 0.5f, 0.5f);
-                matrices.multiply(new Quaternion(Vector3f.POSITIVE_Z, 90, true));
+                matrices.multiply(PORT_ROTATION);
                 matrices.translate(-0.5f, -0.5f, -0.5f);
             }
             matrices.pop();
@@ -189,40 +207,83 @@ public final class CasingBlockEntityRenderer extends BlockEntityRenderer<CasingB
         return true;
     }
 
-    private void drawModuleOverlay(final CasingBlockEntity casing, final Face face, final float partialTicks,
+    private void drawModuleOverlay(final CasingBlockEntity casing, final CasingRenderCache.FaceCache faceCache,
+                                   final Face face, final float partialTicks,
                                    final MatrixStack matrices, final VertexConsumerProvider vcp,
-                                   final int light, final int overlay) {
-        final VertexConsumer vc = vcp.getBuffer(RenderLayer.getCutoutMipped());
+                                   final int overlay) {
+        final Module module = casing.getModule(face);
+        final boolean isStatic = module instanceof StaticRenderModule && !BLACKLIST.contains(module.getClass());
+
+        // Port lock overlays and static modules only get rendered again when something about them changed.
+        final Module staticModule = isStatic ? module : null;
+        final int moduleVersion = isStatic ? ((StaticRenderModule)module).getRenderVersion() : 0;
+        final boolean isEnabled = casing.isCasingEnabled();
+        final int lockedPorts = getLockedPorts(casing, face);
         final Sprite closedSprite = RenderUtil.getSprite(Textures.LOCATION_OVERLAY_CASING_PORT_CLOSED_SMALL);
+        if (!faceCache.isValid(staticModule, moduleVersion, isEnabled, lockedPorts, overlay, closedSprite)) {
+            recordStaticOverlay(faceCache, staticModule, moduleVersion, isEnabled, lockedPorts, overlay, closedSprite);
+        }
+        faceCache.replay(matrices.peek(), vcp);
+
+        if (module == null || isStatic || BLACKLIST.contains(module.getClass())) {
+            return;
+        }
+
+        // Grab neighbor lighting for module rendering because the casing itself is opaque and hence fully dark.
+        final BlockPos neighborPos = casing.getPos().offset(Face.toDirection(face));
+        final int neighborLight = WorldRenderer.getLightmapCoordinates(dispatcher.world, neighborPos);
+        renderModule(module, partialTicks, matrices, vcp, neighborLight, overlay);
+    }
+
+    private void recordStaticOverlay(final CasingRenderCache.FaceCache faceCache, @Nullable final Module module,
+                                     final int moduleVersion, final boolean isEnabled, final int lockedPorts,
+                                     final int overlay, final Sprite closedSprite) {
+        faceCache.begin(module, moduleVersion, isEnabled, lockedPorts, overlay, closedSprite);
+
+        // Recorded in the coordinate system of the face, the actual transform is applied when replaying.
+        final MatrixStack matrices = new MatrixStack();
+        final VertexConsumer vc = faceCache.getBuffer(RenderLayer.getCutoutMipped());
 
         matrices.push();
         matrices.translate(0, 0, -0.005f);
         for (final Port port : Port.CLOCKWISE) {
-            final boolean isClosed = casing.isReceivingPipeLocked(face, port);
-            if (isClosed) {
+            if ((lockedPorts & (1 << port.ordinal())) != 0) {
                 RenderUtil.drawQuad(closedSprite, matrices.peek(), vc, RenderUtil.maxLight, overlay);
             }
 
             matrices.translate(0.5f, 0.5f, 0.5f);
-            matrices.multiply(new Quaternion(Vector3f.POSITIVE_Z, 90, true));
+            matrices.multiply(PORT_ROTATION);
             matrices.translate(-0.5f, -0.5f, -0.5f);
         }
         matrices.pop();
 
-        final Module module = casing.getModule(face);
-        if (module == null) {
-            return;
-        }
-        if (BLACKLIST.contains(module.getClass())) {
-            return;
+        if (module != null && !renderModule(module, 0, matrices, faceCache, RenderUtil.maxLight, overlay)) {
+            // Module got blacklisted, throw away whatever it managed to record.
+            recordStaticOverlay(faceCache, null, 0, isEnabled, lockedPorts, overlay, closedSprite);
         }
+    }
 
+    private boolean renderModule(final Module module, final float partialTicks,
+                                 final MatrixStack matrices, final VertexConsumerProvider vcp,
+                                 final int light, final int overlay) {
         try {
             module.render(dispatcher, partialTicks, matrices, vcp, light, overlay);
+            return true;
         } catch (final Exception e) {
             BLACKLIST.add(module.getClass());
             TIS3D.getLog().error("A module threw an exception while rendering, won't render again!", e);
+            return false;
+        }
+    }
+
+    private static int getLockedPorts(final CasingBlockEntity casing, final Face face) {
+        int lockedPorts = 0;
+        for (final Port port : Port.VALUES) {
+            if (casing.isReceivingPipeLocked(face, port)) {
+                lockedPorts |= 1 << port.ordinal();
+            }
         }
+        return lockedPorts;
     }
 
     private boolean isObserverKindaClose(final CasingBlockEntity casing) {
@@ -0,0 +1,220 @@
+package li.cil.tis3d.client.render.block.entity;
+
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.module.Module;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.Matrix3f;
+import net.minecraft.util.math.Matrix4f;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Static overlay geometry of a single casing, as rendered by the
+ * {@link CasingBlockEntityRenderer}.
+ * <p>
+ * Per face this holds the vertices of the port lock overlays and of modules
+ * implementing {@link li.cil.tis3d.common.machine.StaticRenderModule}, in the
+ * coordinate system of the face. They are recorded once and copied into the
+ * actual buffers each frame, transformed by the current matrices.
+ */
+@Environment(EnvType.CLIENT)
+public final class CasingRenderCache {
+    private final FaceCache[] faces = new FaceCache[Face.VALUES.length];
+
+    // --------------------------------------------------------------------- //
+
+    public CasingRenderCache() {
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = new FaceCache();
+        }
+    }
+
+    FaceCache getFace(final Face face) {
+        return faces[face.ordinal()];
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The recorded geometry of a single face, and the state it was recorded
+     * for. Acts as the vertex consumer provider while recording.
+     */
+    static final class FaceCache implements VertexConsumerProvider {
+        private final Map<RenderLayer, VertexRecorder> recorders = new LinkedHashMap<>();
+        @Nullable
+        private Module module;
+        private int moduleVersion;
+        private boolean isEnabled;
+        private int lockedPorts;
+        private int overlay;
+        // Sprites are replaced when resources are reloaded, which invalidates
+        // the recorded texture coordinates.
+        @Nullable
+        private Sprite lockedPortSprite;
+        private boolean isValid;
+
+        /**
+         * Whether the recorded geometry is still valid for the specified state.
+         *
+         * @return <tt>true</tt> if the geometry can be replayed as is.
+         */
+        boolean isValid(@Nullable final Module module, final int moduleVersion, final boolean isEnabled, final int lockedPorts, final int overlay, final Sprite lockedPortSprite) {
+            return isValid &&
+                   this.module == module &&
+                   this.moduleVersion == moduleVersion &&
+                   this.isEnabled == isEnabled &&
+                   this.lockedPorts == lockedPorts &&
+                   this.overlay == overlay &&
+                   this.lockedPortSprite == lockedPortSprite;
+        }
+
+        /**
+         * Drop the recorded geometry and start recording for the specified state.
+         */
+        void begin(@Nullable final Module module, final int moduleVersion, final boolean isEnabled, final int lockedPorts, final int overlay, final Sprite lockedPortSprite) {
+            for (final VertexRecorder recorder : recorders.values()) {
+                recorder.clear();
+            }
+            this.module = module;
+            this.moduleVersion = moduleVersion;
+            this.isEnabled = isEnabled;
+            this.lockedPorts = lockedPorts;
+            this.overlay = overlay;
+            this.lockedPortSprite = lockedPortSprite;
+            this.isValid = true;
+        }
+
+        /**
+         * Copy the recorded geometry into the buffers of the specified provider.
+         *
+         * @param matrices the transformation of the face.
+         * @param vcp      the provider to get the buffers to render into from.
+         */
+        void replay(final MatrixStack.Entry matrices, final VertexConsumerProvider vcp) {
+            for (final Map.Entry<RenderLayer, VertexRecorder> entry : recorders.entrySet()) {
+                final VertexRecorder recorder = entry.getValue();
+                if (recorder.vertexCount > 0) {
+                    recorder.replay(matrices, vcp.getBuffer(entry.getKey()));
+                }
+            }
+        }
+
+        @Override
+        public VertexConsumer getBuffer(final RenderLayer layer) {
+            return recorders.computeIfAbsent(layer, l -> new VertexRecorder());
+        }
+    }
+
+    /**
+     * Stores vertices in the layout used by block entity renderers, i.e.
+     * position, color, texture, overlay, light and normal.
+     */
+    private static final class VertexRecorder implements VertexConsumer {
+        private static final int FLOATS_PER_VERTEX = 8;
+        private static final int INTS_PER_VERTEX = 3;
+
+        private float[] floats = new float[FLOATS_PER_VERTEX * 4];
+        private int[] ints = new int[INTS_PER_VERTEX * 4];
+        private int vertexCount;
+
+        // The vertex currently being built.
+        private float x, y, z, u, v, normalX, normalY, normalZ;
+        private int color, overlay, light;
+
+        void clear() {
+            vertexCount = 0;
+        }
+
+        void replay(final MatrixStack.Entry matrices, final VertexConsumer vc) {
+            final Matrix4f model = matrices.getModel();
+            final Matrix3f normal = matrices.getNormal();
+            for (int i = 0; i < vertexCount; i++) {
+                final int f = i * FLOATS_PER_VERTEX;
+                final int n = i * INTS_PER_VERTEX;
+                final int argb = ints[n];
+                vc.vertex(model, floats[f], floats[f + 1], floats[f + 2])
+                  .color((argb >>> 16) & 0xFF, (argb >>> 8) & 0xFF, argb & 0xFF, argb >>> 24)
+                  .texture(floats[f + 3], floats[f + 4])
+                  .overlay(ints[n + 1])
+                  .light(ints[n + 2])
+                  .normal(normal, floats[f + 5], floats[f + 6], floats[f + 7])
+                  .next();
+            }
+        }
+
+        @Override
+        public VertexConsumer vertex(final double x, final double y, final double z) {
+            this.x = (float)x;
+            this.y = (float)y;
+            this.z = (float)z;
+            return this;
+        }
+
+        @Override
+        public VertexConsumer color(final int red, final int green, final int blue, final int alpha) {
+            color = ((alpha & 0xFF) << 24) | ((red & 0xFF) << 16) | ((green & 0xFF) << 8) | (blue & 0xFF);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer texture(final float u, final float v) {
+            this.u = u;
+            this.v = v;
+            return this;
+        }
+
+        @Override
+        public VertexConsumer overlay(final int u, final int v) {
+            overlay = (u & 0xFFFF) | ((v & 0xFFFF) << 16);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer light(final int u, final int v) {
+            light = (u & 0xFFFF) | ((v & 0xFFFF) << 16);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer normal(final float x, final float y, final float z) {
+            normalX = x;
+            normalY = y;
+            normalZ = z;
+            return this;
+        }
+
+        @Override
+        public void next() {
+            if ((vertexCount + 1) * FLOATS_PER_VERTEX > floats.length) {
+                floats = Arrays.copyOf(floats, floats.length * 2);
+                ints = Arrays.copyOf(ints, ints.length * 2);
+            }
+
+            final int f = vertexCount * FLOATS_PER_VERTEX;
+            floats[f] = x;
+            floats[f + 1] = y;
+            floats[f + 2] = z;
+            floats[f + 3] = u;
+            floats[f + 4] = v;
+            floats[f + 5] = normalX;
+            floats[f + 6] = normalY;
+            floats[f + 7] = normalZ;
+
+            final int n = vertexCount * INTS_PER_VERTEX;
+            ints[n] = color;
+            ints[n + 1] = overlay;
+            ints[n + 2] = light;
+
+            vertexCount++;
+        }
+    }
+}
@@ -73,6 +73,35 @@ public final class Constants {
     public static final String MESSAGE_TOO_MANY_COLUMNS = "tis3d.compiler.too_many_columns";
     public static final String MESSAGE_TOO_MANY_LINES = "tis3d.compiler.too_many_lines";
 
+    // --------------------------------------------------------------------- //
+    // Controller
+
+    public static final String MESSAGE_CONTROLLER_THROTTLED = "tis3d.controller.throttled";
+
+    // --------------------------------------------------------------------- //
+    // Profiling
+
+    public static final String MESSAGE_PROFILE_STARTED = "tis3d.command.profile.started";
+    public static final String MESSAGE_PROFILE_NOT_PROFILING = "tis3d.command.profile.not_profiling";
+    public static final String MESSAGE_PROFILE_NOTHING_PROFILED = "tis3d.command.profile.nothing_profiled";
+    public static final String MESSAGE_PROFILE_REPORT = "tis3d.command.profile.report";
+    public static final String MESSAGE_PROFILE_TOTALS = "tis3d.command.profile.totals";
+    public static final String MESSAGE_PROFILE_CATEGORY = "tis3d.command.profile.category";
+    public static final String MESSAGE_PROFILE_TOTAL = "tis3d.command.profile.total";
+    public static final String MESSAGE_PROFILE_ENTRY = "tis3d.command.profile.entry";
+    public static final String MESSAGE_PROFILE_MORE = "tis3d.command.profile.more";
+    public static final String MESSAGE_PROFILE_RATE = "tis3d.command.profile.rate";
+    public static final String MESSAGE_PROFILE_RATE_TIMED = "tis3d.command.profile.rate_timed";
+    public static final String MESSAGE_PROFILE_UNIT_STEPS = "tis3d.command.profile.unit.steps";
+    public static final String MESSAGE_PROFILE_UNIT_UPDATES = "tis3d.command.profile.unit.updates";
+    public static final String MESSAGE_PROFILE_UNIT_SCANS = "tis3d.command.profile.unit.scans";
+    public static final String MESSAGE_PROFILE_UNIT_BYTES = "tis3d.command.profile.unit.bytes";
+    public static final String MESSAGE_PROFILE_UNIT_MESSAGES = "tis3d.command.profile.unit.messages";
+    public static final String MESSAGE_PROFILE_UNIT_EFFECTS = "tis3d.command.profile.unit.effects";
+    public static final String MESSAGE_PROFILE_TICK_TIMES = "tis3d.command.profile.tick_times";
+    public static final String MESSAGE_PROFILE_SAVED = "tis3d.command.profile.saved";
+    public static final String MESSAGE_PROFILE_SAVE_FAILED = "tis3d.command.profile.save_failed";
+
     // --------------------------------------------------------------------- //
     // Code book
 
@@ -29,6 +29,48 @@ public final class Settings {
      */
     public static int maxCasingsPerController = 8;
 
+    /**
+     * The number of worker threads used to step controllers in parallel,
+     * zero to step all controllers on the server thread.
+     */
+    public static int parallelControllerThreads = 0;
+
+    /**
+     * The number of steps a controller runs per tick at a redstone power of
+     * 75. Lower powers above 15 are scaled down linearly.
+     */
+    public static int maxStepsPerTick = 5;
+
+    /**
+     * Time in microseconds all controllers together may spend stepping per
+     * tick before expensive controllers are slowed down, zero for no limit.
+     */
+    public static int controllerTickBudget = 0;
+
+    /**
+     * Whether controllers running slower than once per tick step in ticks
+     * offset by their position, instead of all stepping in the same ticks.
+     */
+    public static boolean staggeredClocking = true;
+
+    /**
+     * Whether to only step pipes with pending transitions and modules that
+     * are not idle, instead of stepping everything in each cycle.
+     */
+    public static boolean eventDrivenStepping = true;
+
+    /**
+     * Whether to step everything anyway and count the updates the event
+     * driven scheduler would have wrongly skipped. For debugging only.
+     */
+    public static boolean verifyEventDrivenStepping = false;
+
+    /**
+     * Whether controllers update their multi-block locally when single
+     * casings are added or removed, instead of rescanning all of it.
+     */
+    public static boolean incrementalScanning = true;
+
     /**
      * The maximum number of lines a program may have.
      */
@@ -39,6 +81,18 @@ public final class Settings {
      */
     public static int maxColumnsPerLine = 18;
 
+    /**
+     * Whether execution modules run programs using the packed opcode
+     * interpreter, or the reference instruction implementations.
+     */
+    public static boolean compiledExecution = true;
+
+    /**
+     * Whether execution modules may run several upcoming steps of code that
+     * does not access ports at once, when running multiple steps per tick.
+     */
+    public static boolean fastForwardExecution = true;
+
     /**
      * Maximum number of items stored in our receiver queue.
      * <p>
@@ -51,6 +105,13 @@ public final class Settings {
      */
     public static boolean animateTypingHand = true;
 
+    /**
+     * Whether to show particles for values transferred between modules.
+     * Client side only, servers stop sending pipe activity to clients with
+     * this disabled when they ask to.
+     */
+    public static boolean showPipeActivity = true;
+
     /**
      * The list of <em>disabled</em> modules. Disabled modules will not be
      * registered with the game. Filled in while loading, for convenience.
@@ -62,18 +123,38 @@ public final class Settings {
     private static final String NAME_ANIMATE_TYPING = "module.terminal.animate_typing";
     private static final String NAME_MAX_PACKETS_PER_TICK = "network.max_packets_per_tick";
     private static final String NAME_MAX_PARTICLES_PER_TICK = "network.max_particles_per_tick";
+    private static final String NAME_SHOW_PIPE_ACTIVITY = "network.show_pipe_activity";
     private static final String NAME_MAX_CASINGS_PER_CONTROLLER = "controller.max_casings";
+    private static final String NAME_PARALLEL_CONTROLLER_THREADS = "controller.parallel_threads";
+    private static final String NAME_MAX_STEPS_PER_TICK = "controller.max_steps_per_tick";
+    private static final String NAME_CONTROLLER_TICK_BUDGET = "controller.tick_budget";
+    private static final String NAME_STAGGERED_CLOCKING = "controller.staggered_clock";
+    private static final String NAME_EVENT_DRIVEN_STEPPING = "controller.event_driven";
+    private static final String NAME_VERIFY_EVENT_DRIVEN_STEPPING = "controller.verify_event_driven";
+    private static final String NAME_INCREMENTAL_SCANNING = "controller.incremental_scan";
     private static final String NAME_MAX_LINES_PER_PROGRAM = "module.execution.max_lines_per_program";
     private static final String NAME_MAX_COLUMNS_PER_LINE = "module.execution.max_columns_per_line";
+    private static final String NAME_COMPILED_EXECUTION = "module.execution.compiled";
+    private static final String NAME_FAST_FORWARD_EXECUTION = "module.execution.fast_forward";
     private static final String NAME_MAX_QUEUE_LENGTH = "module.infrared.max_queue_length";
     private static final String NAME_MODULE_ENABLED_PATTERN = "module.%s.enabled";
 
     private static final String COMMENT_ANIMATE_TYPING = "Whether to swing the player's arm while typing on a terminal module.";
     private static final String COMMENT_MAX_PACKETS_PER_TICK = "The maximum number of status packets modules may send per tick. When this is exceeded, throttling kicks in.";
-    private static final String COMMENT_MAX_PARTICLES_PER_TICK = "The maximum number of particle effects data transfer may trigger per tick. When this is exceeded, throttling kicks in.";
+    private static final String COMMENT_MAX_PARTICLES_PER_TICK = "The maximum number of particle effects infrared packets may trigger per tick. When this is exceeded, throttling kicks in.";
+    private static final String COMMENT_SHOW_PIPE_ACTIVITY = "Whether to show particles where modules transfer values. This is a client side setting, clients with this disabled tell the server to stop sending them which pipes were active.";
     private static final String COMMENT_MAX_CASINGS_PER_CONTROLLER = "The maximum number of casings a single controller supports.";
+    private static final String COMMENT_PARALLEL_CONTROLLER_THREADS = "The number of worker threads used to step controllers in parallel. Only controllers with modules that are safe to run off the server thread are stepped in parallel. Set to 0 to step all controllers on the server thread.";
+    private static final String COMMENT_MAX_STEPS_PER_TICK = "The number of steps a controller runs per tick when powered with a redstone signal of 75 (e.g. five full strength signals). Signals between 15 and 75 are scaled accordingly. Higher values make machines run faster, at the cost of server performance.";
+    private static final String COMMENT_CONTROLLER_TICK_BUDGET = "The time in microseconds all controllers together may spend stepping per tick. When this is exceeded, the controllers needing the most time are slowed down so each gets a fair share. Set to 0 to never slow down controllers.";
+    private static final String COMMENT_STAGGERED_CLOCKING = "Whether controllers powered with a signal below 15 step in ticks offset based on their position, spreading the load of many slow controllers over all ticks. Each controller still steps at the same rate. Disable to have all controllers with the same power step in the same ticks.";
+    private static final String COMMENT_EVENT_DRIVEN_STEPPING = "Whether controllers only step pipes and modules that have pending work. Results are identical to stepping everything, this only saves time on multi-blocks that are mostly waiting.";
+    private static final String COMMENT_VERIFY_EVENT_DRIVEN_STEPPING = "Debugging aid: step everything regardless, and log updates the event driven scheduler would have skipped wrongly.";
+    private static final String COMMENT_INCREMENTAL_SCANNING = "Whether controllers update their multi-block locally when casings are added or removed. A full rescan is still performed when the multi-block may have been split, or got connected to another controller.";
     private static final String COMMENT_MAX_LINES_PER_PROGRAM = "The maximum number of lines an ASM program for an execution node may have.";
     private static final String COMMENT_MAX_COLUMNS_PER_LINE = "The maximum number of columns per line of an ASM program for an execution node may have.";
+    private static final String COMMENT_COMPILED_EXECUTION = "Whether execution modules run programs through the packed opcode interpreter. Disable to use the reference instruction implementations instead, e.g. to cross-check behavior.";
+    private static final String COMMENT_FAST_FORWARD_EXECUTION = "Whether execution modules skip ahead through code that does not access ports, such as delay loops, when controllers run multiple steps per tick. Results and timing are the same as when running each step. Requires the compiled interpreter.";
     private static final String COMMENT_MAX_QUEUE_LENGTH = "The maximum number of infrared packets that can be stored in the receiver's buffer.";
     private static final String COMMENT_MODULE_ENABLED_PATTERN = "Whether the %s module is enabled. Disabled modules are not registered, meaning if you disable them later on the items will disappear!";
 
@@ -87,10 +168,20 @@ public final class Settings {
         maxPacketsPerTick = config.getInt(NAME_MAX_PACKETS_PER_TICK, maxPacketsPerTick, 1, 500, COMMENT_MAX_PACKETS_PER_TICK);
         maxParticlesPerTick = config.getInt(NAME_MAX_PARTICLES_PER_TICK, maxParticlesPerTick, 1, 500, COMMENT_MAX_PARTICLES_PER_TICK);
         maxCasingsPerController = config.getInt(NAME_MAX_CASINGS_PER_CONTROLLER, maxCasingsPerController, 1, 512, COMMENT_MAX_CASINGS_PER_CONTROLLER);
+        parallelControllerThreads = config.getInt(NAME_PARALLEL_CONTROLLER_THREADS, parallelControllerThreads, 0, 64, COMMENT_PARALLEL_CONTROLLER_THREADS);
+        maxStepsPerTick = config.getInt(NAME_MAX_STEPS_PER_TICK, maxStepsPerTick, 1, 100, COMMENT_MAX_STEPS_PER_TICK);
+        controllerTickBudget = config.getInt(NAME_CONTROLLER_TICK_BUDGET, controllerTickBudget, 0, 50000, COMMENT_CONTROLLER_TICK_BUDGET);
+        staggeredClocking = config.getBoolean(NAME_STAGGERED_CLOCKING, staggeredClocking, COMMENT_STAGGERED_CLOCKING);
+        eventDrivenStepping = config.getBoolean(NAME_EVENT_DRIVEN_STEPPING, eventDrivenStepping, COMMENT_EVENT_DRIVEN_STEPPING);
+        verifyEventDrivenStepping = config.getBoolean(NAME_VERIFY_EVENT_DRIVEN_STEPPING, verifyEventDrivenStepping, COMMENT_VERIFY_EVENT_DRIVEN_STEPPING);
+        incrementalScanning = config.getBoolean(NAME_INCREMENTAL_SCANNING, incrementalScanning, COMMENT_INCREMENTAL_SCANNING);
         maxLinesPerProgram = config.getInt(NAME_MAX_LINES_PER_PROGRAM, maxLinesPerProgram, 1, 200, COMMENT_MAX_LINES_PER_PROGRAM);
         maxColumnsPerLine = config.getInt(NAME_MAX_COLUMNS_PER_LINE, maxColumnsPerLine, 1, 80, COMMENT_MAX_COLUMNS_PER_LINE);
+        compiledExecution = config.getBoolean(NAME_COMPILED_EXECUTION, compiledExecution, COMMENT_COMPILED_EXECUTION);
+        fastForwardExecution = config.getBoolean(NAME_FAST_FORWARD_EXECUTION, fastForwardExecution, COMMENT_FAST_FORWARD_EXECUTION);
         maxInfraredQueueLength = config.getInt(NAME_MAX_QUEUE_LENGTH, maxInfraredQueueLength, 1, 64, COMMENT_MAX_QUEUE_LENGTH);
         animateTypingHand = config.getBoolean(NAME_ANIMATE_TYPING, animateTypingHand, COMMENT_ANIMATE_TYPING);
+        showPipeActivity = config.getBoolean(NAME_SHOW_PIPE_ACTIVITY, showPipeActivity, COMMENT_SHOW_PIPE_ACTIVITY);
 
         // Rebuild list of disabled modules.
         disabledModules.clear();
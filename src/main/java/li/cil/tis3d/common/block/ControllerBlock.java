@@ -1,5 +1,6 @@
 package li.cil.tis3d.common.block;
 
+import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.block.entity.ControllerBlockEntity;
 import li.cil.tis3d.common.init.Items;
 import net.minecraft.block.Block;
@@ -9,6 +10,7 @@ import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.text.TranslatableText;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.Hand;
 import net.minecraft.util.hit.BlockHitResult;
@@ -61,6 +63,12 @@ public final class ControllerBlock extends Block implements BlockEntityProvider
 
             if (!world.isClient) {
                 controller.forceStep();
+
+                // Let operators know when the tick budget slows down this controller.
+                if (controller.getClockRate() < 1 && player.hasPermissionLevel(2)) {
+                    final long percent = Math.round(controller.getClockRate() * 100);
+                    player.sendMessage(new TranslatableText(Constants.MESSAGE_CONTROLLER_THROTTLED, percent), true);
+                }
             }
 
             return ActionResult.SUCCESS;
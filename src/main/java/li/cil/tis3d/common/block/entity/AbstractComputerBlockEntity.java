@@ -3,8 +3,10 @@ package li.cil.tis3d.common.block.entity;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.machine.PipeHost;
 import li.cil.tis3d.common.machine.PipeImpl;
+import li.cil.tis3d.common.machine.StepStatistics;
 import li.cil.tis3d.util.NBTIds;
 import li.cil.tis3d.util.WorldUtils;
 import net.fabricmc.fabric.api.block.entity.BlockEntityClientSerializable;
@@ -15,6 +17,7 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
 import javax.annotation.Nullable;
@@ -66,6 +69,47 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
     private final AbstractComputerBlockEntity[] neighbors = new AbstractComputerBlockEntity[Face.VALUES.length];
     private final PipeImpl[] pipeOverride = new PipeImpl[pipes.length];
 
+    /**
+     * The sending pipe for each face and port, indexed using {@link #pack(Face, Port)}.
+     * Resolved from {@link #pipeOverride} whenever that is rebuilt, so that
+     * looking up sending pipes doesn't need to map the face and port.
+     */
+    private final PipeImpl[] sendingPipeOverride = new PipeImpl[pipes.length];
+
+    /**
+     * Incremented whenever the pipes returned for any face and port change.
+     */
+    private int routingVersion;
+
+    /**
+     * Bit mask of pipes with a pending state transition, indexed like {@link #pipes}.
+     * Only these pipes need to be stepped in the next update.
+     */
+    private int pendingPipes;
+
+    /**
+     * Bit mask of pipes that transferred a value since the last time the
+     * owning controller sent pipe activity to clients, indexed like {@link #pipes}.
+     */
+    private int transferredPipes;
+
+    /**
+     * Number of pipe updates performed and skipped, for debugging purposes.
+     */
+    private long pipesStepped, pipesSkipped;
+
+    /**
+     * Number of skipped pipes that turned out to have a pending transition
+     * when verifying the pipe scheduler. Should always be zero.
+     */
+    private long pipeMismatches;
+
+    /**
+     * Number of values written per sending face and port, indexed using
+     * {@link #pack(Face, Port)}, for debugging purposes.
+     */
+    private final long[] transferCounts = new long[pipes.length];
+
     // --------------------------------------------------------------------- //
 
     AbstractComputerBlockEntity(final BlockEntityType type) {
@@ -73,9 +117,10 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
         for (final Face face : Face.VALUES) {
             for (final Port port : Port.VALUES) {
                 final int pipeIndex = pack(face, port);
-                pipeOverride[pipeIndex] = pipes[pipeIndex] = new PipeImpl(this, face, mapFace(face, port), mapPort(face, port));
+                pipeOverride[pipeIndex] = pipes[pipeIndex] = new PipeImpl(this, pipeIndex, face, mapFace(face, port), mapPort(face, port));
             }
         }
+        rebuildSendingPipes();
     }
 
     /**
@@ -90,11 +135,96 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
      * <p>
      * This will advance pipes with both an active read and write operation to
      * transferring mode, if they're not already in transferring mode.
+     * <p>
+     * Unless disabled in the settings, only pipes with a pending transition
+     * are stepped. Pipes are still visited in index order, and pipes becoming
+     * pending during this update are picked up if they come after the current
+     * one, exactly like when stepping all pipes.
      */
     void stepPipes() {
-        for (final PipeImpl pipe : pipes) {
-            pipe.step();
+        if (!Settings.eventDrivenStepping || Settings.verifyEventDrivenStepping) {
+            if (Settings.verifyEventDrivenStepping) {
+                for (int index = 0; index < pipes.length; index++) {
+                    if ((pendingPipes & (1 << index)) == 0 && pipes[index].isPending()) {
+                        pipeMismatches++;
+                    }
+                }
+            }
+
+            pendingPipes = 0;
+            for (final PipeImpl pipe : pipes) {
+                pipe.step();
+            }
+            pipesStepped += pipes.length;
+            return;
+        }
+
+        int stepped = 0;
+        int index = 0;
+        while (index < pipes.length) {
+            final int remaining = pendingPipes & (-1 << index);
+            if (remaining == 0) {
+                break;
+            }
+            index = Integer.numberOfTrailingZeros(remaining);
+            pendingPipes &= ~(1 << index);
+            pipes[index].step();
+            stepped++;
+            index++;
+        }
+        pipesStepped += stepped;
+        pipesSkipped += pipes.length - stepped;
+    }
+
+    /**
+     * Sum of the versions of all pipes the module on the specified face reads
+     * from or writes to. Changes whenever any of these pipes changes state.
+     *
+     * @param face the face to get the pipe version for.
+     * @return the combined version of all pipes on that face.
+     * @see PipeImpl#getVersion()
+     */
+    public int getPipeVersion(final Face face) {
+        int version = 0;
+        for (final Port port : Port.VALUES) {
+            version += pipeOverride[pack(face, port)].getVersion();
+            version += pipeOverride[packMapped(face, port)].getVersion();
         }
+        return version;
+    }
+
+    /**
+     * A number that changes whenever the pipes returned by {@link #getReceivingPipe(Face, Port)}
+     * and {@link #getSendingPipe(Face, Port)} may change.
+     *
+     * @return the current routing version.
+     * @see li.cil.tis3d.common.machine.PipeRouting
+     */
+    public int getRoutingVersion() {
+        return routingVersion;
+    }
+
+    /**
+     * Add the pipe scheduler counters of this computer part to the specified statistics.
+     *
+     * @param statistics the statistics to add to.
+     */
+    void collectStepStatistics(final StepStatistics statistics) {
+        statistics.pipesStepped += pipesStepped;
+        statistics.pipesSkipped += pipesSkipped;
+        statistics.mismatches += pipeMismatches;
+    }
+
+    /**
+     * Get the number of values the module on the specified face wrote via the
+     * specified port of this computer part so far.
+     *
+     * @param face the face of the sending module.
+     * @param port the port the module sent the values on.
+     * @return the number of values written.
+     */
+    public long getTransferCount(final Face face, final Port port) {
+        return transferCounts[pack(face, port)];
     }
 
     /**
@@ -106,6 +236,29 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
         return pipes;
     }
 
+    /**
+     * The position at which to show transfers over the pipe with the specified
+     * index, as sent in pipe activity masks.
+     *
+     * @param index the index of the pipe.
+     * @return the position of the transfer effect.
+     */
+    public Vec3d getPipeEffectPosition(final int index) {
+        return pipes[index].getEffectPosition();
+    }
+
+    /**
+     * Get the pipes that transferred a value since the last call and reset
+     * the mask, used by the controller to send pipe activity to clients.
+     *
+     * @return the bit mask of pipes that transferred a value.
+     */
+    int takeTransferredPipes() {
+        final int result = transferredPipes;
+        transferredPipes = 0;
+        return result;
+    }
+
     /**
      * Receiving pipe for the specified face and port.
      *
@@ -127,7 +280,7 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
      * @see li.cil.tis3d.api.machine.Casing#getSendingPipe(Face, Port)
      */
     public Pipe getSendingPipe(final Face face, final Port port) {
-        return pipeOverride[packMapped(face, port)];
+        return sendingPipeOverride[pack(face, port)];
     }
 
     // --------------------------------------------------------------------- //
@@ -143,6 +296,21 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
         return Objects.requireNonNull(getPos());
     }
 
+    @Override
+    public void onBeforeWriteComplete(final Face sendingFace, final Port sendingPort) {
+        transferCounts[pack(sendingFace, sendingPort)]++;
+    }
+
+    @Override
+    public void onPipePending(final int index) {
+        pendingPipes |= 1 << index;
+    }
+
+    @Override
+    public void onPipeTransfer(final int index) {
+        transferredPipes |= 1 << index;
+    }
+
     // --------------------------------------------------------------------- //
     // BlockEntity
 
@@ -195,14 +363,18 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
         }
     }
 
-    protected abstract void scheduleScan();
+    /**
+     * Called when a neighbor of this computer part changed, to have the
+     * controller update the multi-block accordingly.
+     */
+    protected abstract void scheduleTopologyUpdate();
 
     protected void setNeighbor(final Face face, @Nullable final AbstractComputerBlockEntity neighbor) {
-        // If a neighbor changed, do a rescan in the controller.
+        // If a neighbor changed, update the multi-block in the controller.
         final AbstractComputerBlockEntity oldNeighbor = neighbors[face.ordinal()];
         if (neighbor != oldNeighbor) {
             neighbors[face.ordinal()] = neighbor;
-            scheduleScan();
+            scheduleTopologyUpdate();
         }
     }
 
@@ -247,6 +419,11 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
         return neighbors[face.ordinal()] != null;
     }
 
+    @Nullable
+    AbstractComputerBlockEntity getNeighbor(final Face face) {
+        return neighbors[face.ordinal()];
+    }
+
     void rebuildOverrides() {
         // Reset to initial state before checking for inter-block connections.
         System.arraycopy(pipes, 0, pipeOverride, 0, pipes.length);
@@ -270,6 +447,16 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
                 }
             }
         }
+
+        rebuildSendingPipes();
+    }
+
+    /**
+     * Let users of pipes obtained from this computer part know that they may
+     * have to get them again, e.g. because pipes were locked or unlocked.
+     */
+    protected void invalidateRouting() {
+        routingVersion++;
     }
 
     // --------------------------------------------------------------------- //
@@ -281,7 +468,7 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
      * @param port the port defining the edge.
      * @return the face on the other side of the edge.
      */
-    private static Face mapFace(final Face face, final Port port) {
+    public static Face mapFace(final Face face, final Port port) {
         return FACE_MAPPING[face.ordinal()][port.ordinal()];
     }
 
@@ -293,7 +480,7 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
      * @param port the port defining the edge.
      * @return the port on the other side of the edge.
      */
-    private static Port mapPort(final Face face, final Port port) {
+    public static Port mapPort(final Face face, final Port port) {
         return PORT_MAPPING[face.ordinal()][port.ordinal()];
     }
 
@@ -304,7 +491,7 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
      * @param port the port to pack into the number.
      * @return the compressed representation of the face-port tuple.
      */
-    private static int pack(final Face face, final Port port) {
+    public static int pack(final Face face, final Port port) {
         return face.ordinal() * Port.VALUES.length + port.ordinal();
     }
 
@@ -317,7 +504,7 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
      * @param port the port defining the edge to the port to pack.
      * @return the compressed representation of the mapped face-port tuple.
      */
-    private static int packMapped(final Face face, final Port port) {
+    public static int packMapped(final Face face, final Port port) {
         return mapFace(face, port).ordinal() * Port.VALUES.length + mapPort(face, port).ordinal();
     }
 
@@ -337,6 +524,19 @@ public abstract class AbstractComputerBlockEntity extends BlockEntity implements
         }
     }
 
+    /**
+     * Resolve the sending pipe for each face and port from the current pipe
+     * overrides, then invalidate the routing.
+     */
+    private void rebuildSendingPipes() {
+        for (final Face face : Face.VALUES) {
+            for (final Port port : Port.VALUES) {
+                sendingPipeOverride[pack(face, port)] = pipeOverride[packMapped(face, port)];
+            }
+        }
+        invalidateRouting();
+    }
+
     /**
      * Populates the {@link #pipeOverride} array for the specified computer's
      * face and port by traversing the computer multi-block until an open face
@@ -8,12 +8,15 @@ import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.api.module.traits.BlockChangeAware;
 import li.cil.tis3d.api.module.traits.BundledRedstone;
 import li.cil.tis3d.api.module.traits.Redstone;
+import li.cil.tis3d.client.render.block.entity.CasingRenderCache;
 import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.integration.redstone.RedstoneIntegration;
 import li.cil.tis3d.common.inventory.CasingInventory;
 import li.cil.tis3d.common.inventory.SidedInventoryProxy;
 import li.cil.tis3d.common.machine.CasingImpl;
 import li.cil.tis3d.common.machine.CasingProxy;
+import li.cil.tis3d.common.machine.DeferredEffects;
+import li.cil.tis3d.common.machine.StepStatistics;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.CasingEnabledStateMessage;
 import li.cil.tis3d.common.network.message.CasingLockedStateMessage;
@@ -75,6 +78,10 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
     private boolean isEnabled;
     private boolean redstoneDirty = true;
 
+    // Overlay geometry recorded by the casing renderer, created on first use.
+    @Environment(EnvType.CLIENT)
+    private CasingRenderCache renderCache;
+
     // --------------------------------------------------------------------- //
 
     public CasingBlockEntity() {
@@ -117,6 +124,8 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
         if (isReceivingPipeLocked(face, port) != value) {
             getReceivingPipe(face, port).cancelRead();
             locked[face.ordinal()][port.ordinal()] = value;
+            invalidateRouting();
+            casing.wakeModules();
             sendReceivingPipeLockedState(face, port);
         }
     }
@@ -248,9 +257,36 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
         casing.stepModules();
     }
 
+    @Override
+    void rebuildOverrides() {
+        super.rebuildOverrides();
+
+        // Modules may be connected to different pipes now.
+        casing.wakeModules();
+    }
+
+    @Override
+    void collectStepStatistics(final StepStatistics statistics) {
+        super.collectStepStatistics(statistics);
+        casing.collectStepStatistics(statistics);
+    }
+
     // --------------------------------------------------------------------- //
     // PipeHost
 
+    @Override
+    protected void scheduleTopologyUpdate() {
+        final World world = Objects.requireNonNull(getWorld());
+        if (world.isClient) {
+            return;
+        }
+        if (getController() != null) {
+            getController().scheduleTopologyUpdate(this);
+        } else {
+            scheduleScan();
+        }
+    }
+
     @Override
     protected void setNeighbor(final Face face, @Nullable final AbstractComputerBlockEntity neighbor) {
         super.setNeighbor(face, neighbor);
@@ -334,7 +370,11 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
             onDisabled();
         }
 
-        dispose();
+        // Let the controller drop us without rescanning, if possible.
+        if (getController() != null) {
+            getController().scheduleTopologyUpdate(this);
+        }
+        casing.onDisposed();
     }
 
     @Override
@@ -373,6 +413,10 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
 
         nbt.putBoolean(TAG_ENABLED, isEnabled);
 
+        // Clients recreate the modules from this, losing the module states
+        // that deltas are based on, so start over with full states.
+        Network.INSTANCE.resetModuleStates(casing);
+
         return nbt;
     }
 
@@ -381,6 +425,7 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
         super.readFromNBTCommon(nbt);
 
         decompressClosed(nbt.getByteArray(TAG_LOCKED), locked);
+        invalidateRouting();
 
         final CompoundTag inventoryNbt = nbt.getCompound(TAG_INVENTORY);
         inventory.readFromNBT(inventoryNbt);
@@ -462,6 +507,21 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
     @Environment(EnvType.CLIENT)
     public void setReceivingPipeLockedClient(final Face face, final Port port, final boolean value) {
         locked[face.ordinal()][port.ordinal()] = value;
+        invalidateRouting();
+    }
+
+    /**
+     * The static overlay geometry of this casing, used by the casing renderer
+     * to avoid rendering unchanged overlays anew every frame.
+     *
+     * @return the render cache of this casing.
+     */
+    @Environment(EnvType.CLIENT)
+    public CasingRenderCache getRenderCache() {
+        if (renderCache == null) {
+            renderCache = new CasingRenderCache();
+        }
+        return renderCache;
     }
 
     // --------------------------------------------------------------------- //
@@ -516,10 +576,15 @@ public final class CasingBlockEntity extends AbstractComputerBlockEntity impleme
     }
 
     private void sendState() {
-        final World world = Objects.requireNonNull(getWorld());
-
-        final CasingEnabledStateMessage message = new CasingEnabledStateMessage(this, isEnabled);
-        Network.INSTANCE.sendToClientsInDimension(message, world);
+        // Deferred with the effects of steps when enabling modules in a
+        // multi-block outside of a world.
+        final boolean value = isEnabled;
+        DeferredEffects.add(() -> {
+            final World world = Objects.requireNonNull(getWorld());
+
+            final CasingEnabledStateMessage message = new CasingEnabledStateMessage(this, value);
+            Network.INSTANCE.sendToClientsInDimension(message, world);
+        });
     }
 
     private void dispose() {
@@ -1,10 +1,20 @@
 package li.cil.tis3d.common.block.entity;
 
+import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.common.API;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.machine.DeferredEffects;
+import li.cil.tis3d.common.machine.StepBatch;
+import li.cil.tis3d.common.machine.StepStatistics;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.HaltAndCatchFireMessage;
+import li.cil.tis3d.common.network.message.PipeActivityMessage;
+import li.cil.tis3d.common.profiler.ControllerScanEvent;
+import li.cil.tis3d.common.profiler.ControllerStepEvent;
+import li.cil.tis3d.common.profiler.FlightRecorderEvents;
+import li.cil.tis3d.common.profiler.TickProfiler;
 import li.cil.tis3d.util.WorldUtils;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
@@ -16,8 +26,10 @@ import net.minecraft.sound.SoundEvents;
 import net.minecraft.util.Tickable;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 
+import javax.annotation.Nullable;
 import java.util.*;
 
 /**
@@ -107,6 +119,19 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
      */
     private final List<CasingBlockEntity> casings = new ArrayList<>(Settings.maxCasingsPerController);
 
+    /**
+     * Flat copy of {@link #casings} iterated when stepping, built on demand.
+     * Reset to <tt>null</tt> whenever the list of casings changes.
+     */
+    @Nullable
+    private CasingBlockEntity[] steppedCasings;
+
+    /**
+     * Computer parts of the multi-block whose neighbors changed since the
+     * last tick, see {@link #updateTopology()}.
+     */
+    private final Set<AbstractComputerBlockEntity> pendingTopologyUpdates = new LinkedHashSet<>();
+
     /**
      * The current state of the controller.
      */
@@ -130,6 +155,39 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
      */
     private boolean forceStep;
 
+    /**
+     * Number of steps scheduled with the {@link ParallelControllerStepper} this tick.
+     */
+    private int scheduledSteps;
+
+    /**
+     * Whether a scheduled step caused an HCF, to be applied on the server thread.
+     */
+    private boolean scheduledHaltAndCatchFire;
+
+    /**
+     * Side effects of scheduled steps, applied on the server thread.
+     */
+    private final DeferredEffects deferredEffects = new DeferredEffects();
+
+    /**
+     * Progress of the batch of steps run via {@link #runScheduledSteps()},
+     * letting modules skip ahead where that does not change the outcome.
+     */
+    private final StepBatch stepBatch = new StepBatch();
+
+    /**
+     * Measured step cost and current clock rate, see {@link ControllerScheduler}.
+     */
+    private final ControllerScheduler.Share schedulerShare = new ControllerScheduler.Share();
+
+    /**
+     * Reused for collecting the pipe activity sent each tick, grown to fit
+     * all parts of the multi-block, see {@link #sendPipeActivity()}.
+     */
+    private BlockPos[] pipeActivityHosts = new BlockPos[0];
+    private int[] pipeActivityMasks = new int[0];
+
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -155,6 +213,32 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
         return state;
     }
 
+    /**
+     * Get the counters of the event driven module and pipe scheduler,
+     * summed up over this controller and all of its casings.
+     *
+     * @return the current scheduler statistics.
+     */
+    public StepStatistics getStepStatistics() {
+        final StepStatistics statistics = new StepStatistics();
+        collectStepStatistics(statistics);
+        for (final CasingBlockEntity casing : casings) {
+            casing.collectStepStatistics(statistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Get the fraction of its steps this controller currently runs, lowered
+     * below one while the {@link ControllerScheduler} is slowing it down to
+     * keep within the tick budget.
+     *
+     * @return the current effective clock rate.
+     */
+    public double getClockRate() {
+        return schedulerShare.clockRate;
+    }
+
     /**
      * Schedule a rescan for connected casings.
      * <p>
@@ -164,6 +248,24 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
         state = ControllerState.SCANNING;
     }
 
+    /**
+     * Schedule updating the multi-block after the neighbors of one of its
+     * parts changed, or one of its casings was removed.
+     * <p>
+     * Unless disabled in the settings, this is handled locally in the next
+     * tick if possible, otherwise it schedules a rescan.
+     *
+     * @param computer the changed part of the multi-block.
+     */
+    void scheduleTopologyUpdate(final AbstractComputerBlockEntity computer) {
+        final World world = Objects.requireNonNull(getWorld());
+        if (Settings.incrementalScanning && !world.isClient && (state == ControllerState.READY || state == ControllerState.RUNNING)) {
+            pendingTopologyUpdates.add(computer);
+        } else {
+            scheduleScan();
+        }
+    }
+
     /**
      * If the controller is running, force at least one step in the next tick,
      * even if the controller is currently in the paused state. This will not
@@ -218,11 +320,18 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
             casing.setController(null);
         }
         casings.clear();
+        steppedCasings = null;
+        pendingTopologyUpdates.clear();
     }
 
     // --------------------------------------------------------------------- //
     // ComputerBlockEntity
 
+    @Override
+    protected void scheduleTopologyUpdate() {
+        scheduleTopologyUpdate(this);
+    }
+
     @Override
     public void onChunkUnload() {
         super.onChunkUnload();
@@ -311,8 +420,17 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
         }
 
         // Check if we need to rescan our multi-block structure.
-        if (state == ControllerState.SCANNING) {
-            scan();
+        if (state == ControllerState.SCANNING || !pendingTopologyUpdates.isEmpty()) {
+            final boolean isIncremental = state != ControllerState.SCANNING;
+            final ControllerScanEvent event = FlightRecorderEvents.beginScan();
+            final long start = System.nanoTime();
+            if (isIncremental) {
+                updateTopology();
+            } else {
+                scan();
+            }
+            TickProfiler.INSTANCE.recordScan(this, System.nanoTime() - start);
+            FlightRecorderEvents.endScan(event, this, isIncremental, casings.size(), state);
         }
 
         // Stop if we're in an invalid state.
@@ -349,28 +467,43 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
                 // Operating, step all casings redstone input info once.
                 casings.forEach(CasingBlockEntity::stepRedstone);
 
-                try {
-                    // 0 = off, we never have this or we'd be in the READY state.
-                    // 1 = paused, i.e. we don't lose state, but don't step.
-                    // [2-14] = step every 15-n-th step.
-                    // 15 = step every tick.
-                    // [16-75] = step n/15 times a tick.
-                    // 75 = step 5 times a tick.
-                    if (power < 15) {
-                        // Stepping slower than 100%.
-                        final int delay = 15 - power;
-                        if (world.getTime() % delay == 0 || forceStep) {
-                            step();
-                        }
+                // 0 = off, we never have this or we'd be in the READY state.
+                // 1 = paused, i.e. we don't lose state, but don't step.
+                // [2-14] = step every 15-n-th step.
+                // 15 = step every tick.
+                // [16-75] = step scaled up to maxStepsPerTick times a tick,
+                //           i.e. n/15 times a tick for the default of five.
+                // 75 = step maxStepsPerTick times a tick.
+                int steps;
+                if (power < 15) {
+                    // Stepping slower than 100%.
+                    final int delay = 15 - power;
+                    steps = ((world.getTime() + getClockPhase(delay)) % delay == 0 || forceStep) ? 1 : 0;
+                } else {
+                    // Stepping faster than 100%.
+                    steps = 1 + (power - 15) * (Settings.maxStepsPerTick - 1) / 60;
+                }
+
+                // Keep within the tick budget, but always honor manual steps.
+                if (steps > 0 && !forceStep) {
+                    steps = ControllerScheduler.INSTANCE.throttle(schedulerShare, steps);
+                }
+
+                if (steps > 0 && !ParallelControllerStepper.INSTANCE.schedule(this, steps)) {
+                    if (steps > 1) {
+                        // Run all steps in one batch, sending client updates
+                        // and effects only once for all of them.
+                        setScheduledSteps(steps);
+                        runScheduledSteps();
+                        finishScheduledSteps();
                     } else {
-                        // Stepping faster than 100%.
-                        final int steps = power / 15;
-                        for (int step = 0; step < steps; step++) {
-                            step();
+                        try {
+                            step(1);
+                        } catch (final HaltAndCatchFireException e) {
+                            haltAndCatchFire();
                         }
+                        sendPipeActivity();
                     }
-                } catch (final HaltAndCatchFireException e) {
-                    haltAndCatchFire();
                 }
             }
 
@@ -437,6 +570,9 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
     private void scan() {
         final World world = Objects.requireNonNull(getWorld());
 
+        // Covers any pending local updates.
+        pendingTopologyUpdates.clear();
+
         // List of processed tile entities to avoid loops.
         final Set<BlockEntity> processed = new HashSet<>();
         // List of pending tile entities that still need to be scanned.
@@ -490,6 +626,7 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
         // control over but no longer, setting their controller to null and
         // telling them to reschedule, just in case (onDisable *should* be fine
         // but better safe than sorry).
+        steppedCasings = null;
         casings.removeAll(newCasings);
         casings.forEach(c -> c.setController(null));
         casings.forEach(CasingBlockEntity::scheduleScan);
@@ -515,6 +652,187 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
         state = ControllerState.READY;
     }
 
+    /**
+     * Apply changes scheduled via {@link #scheduleTopologyUpdate(AbstractComputerBlockEntity)}
+     * without rescanning the whole multi-block.
+     * <p>
+     * Newly connected casings are found by searching outwards from the changed
+     * parts only. Removed casings are dropped if that cannot have split the
+     * multi-block. Pipe overrides are only rebuilt close to the changes. When
+     * anything else comes up, e.g. another controller or the border of the
+     * loaded area, this falls back to a full scan to handle it.
+     */
+    private void updateTopology() {
+        final World world = Objects.requireNonNull(getWorld());
+
+        steppedCasings = null;
+
+        // Parts that had their neighbors changed, casings that were removed
+        // and casings that were added, respectively.
+        final List<AbstractComputerBlockEntity> changed = new ArrayList<>();
+        final List<CasingBlockEntity> removed = new ArrayList<>();
+        final List<CasingBlockEntity> added = new ArrayList<>();
+
+        while (!pendingTopologyUpdates.isEmpty()) {
+            final Iterator<AbstractComputerBlockEntity> iterator = pendingTopologyUpdates.iterator();
+            final AbstractComputerBlockEntity computer = iterator.next();
+            iterator.remove();
+
+            // Only parts of our multi-block notify us, but be defensive.
+            if (computer != this && (!(computer instanceof CasingBlockEntity) || ((CasingBlockEntity)computer).getController() != this)) {
+                rescan();
+                return;
+            }
+
+            // We are ticking, so this can only be a casing.
+            if (computer.isRemoved()) {
+                removed.add((CasingBlockEntity)computer);
+                continue;
+            }
+
+            changed.add(computer);
+
+            for (final Face face : Face.VALUES) {
+                if (!WorldUtils.isBlockLoaded(world, computer.getPos().offset(Face.toDirection(face)))) {
+                    rescan();
+                    return;
+                }
+
+                final AbstractComputerBlockEntity neighbor = computer.getNeighbor(face);
+                if (neighbor == null || neighbor == this) {
+                    continue;
+                }
+
+                // Let the full scan deal with multiple controllers.
+                if (neighbor instanceof ControllerBlockEntity) {
+                    rescan();
+                    return;
+                }
+
+                final CasingBlockEntity casing = (CasingBlockEntity)neighbor;
+                if (casing.getController() == this) {
+                    continue;
+                }
+
+                // Casings of another multi-block, or too many casings.
+                if (casing.getController() != null || casing.isRemoved() || !casing.hasWorld() ||
+                    casings.size() + 1 > Settings.maxCasingsPerController) {
+                    rescan();
+                    return;
+                }
+
+                // Newly connected casing, take it over and continue the
+                // search from there.
+                casing.setController(this);
+                casings.add(casing);
+                added.add(casing);
+                casing.checkNeighbors();
+                pendingTopologyUpdates.add(casing);
+
+                // Checking the new casing's neighbors found another controller.
+                if (state == ControllerState.SCANNING) {
+                    scan();
+                    return;
+                }
+            }
+        }
+
+        for (final CasingBlockEntity casing : removed) {
+            if (!areNeighborsConnected(casing)) {
+                rescan();
+                return;
+            }
+        }
+
+        for (final CasingBlockEntity casing : removed) {
+            casings.remove(casing);
+            casing.setController(null);
+        }
+
+        // The pipe overrides of a part depend on the neighbors of the parts
+        // right next to it, including diagonally. Rebuild in a slightly larger
+        // area to be on the safe side, this is still much cheaper than a scan.
+        final List<BlockPos> positions = new ArrayList<>();
+        changed.forEach(c -> positions.add(c.getPos()));
+        removed.forEach(c -> positions.add(c.getPos()));
+        for (final CasingBlockEntity casing : casings) {
+            if (isNear(casing.getPos(), positions)) {
+                casing.rebuildOverrides();
+            }
+        }
+        if (isNear(getPos(), positions)) {
+            rebuildOverrides();
+        }
+
+        if (!added.isEmpty()) {
+            // Same order as after a full scan, see scan().
+            casings.sort(Comparator.comparing(CasingBlockEntity::getPosition));
+            if (state == ControllerState.RUNNING) {
+                added.forEach(CasingBlockEntity::onEnabled);
+            }
+        }
+    }
+
+    /**
+     * Check whether all remaining neighbors of a removed casing are still
+     * connected to each other through parts right next to the casing. If so,
+     * removing the casing cannot have split the multi-block.
+     *
+     * @param removed the removed casing.
+     * @return <tt>true</tt> if the neighbors are connected, <tt>false</tt> if the multi-block may have been split.
+     */
+    private static boolean areNeighborsConnected(final CasingBlockEntity removed) {
+        final List<AbstractComputerBlockEntity> neighbors = new ArrayList<>();
+        for (final Face face : Face.VALUES) {
+            final AbstractComputerBlockEntity neighbor = removed.getNeighbor(face);
+            if (neighbor != null && !neighbor.isRemoved()) {
+                neighbors.add(neighbor);
+            }
+        }
+        if (neighbors.size() < 2) {
+            return true;
+        }
+
+        final List<BlockPos> center = Collections.singletonList(removed.getPos());
+        final Set<AbstractComputerBlockEntity> reached = new HashSet<>();
+        final Queue<AbstractComputerBlockEntity> queue = new ArrayDeque<>();
+        reached.add(neighbors.get(0));
+        queue.add(neighbors.get(0));
+        while (!queue.isEmpty()) {
+            final AbstractComputerBlockEntity computer = queue.remove();
+            for (final Face face : Face.VALUES) {
+                final AbstractComputerBlockEntity neighbor = computer.getNeighbor(face);
+                if (neighbor != null && !neighbor.isRemoved() && isNear(neighbor.getPos(), center, 1) && reached.add(neighbor)) {
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return reached.containsAll(neighbors);
+    }
+
+    private static boolean isNear(final BlockPos pos, final List<BlockPos> positions) {
+        return isNear(pos, positions, 2);
+    }
+
+    private static boolean isNear(final BlockPos pos, final List<BlockPos> positions, final int distance) {
+        for (final BlockPos other : positions) {
+            if (Math.abs(pos.getX() - other.getX()) <= distance &&
+                Math.abs(pos.getY() - other.getY()) <= distance &&
+                Math.abs(pos.getZ() - other.getZ()) <= distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fall back to a full scan right away.
+     */
+    private void rescan() {
+        scheduleScan();
+        scan();
+    }
+
     /**
      * Compute the <em>accumulative</em> redstone power applied to the controller.
      *
@@ -531,12 +849,168 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
     }
 
     /**
-     * Advance all computer parts by one step.
+     * Get the offset of the ticks this controller steps in when stepping
+     * only every few ticks.
+     * <p>
+     * Derived from the position, so that controllers with the same power
+     * are spread over all ticks of the period, while each one keeps stepping
+     * at a fixed rate and in the same ticks after being reloaded.
+     *
+     * @param delay the number of ticks between steps.
+     * @return the offset to add to the world time, in <tt>[0, delay)</tt>.
+     */
+    private int getClockPhase(final int delay) {
+        if (!Settings.staggeredClocking) {
+            return 0;
+        }
+        final BlockPos pos = getPos();
+        return (int)((MathHelper.hashCode(pos.getX(), pos.getY(), pos.getZ()) >>> 16) % delay);
+    }
+
+    /**
+     * Run steps scheduled via the {@link ParallelControllerStepper}, or a
+     * batch of steps on the server thread.
+     * <p>
+     * All side effects of stepping are collected in {@link #deferredEffects}
+     * and applied in {@link #finishScheduledSteps()} on the server thread.
+     */
+    void runScheduledSteps() {
+        deferredEffects.begin();
+        stepBatch.begin();
+        try {
+            step(scheduledSteps);
+        } catch (final HaltAndCatchFireException e) {
+            scheduledHaltAndCatchFire = true;
+        } finally {
+            stepBatch.end();
+            deferredEffects.end();
+        }
+    }
+
+    /**
+     * Apply the side effects of steps run via {@link #runScheduledSteps()}.
+     * Called on the server thread after all workers have finished.
+     */
+    void finishScheduledSteps() {
+        deferredEffects.apply();
+        sendPipeActivity();
+        scheduledSteps = 0;
+        if (scheduledHaltAndCatchFire) {
+            scheduledHaltAndCatchFire = false;
+            haltAndCatchFire();
+        }
+    }
+
+    /**
+     * Send which pipes of this multi-block transferred values in the steps
+     * run this tick to nearby clients, which show the transfers themselves.
+     * Sends nothing if no pipes transferred anything.
+     */
+    private void sendPipeActivity() {
+        final World world = getWorld();
+        if (world == null) {
+            return;
+        }
+
+        if (pipeActivityHosts.length < casings.size() + 1) {
+            pipeActivityHosts = new BlockPos[casings.size() + 1];
+            pipeActivityMasks = new int[pipeActivityHosts.length];
+        }
+
+        int count = 0;
+        final int controllerMask = takeTransferredPipes();
+        if (controllerMask != 0) {
+            pipeActivityHosts[count] = getPos();
+            pipeActivityMasks[count] = controllerMask;
+            count++;
+        }
+        for (final CasingBlockEntity casing : casings) {
+            final int casingMask = casing.takeTransferredPipes();
+            if (casingMask != 0) {
+                pipeActivityHosts[count] = casing.getPos();
+                pipeActivityMasks[count] = casingMask;
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            final PipeActivityMessage message = new PipeActivityMessage(world, getPos(), pipeActivityHosts, pipeActivityMasks, count);
+            Network.INSTANCE.sendPipeActivity(message, world, getPos());
+        }
+    }
+
+    /**
+     * Whether the steps scheduled for this tick may still be run, i.e. nothing
+     * happened to this controller between scheduling and running them.
+     *
+     * @return <tt>true</tt> if the scheduled steps may be run.
      */
-    private void step() {
-        casings.forEach(CasingBlockEntity::stepModules);
-        casings.forEach(CasingBlockEntity::stepPipes);
-        stepPipes();
+    boolean canRunScheduledSteps() {
+        return !isRemoved() && state == ControllerState.RUNNING;
+    }
+
+    /**
+     * Set the number of steps to run via {@link #runScheduledSteps()}.
+     *
+     * @param steps the number of steps to run.
+     */
+    void setScheduledSteps(final int steps) {
+        scheduledSteps = steps;
+    }
+
+    /**
+     * Checks whether all modules in all our casings may be stepped off the
+     * server thread, see {@link ParallelControllerStepper#isParallelSafe(Module)}.
+     *
+     * @return <tt>true</tt> if this controller may be stepped in parallel.
+     */
+    boolean isParallelSafe() {
+        for (final CasingBlockEntity casing : casings) {
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module != null && !ParallelControllerStepper.isParallelSafe(module)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Advance all computer parts by the specified number of steps.
+     *
+     * @param steps the number of steps to run.
+     */
+    private void step(final int steps) {
+        CasingBlockEntity[] stepped = steppedCasings;
+        if (stepped == null) {
+            stepped = steppedCasings = casings.toArray(new CasingBlockEntity[0]);
+        }
+
+        final boolean isSampling = TickProfiler.INSTANCE.isSampling();
+        final ControllerStepEvent event = FlightRecorderEvents.beginControllerStep();
+        final long start = System.nanoTime();
+        try {
+            for (int step = 0; step < steps; step++) {
+                stepBatch.setRemainingSteps(steps - step - 1);
+                for (final CasingBlockEntity casing : stepped) {
+                    casing.stepModules();
+                }
+                final long pipesStart = isSampling ? System.nanoTime() : 0;
+                for (final CasingBlockEntity casing : stepped) {
+                    casing.stepPipes();
+                }
+                stepPipes();
+                if (isSampling) {
+                    TickProfiler.INSTANCE.recordPipeSteps(System.nanoTime() - pipesStart);
+                }
+            }
+        } finally {
+            final long nanos = System.nanoTime() - start;
+            ControllerScheduler.measure(schedulerShare, steps, nanos);
+            TickProfiler.INSTANCE.recordControllerSteps(this, steps, nanos);
+            FlightRecorderEvents.endControllerStep(event, this, steps, stepped.length);
+        }
     }
 
     /**
@@ -564,6 +1038,7 @@ public final class ControllerBlockEntity extends AbstractComputerBlockEntity imp
             casings.forEach(CasingBlockEntity::onDisabled);
         }
         casings.clear();
+        steppedCasings = null;
 
         state = toState;
     }
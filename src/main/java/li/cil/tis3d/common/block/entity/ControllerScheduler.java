@@ -0,0 +1,194 @@
+package li.cil.tis3d.common.block.entity;
+
+import li.cil.tis3d.common.API;
+import li.cil.tis3d.common.Settings;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the time all controllers spend stepping within a per-tick budget.
+ * <p>
+ * Controllers report the steps they want to run each tick and measure how
+ * long their steps take. At the end of the server tick the budget is shared
+ * among the controllers that ran: controllers needing less than an equal
+ * share get all they need, the rest is split evenly among the others (max-min
+ * fairness). Controllers that would exceed their share have their clock rate
+ * lowered for the next tick, so they run fewer steps per tick, or skip ticks
+ * when only running a single step. Cheap machines are never slowed down by
+ * expensive ones.
+ * <p>
+ * Step costs are smoothed over several ticks, so the rates settle instead
+ * of oscillating when the load changes.
+ */
+public final class ControllerScheduler {
+    public static final ControllerScheduler INSTANCE = new ControllerScheduler();
+
+    /**
+     * Weight of the latest measurement in the smoothed cost per step.
+     */
+    private static final double COST_SMOOTHING = 0.2;
+
+    /**
+     * Lowest clock rate a controller is throttled to, so that every machine
+     * keeps making some progress, no matter how expensive it is.
+     */
+    private static final double MIN_CLOCK_RATE = 0.01;
+
+    /**
+     * Time in ticks between log messages while controllers are throttled.
+     */
+    private static final int LOG_INTERVAL = 20 * 60;
+
+    /**
+     * Per-controller bookkeeping, owned by the controller.
+     */
+    static final class Share {
+        /**
+         * Smoothed time per step in nanoseconds, negative until measured.
+         */
+        double costPerStep = -1;
+
+        /**
+         * Fraction of requested steps the controller may run.
+         */
+        double clockRate = 1;
+
+        /**
+         * Fractional steps carried over to the next tick while throttled.
+         */
+        double credit;
+
+        /**
+         * Steps requested this tick, before throttling.
+         */
+        int requestedSteps;
+
+        /**
+         * Steps run and time spent running them this tick. Written by the
+         * thread stepping the controller, read on the server thread after
+         * all steps of the tick have finished.
+         */
+        int measuredSteps;
+        long measuredNanos;
+
+        /**
+         * Expected time to run the requested steps, used while sharing.
+         */
+        double demand;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private final List<Share> active = new ArrayList<>();
+    private int ticksUntilLog;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the number of steps a controller may run this tick.
+     *
+     * @param share the bookkeeping of the controller.
+     * @param steps the number of steps the controller wants to run.
+     * @return the number of steps the controller may run.
+     */
+    int throttle(final Share share, final int steps) {
+        if (share.requestedSteps == 0) {
+            active.add(share);
+        }
+        share.requestedSteps += steps;
+
+        if (share.clockRate >= 1) {
+            share.credit = 0;
+            return steps;
+        }
+
+        share.credit += steps * share.clockRate;
+        final int allowed = (int)share.credit;
+        share.credit -= allowed;
+        return allowed;
+    }
+
+    /**
+     * Record the time spent running steps of a controller.
+     *
+     * @param share the bookkeeping of the controller.
+     * @param steps the number of steps run.
+     * @param nanos the time spent running them.
+     */
+    static void measure(final Share share, final int steps, final long nanos) {
+        share.measuredSteps += steps;
+        share.measuredNanos += nanos;
+    }
+
+    public void serverTick() {
+        if (active.isEmpty()) {
+            return;
+        }
+
+        double totalDemand = 0;
+        for (final Share share : active) {
+            if (share.measuredSteps > 0) {
+                final double cost = share.measuredNanos / (double)share.measuredSteps;
+                share.costPerStep = share.costPerStep < 0 ? cost : share.costPerStep + (cost - share.costPerStep) * COST_SMOOTHING;
+            }
+            share.demand = share.requestedSteps * Math.max(0, share.costPerStep);
+            totalDemand += share.demand;
+        }
+
+        final long budget = Settings.controllerTickBudget * 1000L;
+        if (budget <= 0 || totalDemand <= budget) {
+            for (final Share share : active) {
+                share.clockRate = 1;
+            }
+        } else {
+            distribute(budget);
+        }
+
+        int throttled = 0;
+        for (final Share share : active) {
+            if (share.clockRate < 1) {
+                throttled++;
+            }
+            share.requestedSteps = 0;
+            share.measuredSteps = 0;
+            share.measuredNanos = 0;
+        }
+        active.clear();
+
+        if (ticksUntilLog > 0) {
+            --ticksUntilLog;
+        } else if (throttled > 0) {
+            ticksUntilLog = LOG_INTERVAL;
+            LogManager.getLogger(API.MOD_ID).info("Controllers need {} us per tick, exceeding the budget of {} us. Slowed down {} controller(s).",
+                Math.round(totalDemand / 1000), Settings.controllerTickBudget, throttled);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Split the budget among all active controllers, cheapest first, so that
+     * each one gets at most an equal share of what is left.
+     *
+     * @param budget the time available in nanoseconds.
+     */
+    private void distribute(final long budget) {
+        active.sort(Comparator.comparingDouble(share -> share.demand));
+
+        double remaining = budget;
+        for (int i = 0; i < active.size(); i++) {
+            final Share share = active.get(i);
+            final double fairShare = remaining / (active.size() - i);
+            if (share.demand <= fairShare) {
+                share.clockRate = 1;
+                remaining -= share.demand;
+            } else {
+                share.clockRate = Math.max(MIN_CLOCK_RATE, fairShare / share.demand);
+                remaining -= fairShare;
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package li.cil.tis3d.common.block.entity;
+
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.*;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Steps running controllers on a pool of worker threads.
+ * <p>
+ * Controllers schedule their steps here while ticking instead of running them
+ * directly, if parallel stepping is enabled and all of their modules are known
+ * to be safe to step off the server thread. At the end of the server tick all
+ * scheduled controllers are stepped in parallel. Each controller owns a
+ * disjoint set of casings, pipes and modules, so the only shared state is the
+ * world and the network queues; effects on those are collected per controller
+ * and applied on the server thread afterwards, in controller position order,
+ * so results do not depend on thread scheduling.
+ */
+public final class ParallelControllerStepper {
+    public static final ParallelControllerStepper INSTANCE = new ParallelControllerStepper();
+
+    /**
+     * Modules that only touch their own state and the casing while stepping.
+     * <p>
+     * Anything else, e.g. modules accessing world randomness or updating
+     * neighbor blocks, as well as modules from other mods, causes the
+     * controller to be stepped on the server thread.
+     */
+    private static final Set<Class<?>> PARALLEL_SAFE_MODULES = new HashSet<>(Arrays.asList(
+        DisplayModule.class,
+        ExecutionModule.class,
+        QueueModule.class,
+        RandomAccessMemoryModule.class,
+        ReadOnlyMemoryModule.class,
+        StackModule.class,
+        TimerModule.class
+    ));
+
+    // --------------------------------------------------------------------- //
+
+    private final List<ControllerBlockEntity> scheduled = new ArrayList<>();
+    private final List<Future<?>> pending = new ArrayList<>();
+    private ExecutorService executor;
+    private int executorThreads;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Whether the specified module may be stepped off the server thread.
+     *
+     * @param module the module to check.
+     * @return <tt>true</tt> if the module is safe to step in parallel.
+     */
+    public static boolean isParallelSafe(final Module module) {
+        return PARALLEL_SAFE_MODULES.contains(module.getClass());
+    }
+
+    /**
+     * Schedule steps for the specified controller, to be run at the end of
+     * the current server tick.
+     *
+     * @param controller the controller to step.
+     * @param steps      the number of steps to run.
+     * @return <tt>true</tt> if the steps were scheduled, <tt>false</tt> if
+     * parallel stepping is disabled or the controller has modules that are
+     * not safe to step in parallel, and the caller should step directly.
+     */
+    public boolean schedule(final ControllerBlockEntity controller, final int steps) {
+        if (Settings.parallelControllerThreads <= 0 || !controller.isParallelSafe()) {
+            return false;
+        }
+
+        controller.setScheduledSteps(steps);
+        scheduled.add(controller);
+        return true;
+    }
+
+    public void serverTick() {
+        if (scheduled.isEmpty()) {
+            return;
+        }
+
+        scheduled.removeIf(controller -> {
+            if (!controller.canRunScheduledSteps()) {
+                controller.setScheduledSteps(0);
+                return true;
+            }
+            return false;
+        });
+
+        // Sort for deterministic order when applying effects; multiple worlds
+        // may have controllers at the same position, but those don't interact.
+        scheduled.sort(Comparator.comparing(ControllerBlockEntity::getPos));
+
+        // Always wait for all workers and finish all controllers, even if some
+        // of them failed, so no effects are lost and no worker is still running
+        // when the next tick starts. The first failure is rethrown afterwards.
+        Throwable failure = null;
+        try {
+            if (scheduled.size() == 1) {
+                // Not worth the hand-off.
+                scheduled.get(0).runScheduledSteps();
+            } else {
+                final ExecutorService executor = getExecutor();
+                for (final ControllerBlockEntity controller : scheduled) {
+                    pending.add(executor.submit(controller::runScheduledSteps));
+                }
+            }
+        } catch (final RuntimeException | Error e) {
+            failure = addFailure(failure, e);
+        } finally {
+            for (final Future<?> future : pending) {
+                failure = addFailure(failure, await(future));
+            }
+            pending.clear();
+
+            for (final ControllerBlockEntity controller : scheduled) {
+                try {
+                    controller.finishScheduledSteps();
+                } catch (final RuntimeException | Error e) {
+                    failure = addFailure(failure, e);
+                }
+            }
+            scheduled.clear();
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error)failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    /**
+     * Called when the server stops. Drops anything still scheduled and shuts
+     * down the worker threads, they are created again when needed.
+     */
+    public void serverStopped() {
+        for (final ControllerBlockEntity controller : scheduled) {
+            controller.setScheduledSteps(0);
+        }
+        scheduled.clear();
+        shutdownExecutor();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ExecutorService getExecutor() {
+        // Recreate the pool if the configured number of threads changed.
+        if (executor != null && executorThreads != Settings.parallelControllerThreads) {
+            shutdownExecutor();
+        }
+        if (executor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            final ThreadFactory threadFactory = runnable -> {
+                final Thread thread = new Thread(runnable, "TIS-3D Controller Worker #" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executorThreads = Settings.parallelControllerThreads;
+            executor = Executors.newFixedThreadPool(executorThreads, threadFactory);
+        }
+        return executor;
+    }
+
+    private void shutdownExecutor() {
+        if (executor != null) {
+            // Workers only run while the server thread waits for them, so
+            // there is never any work left in the pool at this point.
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private static Throwable addFailure(@Nullable final Throwable failure, @Nullable final Throwable e) {
+        if (e == null) {
+            return failure;
+        }
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * Wait for the specified future to complete.
+     *
+     * @param future the future to wait for.
+     * @return the exception thrown by the task, if any.
+     */
+    @Nullable
+    private static Throwable await(final Future<?> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    return null;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    return e.getCause();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -5,6 +5,8 @@ import li.cil.tis3d.api.infrared.InfraredReceiver;
 import li.cil.tis3d.common.event.TickHandlerInfraredPacket;
 import li.cil.tis3d.common.module.InfraredModule;
 import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.profiler.FlightRecorderEvents;
+import li.cil.tis3d.common.profiler.InfraredPacketEvent;
 import li.cil.tis3d.util.Raytracing;
 import li.cil.tis3d.util.WorldUtils;
 import net.fabricmc.api.EnvType;
@@ -72,6 +74,12 @@ public final class InfraredPacketEntity extends Entity implements InfraredPacket
      */
     private short value;
 
+    /**
+     * Flight recorder event tracking the lifetime of this packet, if enabled.
+     */
+    @Nullable
+    private InfraredPacketEvent lifetimeEvent;
+
     // --------------------------------------------------------------------- //
     // Entity
 
@@ -102,6 +110,7 @@ public final class InfraredPacketEntity extends Entity implements InfraredPacket
         lifetime = DEFAULT_LIFETIME + 1; // First update in next frame.
         this.value = value;
         getDataTracker().set(DATA_VALUE, value & 0xFFFF);
+        lifetimeEvent = FlightRecorderEvents.beginInfraredPacket();
     }
 
     /**
@@ -113,6 +122,15 @@ public final class InfraredPacketEntity extends Entity implements InfraredPacket
         }
     }
 
+    /**
+     * Called from our watchdog when the packet stopped being watched for good,
+     * i.e. it expired or hit something and was not redirected.
+     */
+    public void onLifetimeEnded() {
+        FlightRecorderEvents.endInfraredPacket(lifetimeEvent, getEntityWorld(), value);
+        lifetimeEvent = null;
+    }
+
     /**
      * Remove flag that the entity is dead; used to revive it when being redirected.
      */
@@ -222,6 +240,7 @@ public final class InfraredPacketEntity extends Entity implements InfraredPacket
         if (lifetime > 0) {
             // Revive!
             revive();
+            FlightRecorderEvents.redirectInfraredPacket(lifetimeEvent);
 
             // Apply new position.
             final Vec3d oldPos = getPos();
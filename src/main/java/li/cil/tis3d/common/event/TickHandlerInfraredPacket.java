@@ -41,7 +41,11 @@ public final class TickHandlerInfraredPacket {
         livePackets.addAll(pendingAdds);
         pendingAdds.clear();
 
-        livePackets.removeAll(pendingRemovals);
+        for (final InfraredPacketEntity packet : pendingRemovals) {
+            if (livePackets.remove(packet)) {
+                packet.onLifetimeEnded();
+            }
+        }
         pendingRemovals.clear();
 
         livePackets.forEach(InfraredPacketEntity::updateLifetime);
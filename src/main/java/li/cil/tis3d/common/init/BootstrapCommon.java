@@ -9,13 +9,20 @@ import li.cil.tis3d.common.API;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.api.*;
+import li.cil.tis3d.common.block.entity.ControllerScheduler;
+import li.cil.tis3d.common.block.entity.ParallelControllerStepper;
 import li.cil.tis3d.common.event.TickHandlerInfraredPacket;
 import li.cil.tis3d.common.integration.Integration;
 import li.cil.tis3d.common.module.*;
 import li.cil.tis3d.common.module.provider.SimpleModuleProvider;
 import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.profiler.FlightRecorderEvents;
+import li.cil.tis3d.common.profiler.ProfileCommand;
+import li.cil.tis3d.common.profiler.TickProfiler;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v1.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.client.itemgroup.FabricItemGroupBuilder;
+import net.fabricmc.fabric.api.event.server.ServerStopCallback;
 import net.fabricmc.fabric.api.event.server.ServerTickCallback;
 import net.fabricmc.loader.api.FabricLoader;
 
@@ -55,7 +62,17 @@ public final class BootstrapCommon implements ModInitializer {
 
         // Register event handlers.
         ServerTickCallback.EVENT.register(server -> TickHandlerInfraredPacket.INSTANCE.serverTick());
+        ServerTickCallback.EVENT.register(server -> ParallelControllerStepper.INSTANCE.serverTick());
+        ServerTickCallback.EVENT.register(server -> ControllerScheduler.INSTANCE.serverTick());
         ServerTickCallback.EVENT.register(server -> Network.INSTANCE.serverTick());
+        ServerTickCallback.EVENT.register(server -> TickProfiler.INSTANCE.serverTick());
+        ServerStopCallback.EVENT.register(server -> ParallelControllerStepper.INSTANCE.serverStopped());
+
+        // Register flight recorder events.
+        FlightRecorderEvents.register();
+
+        // Register commands.
+        CommandRegistrationCallback.EVENT.register((dispatcher, dedicated) -> ProfileCommand.register(dispatcher));
 
         // Register entities.
         Entities.registerEntities();
@@ -152,12 +152,13 @@ public final class CasingInventory extends ArrayInventory implements SidedInvent
         final Face face = Face.VALUES[index];
         final Module module = blockEntity.getModule(face);
         blockEntity.setModule(face, null);
-        if (!world.isClient) {
-            if (module != null) {
+        if (module != null) {
+            if (!world.isClient) {
                 module.onUninstalled(getStack(index));
-                module.onDisposed();
             }
-
+            module.onDisposed();
+        }
+        if (!world.isClient) {
             final CasingInventoryMessage message = new CasingInventoryMessage(blockEntity, index, ItemStack.EMPTY, null);
             Network.INSTANCE.sendToClientsNearLocation(message, world, blockEntity.getPosition(), Network.RANGE_HIGH);
         }
@@ -78,7 +78,7 @@ public final class CodeBookItem extends BookItem {
      * Wrapper for list of pages stored in the code book.
      */
     public static class Data {
-        private static final String CONTINUATION_MACRO = "#BWTM";
+        public static final String CONTINUATION_MACRO = "#BWTM";
         private static final String TAG_PAGES = "pages";
         private static final String TAG_SELECTED = "selected";
 
@@ -354,7 +354,14 @@ public final class CodeBookItem extends BookItem {
 
         // --------------------------------------------------------------------- //
 
-        private static boolean isPartialProgram(final List<String> program) {
+        /**
+         * Check whether the specified code continues on the next page, i.e.
+         * whether its last non-empty line is the <code>#BWTM</code> preprocessor macro.
+         *
+         * @param program the code to check.
+         * @return <tt>true</tt> if the code continues on the next page.
+         */
+        public static boolean isPartialProgram(final List<String> program) {
             boolean continues = false;
             for (final String line : program) {
                 if (line.trim().isEmpty()) {
@@ -0,0 +1,79 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+
+import javax.annotation.Nullable;
+
+/**
+ * The pipes of a single face of a casing, for modules looking them up in
+ * each step.
+ * <p>
+ * If the casing implements {@link PipeRouting} the pipes are only looked up
+ * again after its routing changed, otherwise each call is passed on to the
+ * casing.
+ */
+public final class CachedPipes {
+    private final Casing casing;
+    private final Face face;
+    @Nullable
+    private final PipeRouting routing;
+
+    private final Pipe[] receivingPipes = new Pipe[Port.VALUES.length];
+    private final Pipe[] sendingPipes = new Pipe[Port.VALUES.length];
+    private int routingVersion;
+    private boolean isValid;
+
+    // --------------------------------------------------------------------- //
+
+    public CachedPipes(final Casing casing, final Face face) {
+        this.casing = casing;
+        this.face = face;
+        this.routing = casing instanceof PipeRouting ? (PipeRouting)casing : null;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Receiving pipe for the specified port.
+     *
+     * @param port the port to get the pipe for.
+     * @return the receiving pipe on that port.
+     * @see Casing#getReceivingPipe(Face, Port)
+     */
+    public Pipe getReceivingPipe(final Port port) {
+        return validate() ? receivingPipes[port.ordinal()] : casing.getReceivingPipe(face, port);
+    }
+
+    /**
+     * Sending pipe for the specified port.
+     *
+     * @param port the port to get the pipe for.
+     * @return the sending pipe on that port.
+     * @see Casing#getSendingPipe(Face, Port)
+     */
+    public Pipe getSendingPipe(final Port port) {
+        return validate() ? sendingPipes[port.ordinal()] : casing.getSendingPipe(face, port);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private boolean validate() {
+        if (routing == null) {
+            return false;
+        }
+
+        final int version = routing.getRoutingVersion();
+        if (!isValid || version != routingVersion) {
+            for (final Port port : Port.VALUES) {
+                receivingPipes[port.ordinal()] = casing.getReceivingPipe(face, port);
+                sendingPipes[port.ordinal()] = casing.getSendingPipe(face, port);
+            }
+            routingVersion = version;
+            isValid = true;
+        }
+        return true;
+    }
+}
@@ -10,9 +10,12 @@ import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.api.module.ModuleProvider;
 import li.cil.tis3d.api.module.traits.Redstone;
 import li.cil.tis3d.common.API;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.TIS3D;
 import li.cil.tis3d.common.block.entity.CasingBlockEntity;
 import li.cil.tis3d.common.init.Items;
 import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.profiler.TickProfiler;
 import li.cil.tis3d.util.NBTIds;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -23,6 +26,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,7 +34,7 @@ import java.util.UUID;
 /**
  * Implementation of a {@link Casing}, holding up to six {@link Module}s.
  */
-public final class CasingImpl implements Casing {
+public final class CasingImpl implements Casing, PipeRouting {
     // --------------------------------------------------------------------- //
     // Persisted data.
 
@@ -59,6 +63,30 @@ public final class CasingImpl implements Casing {
      */
     private final CasingBlockEntity blockEntity;
 
+    /**
+     * Whether marking the tile entity dirty has already been deferred in the
+     * current parallel step, to avoid queueing it once per module and step.
+     */
+    private boolean isDirtyDeferred;
+
+    /**
+     * Whether the {@link IdleAwareModule} on a face is currently not being
+     * stepped, and the pipe version of that face when it went to sleep.
+     */
+    private final boolean[] isSleeping = new boolean[Face.VALUES.length];
+    private final int[] sleepingPipeVersion = new int[Face.VALUES.length];
+
+    /**
+     * Number of module updates performed and skipped, for debugging purposes.
+     */
+    private long modulesStepped, modulesSkipped;
+
+    /**
+     * Number of skipped module updates that turned out to change state when
+     * verifying the module scheduler. Should always be zero.
+     */
+    private long moduleMismatches;
+
     // --------------------------------------------------------------------- //
 
     public CasingImpl(final CasingBlockEntity blockEntity) {
@@ -71,6 +99,7 @@ public final class CasingImpl implements Casing {
      * Used by the controller when its state changes to {@code RUNNING}.
      */
     public void onEnabled() {
+        wakeModules();
         for (final Module module : modules) {
             if (module != null) {
                 module.onEnabled();
@@ -86,6 +115,7 @@ public final class CasingImpl implements Casing {
      * or the controller is reset (scan scheduled), or the controller is unloaded.
      */
     public void onDisabled() {
+        wakeModules();
         for (final Module module : modules) {
             if (module != null) {
                 module.onDisabled();
@@ -113,15 +143,47 @@ public final class CasingImpl implements Casing {
 
     /**
      * Advance the logic of all modules by calling {@link Module#step()} on them.
+     * <p>
+     * Unless disabled in the settings, idle {@link IdleAwareModule}s are
+     * skipped while none of the pipes on their face change state.
      */
     public void stepModules() {
-        for (final Module module : modules) {
-            if (module != null) {
-                module.step();
+        final boolean isSampling = TickProfiler.INSTANCE.isSampling();
+        for (int index = 0; index < modules.length; index++) {
+            final Module module = modules[index];
+            if (module == null) {
+                continue;
+            }
+
+            if (isSampling) {
+                final long start = System.nanoTime();
+                stepModule(index, module);
+                TickProfiler.INSTANCE.recordModuleStep(module.getClass(), System.nanoTime() - start);
+            } else {
+                stepModule(index, module);
             }
         }
     }
 
+    /**
+     * Make all modules get stepped in the next update, e.g. because the
+     * pipes they are connected to changed.
+     */
+    public void wakeModules() {
+        Arrays.fill(isSleeping, false);
+    }
+
+    /**
+     * Add the module scheduler counters of this casing to the specified statistics.
+     *
+     * @param statistics the statistics to add to.
+     */
+    public void collectStepStatistics(final StepStatistics statistics) {
+        statistics.modulesStepped += modulesStepped;
+        statistics.modulesSkipped += modulesSkipped;
+        statistics.mismatches += moduleMismatches;
+    }
+
     /**
      * Set the module for the specified face of the casing.
      * <p>
@@ -150,6 +212,7 @@ public final class CasingImpl implements Casing {
 
         // Apply new module before adjust remaining state.
         modules[face.ordinal()] = module;
+        isSleeping[face.ordinal()] = false;
 
         // Reset redstone output if the previous module was redstone capable.
         if (hadRedstone) {
@@ -177,6 +240,53 @@ public final class CasingImpl implements Casing {
         blockEntity.markDirty();
     }
 
+    /**
+     * Step a module, letting the event driven scheduler skip it if possible.
+     *
+     * @param index  the index of the face the module is installed on.
+     * @param module the module to step.
+     */
+    private void stepModule(final int index, final Module module) {
+        if (Settings.eventDrivenStepping && module instanceof IdleAwareModule) {
+            stepIdleAwareModule(index, module);
+        } else {
+            module.step();
+            modulesStepped++;
+        }
+    }
+
+    /**
+     * Step an {@link IdleAwareModule}, unless it is asleep, and decide whether
+     * it should go to sleep after this step.
+     *
+     * @param index  the index of the face the module is installed on.
+     * @param module the module to step.
+     */
+    private void stepIdleAwareModule(final int index, final Module module) {
+        final Face face = Face.VALUES[index];
+        final IdleAwareModule idleAwareModule = (IdleAwareModule)module;
+
+        final int versionBefore = blockEntity.getPipeVersion(face);
+        final boolean canSkip = isSleeping[index] && idleAwareModule.isIdle() && versionBefore == sleepingPipeVersion[index];
+        if (canSkip && !Settings.verifyEventDrivenStepping) {
+            modulesSkipped++;
+            return;
+        }
+
+        module.step();
+        modulesStepped++;
+
+        final int versionAfter = blockEntity.getPipeVersion(face);
+        final boolean isIdle = versionBefore == versionAfter && idleAwareModule.isIdle();
+        if (canSkip && !isIdle) {
+            moduleMismatches++;
+            TIS3D.getLog().warn("Module {} at {} changed state while it should have been idle.", module.getClass().getSimpleName(), getPosition());
+        }
+
+        isSleeping[index] = isIdle;
+        sleepingPipeVersion[index] = versionAfter;
+    }
+
     @Environment(EnvType.CLIENT)
     public void setLocked(final boolean locked) {
         if (locked) {
@@ -262,9 +372,16 @@ public final class CasingImpl implements Casing {
             }
 
             final Module module = provider.createModule(stack, blockEntity, face);
+            if (modules[index] != null) {
+                modules[index].onDisposed();
+            }
             modules[index] = module;
         }
 
+        // The modules were replaced, don't let them inherit the sleep state
+        // of the previous ones.
+        wakeModules();
+
         final ListTag modulesNbt = nbt.getList(TAG_MODULES, NBTIds.TAG_COMPOUND);
         final int moduleCount = Math.min(modulesNbt.size(), modules.length);
         for (int i = 0; i < moduleCount; i++) {
@@ -317,7 +434,17 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void markDirty() {
-        blockEntity.markDirty();
+        if (DeferredEffects.isActive()) {
+            if (!isDirtyDeferred) {
+                isDirtyDeferred = true;
+                DeferredEffects.add(() -> {
+                    isDirtyDeferred = false;
+                    blockEntity.markDirty();
+                }, () -> isDirtyDeferred = false);
+            }
+        } else {
+            blockEntity.markDirty();
+        }
     }
 
     @Override
@@ -348,7 +475,11 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void sendData(final Face face, final CompoundTag data, final byte type) {
-        Network.INSTANCE.sendModuleData(this, face, data, type);
+        if (DeferredEffects.isActive()) {
+            DeferredEffects.add(() -> Network.INSTANCE.sendModuleData(this, face, data, type));
+        } else {
+            Network.INSTANCE.sendModuleData(this, face, data, type);
+        }
     }
 
     @Override
@@ -358,7 +489,11 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void sendData(final Face face, final ByteBuf data, final byte type) {
-        Network.INSTANCE.sendModuleData(this, face, data, type);
+        if (DeferredEffects.isActive()) {
+            DeferredEffects.add(() -> Network.INSTANCE.sendModuleData(this, face, data, type));
+        } else {
+            Network.INSTANCE.sendModuleData(this, face, data, type);
+        }
     }
 
     @Override
@@ -366,6 +501,14 @@ public final class CasingImpl implements Casing {
         sendData(face, data, (byte)-1);
     }
 
+    // --------------------------------------------------------------------- //
+    // PipeRouting
+
+    @Override
+    public int getRoutingVersion() {
+        return blockEntity.getRoutingVersion();
+    }
+
     // --------------------------------------------------------------------- //
 
     /**
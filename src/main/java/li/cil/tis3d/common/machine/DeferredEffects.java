@@ -0,0 +1,117 @@
+package li.cil.tis3d.common.machine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffer for side effects of stepping a controller's casings off the server thread.
+ * <p>
+ * Also used on the server thread when running multiple steps in one tick, so
+ * that effects which only need to happen once per tick, such as sending the
+ * latest state of a module to clients, can be deferred just once.
+ * <p>
+ * While a buffer is active on the current thread, code that would otherwise
+ * mutate the world or touch shared state such as the {@link li.cil.tis3d.common.network.Network}
+ * queues must {@link #add(Runnable)} that work instead of running it directly.
+ * The owner of the buffer applies all collected effects on the server thread
+ * once the parallel work has finished, in the order they were added.
+ */
+public final class DeferredEffects {
+    private static final ThreadLocal<DeferredEffects> ACTIVE = new ThreadLocal<>();
+
+    private final List<Runnable> effects = new ArrayList<>();
+
+    /**
+     * Called instead of the effects if they are discarded, see {@link #add(Runnable, Runnable)}.
+     */
+    private final List<Runnable> discardHandlers = new ArrayList<>();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Whether side effects should currently be deferred on this thread.
+     *
+     * @return <tt>true</tt> if a buffer is active on this thread, <tt>false</tt> otherwise.
+     */
+    public static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+
+    /**
+     * Add an effect to the buffer active on this thread. If there is no
+     * active buffer the effect is run immediately.
+     *
+     * @param effect the effect to defer.
+     */
+    public static void add(final Runnable effect) {
+        final DeferredEffects buffer = ACTIVE.get();
+        if (buffer != null) {
+            buffer.effects.add(effect);
+        } else {
+            effect.run();
+        }
+    }
+
+    /**
+     * Add an effect to the buffer active on this thread, with a handler to
+     * call instead if the buffer is discarded. If there is no active buffer
+     * the effect is run immediately.
+     * <p>
+     * Used for effects that are only added once per buffer, guarded by a flag
+     * that is reset when the effect runs; the handler must reset that flag, or
+     * the effect would never be added again.
+     *
+     * @param effect    the effect to defer.
+     * @param onDiscard called if the effect is discarded instead of run.
+     */
+    public static void add(final Runnable effect, final Runnable onDiscard) {
+        final DeferredEffects buffer = ACTIVE.get();
+        if (buffer != null) {
+            buffer.effects.add(effect);
+            buffer.discardHandlers.add(onDiscard);
+        } else {
+            effect.run();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Make this the active buffer for the current thread.
+     */
+    public void begin() {
+        ACTIVE.set(this);
+    }
+
+    /**
+     * Stop collecting effects into this buffer on the current thread.
+     */
+    public void end() {
+        ACTIVE.remove();
+    }
+
+    /**
+     * Run all collected effects and clear the buffer. Must be called on
+     * the server thread, with no buffer active.
+     */
+    public void apply() {
+        for (final Runnable effect : effects) {
+            effect.run();
+        }
+        effects.clear();
+        discardHandlers.clear();
+    }
+
+    /**
+     * Drop all collected effects without running them, e.g. when stepping
+     * modules without a world to apply them to. Calls the discard handlers
+     * of the dropped effects, so they can be added again afterwards.
+     */
+    public void discard() {
+        for (final Runnable handler : discardHandlers) {
+            handler.run();
+        }
+        effects.clear();
+        discardHandlers.clear();
+    }
+}
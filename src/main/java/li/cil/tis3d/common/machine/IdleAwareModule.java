@@ -0,0 +1,25 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by {@link Module}s that may be skipped by the casing while
+ * they are waiting on their pipes.
+ * <p>
+ * Implementing modules guarantee that {@link Module#step()} depends only on
+ * their own state and the state of the pipes on their face. After a step that
+ * left both of these unchanged, the casing stops stepping the module until one
+ * of its pipes changes state or {@link #isIdle()} returns <tt>false</tt>.
+ */
+public interface IdleAwareModule {
+    /**
+     * Whether the last call to {@link Module#step()} left the state of this
+     * module unchanged, and nothing else changed its state since.
+     * <p>
+     * Modules must return <tt>false</tt> after any change to their state
+     * made outside of a pipe callback, such as new code being installed.
+     *
+     * @return <tt>true</tt> if the module is idle, <tt>false</tt> otherwise.
+     */
+    boolean isIdle();
+}
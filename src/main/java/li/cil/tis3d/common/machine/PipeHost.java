@@ -18,4 +18,22 @@ public interface PipeHost {
 
     default void onWriteComplete(final Face sendingFace, final Port sendingPort) {
     }
+
+    /**
+     * Called when a pipe of this host has a pending state transition, i.e.
+     * it must be stepped in the next pipe update.
+     *
+     * @param index the index of the pipe, as passed when creating it.
+     */
+    default void onPipePending(final int index) {
+    }
+
+    /**
+     * Called when a value was transferred over a pipe of this host, used to
+     * show the transfer to nearby players.
+     *
+     * @param index the index of the pipe, as passed when creating it.
+     */
+    default void onPipeTransfer(final int index) {
+    }
 }
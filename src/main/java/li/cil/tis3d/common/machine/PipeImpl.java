@@ -5,10 +5,10 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.module.Module;
-import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.util.EnumUtils;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
 
 /**
  * Implementation of {@link Pipe}s for passing data between {@link Module}s.
@@ -83,10 +83,22 @@ public final class PipeImpl implements Pipe {
      */
     private final Port sendingPort;
 
+    /**
+     * The index of this pipe in the owning {@link PipeHost}.
+     */
+    private final int index;
+
+    /**
+     * Incremented whenever the state of this pipe changes, used to detect
+     * whether modules using this pipe may have something to do.
+     */
+    private int version;
+
     // --------------------------------------------------------------------- //
 
-    public PipeImpl(final PipeHost host, final Face receivingFace, final Face sendingFace, final Port sendingPort) {
+    public PipeImpl(final PipeHost host, final int index, final Face receivingFace, final Face sendingFace, final Port sendingPort) {
         this.host = host;
+        this.index = index;
         this.receivingFace = receivingFace;
         this.sendingFace = sendingFace;
         this.sendingPort = sendingPort;
@@ -98,6 +110,10 @@ public final class PipeImpl implements Pipe {
      * state in a synchronized manner.
      */
     public void step() {
+        if (!isPending()) {
+            return;
+        }
+
         if (writeState == State.BUSY) {
             writeState = State.READY;
         }
@@ -108,15 +124,39 @@ public final class PipeImpl implements Pipe {
             writeState = State.FLUSHING;
             readState = State.FLUSHING;
         }
+        version++;
         if (writeState == State.COMPLETE && readState == State.COMPLETE) {
             finishTransfer();
         }
     }
 
+    /**
+     * Whether the next call to {@link #step()} would change the state of
+     * this pipe. If not, stepping it can be skipped.
+     *
+     * @return <tt>true</tt> if the pipe has a pending state transition.
+     */
+    public boolean isPending() {
+        return writeState == State.BUSY || readState == State.BUSY ||
+               (writeState == State.READY && readState == State.READY) ||
+               (writeState == State.COMPLETE && readState == State.COMPLETE);
+    }
+
+    /**
+     * The number of state changes of this pipe so far. Only meaningful
+     * relative to earlier values of the same pipe.
+     *
+     * @return the current version of the pipe's state.
+     */
+    public int getVersion() {
+        return version;
+    }
+
     public void readFromNBT(final CompoundTag nbt) {
         readState = EnumUtils.readFromNBT(State.class, TAG_READ_STATE, nbt);
         writeState = EnumUtils.readFromNBT(State.class, TAG_WRITE_STATE, nbt);
         value = nbt.getShort(TAG_VALUE);
+        onStateChanged();
     }
 
     public void writeToNBT(final CompoundTag nbt) {
@@ -129,10 +169,22 @@ public final class PipeImpl implements Pipe {
         readState = State.IDLE;
         writeState = State.IDLE;
         value = 0;
+        version++;
 
         host.onWriteComplete(sendingFace, sendingPort);
     }
 
+    /**
+     * Track a state change made through the {@link Pipe} interface, and have
+     * the host step this pipe if that change left a transition pending.
+     */
+    private void onStateChanged() {
+        version++;
+        if (isPending()) {
+            host.onPipePending(index);
+        }
+    }
+
     // --------------------------------------------------------------------- //
     // Pipe
 
@@ -143,6 +195,7 @@ public final class PipeImpl implements Pipe {
         }
         writeState = State.BUSY;
         this.value = value;
+        onStateChanged();
     }
 
     @Override
@@ -156,6 +209,7 @@ public final class PipeImpl implements Pipe {
         if (readState == State.FLUSHING) {
             readState = State.READY;
         }
+        onStateChanged();
     }
 
     @Override
@@ -169,6 +223,7 @@ public final class PipeImpl implements Pipe {
             throw new IllegalStateException("Trying to read from a busy pipe. Check isReading().");
         }
         readState = State.BUSY;
+        onStateChanged();
     }
 
     @Override
@@ -181,6 +236,7 @@ public final class PipeImpl implements Pipe {
         if (writeState == State.FLUSHING) {
             writeState = State.READY;
         }
+        onStateChanged();
     }
 
     @Override
@@ -201,15 +257,21 @@ public final class PipeImpl implements Pipe {
 
         writeState = State.COMPLETE;
         readState = State.COMPLETE;
+        onStateChanged();
 
-        sendEffect();
-
+        host.onPipeTransfer(index);
         host.onBeforeWriteComplete(sendingFace, sendingPort);
 
         return value;
     }
 
-    private void sendEffect() {
+    /**
+     * The position at which to show transfers over this pipe, in between
+     * the two faces it connects.
+     *
+     * @return the position of the transfer effect.
+     */
+    public Vec3d getEffectPosition() {
         final BlockPos position = host.getPipeHostPosition();
         final double ox = Face.toDirection(receivingFace).getOffsetX() + Face.toDirection(sendingFace).getOffsetX();
         final double oy = Face.toDirection(receivingFace).getOffsetY() + Face.toDirection(sendingFace).getOffsetY();
@@ -219,7 +281,7 @@ public final class PipeImpl implements Pipe {
         final double z = oz * 0.55 + position.getZ() + 0.5;
         final double extraOffsetY = oy < 0 ? -0.2 : (oy > 0) ? 0.1 : 0;
 
-        Network.INSTANCE.sendRedstoneEffect(host.getPipeHostWorld(), x, y + extraOffsetY, z);
+        return new Vec3d(x, y + extraOffsetY, z);
     }
 
     // --------------------------------------------------------------------- //
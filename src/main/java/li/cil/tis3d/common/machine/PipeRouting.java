@@ -0,0 +1,21 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Casing;
+
+/**
+ * Implemented by {@link Casing}s that can tell when the pipes they return for
+ * a face and port change, so that modules may keep using the pipes they got
+ * until then, see {@link CachedPipes}.
+ * <p>
+ * This is the case when the multi-block the casing is part of changes, or
+ * when one of its receiving pipes gets locked or unlocked.
+ */
+public interface PipeRouting {
+    /**
+     * A number that changes whenever {@link Casing#getReceivingPipe} or
+     * {@link Casing#getSendingPipe} may return different pipes than before.
+     *
+     * @return the current routing version.
+     */
+    int getRoutingVersion();
+}
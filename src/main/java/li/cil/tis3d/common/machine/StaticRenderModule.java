@@ -0,0 +1,27 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by {@link Module}s whose overlay only changes at well known points.
+ * <p>
+ * The casing renderer records what these modules render once and replays it
+ * in later frames, instead of calling {@link Module#render} every frame. It
+ * records again when the module is installed or removed, the casing is enabled
+ * or disabled, or {@link #getRenderVersion()} changes.
+ * <p>
+ * Implementing modules must render at full brightness, since the light is not
+ * part of what is recorded, and must not depend on the observer or the partial
+ * tick time.
+ */
+public interface StaticRenderModule {
+    /**
+     * Incremented whenever what the module renders changes for reasons other
+     * than the casing being enabled or disabled.
+     *
+     * @return the current version of the module's overlay.
+     */
+    default int getRenderVersion() {
+        return 0;
+    }
+}
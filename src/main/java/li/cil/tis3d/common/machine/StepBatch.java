@@ -0,0 +1,55 @@
+package li.cil.tis3d.common.machine;
+
+/**
+ * Tracks how many steps are left in the batch of steps a controller is
+ * currently running on this thread.
+ * <p>
+ * Modules may use this to do the work of upcoming steps of the same batch
+ * ahead of time, as long as the result is indistinguishable from running
+ * each step on its own. In particular, such work must not touch any pipes,
+ * and the module must do nothing in the steps it did the work for ahead.
+ */
+public final class StepBatch {
+    private static final ThreadLocal<StepBatch> ACTIVE = new ThreadLocal<>();
+
+    private int remainingSteps;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The number of steps of the batch active on this thread that will be
+     * run after the current one.
+     *
+     * @return the number of remaining steps, zero if there is no active batch.
+     */
+    public static int getRemainingSteps() {
+        final StepBatch batch = ACTIVE.get();
+        return batch != null ? batch.remainingSteps : 0;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Make this the active batch for the current thread.
+     */
+    public void begin() {
+        ACTIVE.set(this);
+    }
+
+    /**
+     * Set the number of steps that will be run after the current one.
+     *
+     * @param steps the number of remaining steps.
+     */
+    public void setRemainingSteps(final int steps) {
+        remainingSteps = steps;
+    }
+
+    /**
+     * Stop being the active batch for the current thread.
+     */
+    public void end() {
+        remainingSteps = 0;
+        ACTIVE.remove();
+    }
+}
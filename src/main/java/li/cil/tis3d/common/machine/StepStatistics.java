@@ -0,0 +1,34 @@
+package li.cil.tis3d.common.machine;
+
+/**
+ * Counters of the event driven module and pipe scheduler, for debugging.
+ * <p>
+ * Collected per controller from all of its casings, see
+ * {@link li.cil.tis3d.common.block.entity.ControllerBlockEntity#getStepStatistics()}.
+ */
+public final class StepStatistics {
+    /**
+     * Number of module updates performed and skipped because the module was idle.
+     */
+    public long modulesStepped, modulesSkipped;
+
+    /**
+     * Number of pipe updates performed and skipped because the pipe had no pending transition.
+     */
+    public long pipesStepped, pipesSkipped;
+
+    /**
+     * Number of skipped updates that would have changed state, as detected when
+     * verification is enabled in the settings. Anything but zero is a bug.
+     */
+    public long mismatches;
+
+    // --------------------------------------------------------------------- //
+    // Object
+
+    @Override
+    public String toString() {
+        return String.format("modules: %d stepped, %d skipped; pipes: %d stepped, %d skipped; mismatches: %d",
+            modulesStepped, modulesSkipped, pipesStepped, pipesSkipped, mismatches);
+    }
+}
@@ -1,76 +1,57 @@
 package li.cil.tis3d.common.module;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModuleWithRotation;
-import li.cil.tis3d.api.util.RenderLayerAccess;
 import li.cil.tis3d.api.util.RenderUtil;
-import li.cil.tis3d.client.ext.TextureManagerExt;
+import li.cil.tis3d.client.render.DisplayAtlas;
+import li.cil.tis3d.common.machine.DeferredEffects;
+import li.cil.tis3d.common.machine.IdleAwareModule;
+import li.cil.tis3d.common.network.ModuleStateWriter;
+import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.util.ColorUtils;
 import li.cil.tis3d.util.EnumUtils;
+import li.cil.tis3d.util.NBTIds;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.VertexConsumer;
 import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.client.render.block.entity.BlockEntityRenderDispatcher;
-import net.minecraft.client.texture.NativeImage;
-import net.minecraft.client.texture.NativeImageBackedTexture;
-import net.minecraft.client.texture.TextureManager;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.util.Identifier;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
-import java.util.LinkedList;
-
-public final class DisplayModule extends AbstractModuleWithRotation {
-    @Environment(EnvType.CLIENT)
-    public static final class LeakDetector {
-        private static final LinkedList<NativeImageBackedTexture> leakedTextures = new LinkedList<>();
-
-        private LeakDetector() {
-        }
-
-        public static void add(@Nullable final NativeImageBackedTexture texture) {
-            if (texture != null) {
-                leakedTextures.add(texture);
-            }
-        }
-
-        public static void tick() {
-            while (!leakedTextures.isEmpty()) {
-                final NativeImageBackedTexture texture = leakedTextures.remove();
-                texture.close();
-            }
-        }
-    }
 
+public final class DisplayModule extends AbstractModuleWithRotation implements IdleAwareModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
     /**
-     * The uncompressed image as RGBA, for faster application of draw calls
-     * and uploading to the GPU. Also kept on the server to allow sending
-     * current state to newly connected/coming closer clients.
+     * The image as indices into {@link #PALETTE}, four bits per pixel, two
+     * pixels per byte with the lower nibble first, followed by one bit per
+     * pixel telling whether the pixel was drawn at all, i.e. is not transparent.
+     * Also kept on the server to allow sending current state to newly
+     * connected/coming closer clients.
      */
-    private final int[] image = new int[RESOLUTION * RESOLUTION];
-    private boolean imageDirty = false;
+    private final byte[] image = new byte[IMAGE_SIZE];
 
-    @Environment(EnvType.CLIENT)
-    private NativeImageBackedTexture backingTexture;
-
-    @Environment(EnvType.CLIENT)
-    private Identifier backingTextureId;
+    /**
+     * The region of the image that changed since it was last uploaded, with
+     * the upper bounds exclusive. Empty if the lower bounds exceed the upper.
+     */
+    private int dirtyX0, dirtyY0, dirtyX1 = RESOLUTION, dirtyY1 = RESOLUTION;
 
+    /**
+     * Where in the shared display textures our image lives, if it was
+     * rendered already. Released in {@link #onDisposed()}.
+     */
     @Environment(EnvType.CLIENT)
-    private RenderLayer renderLayer;
+    @Nullable
+    private DisplayAtlas.Slot atlasSlot;
 
     /**
      * The current input state, i.e. what value we're currently reading.
@@ -86,6 +67,16 @@ public final class DisplayModule extends AbstractModuleWithRotation {
     // --------------------------------------------------------------------- //
     // Computed data
 
+    /**
+     * Our image writer, kept to avoid allocating it for each draw call.
+     */
+    private final ModuleStateWriter imageWriter = this::writeImage;
+
+    /**
+     * Whether sending the image has been deferred already, see {@link #sendImage()}.
+     */
+    private boolean isImageDeferred;
+
     /**
      * Current state of the display module, decides what happens with the next
      * value read on any of the ports.
@@ -103,6 +94,23 @@ public final class DisplayModule extends AbstractModuleWithRotation {
     // Resolution of the screen in pixels, width = height.
     private static final int RESOLUTION = 32;
 
+    // Layout of the image, see there.
+    private static final int PIXEL_COUNT = RESOLUTION * RESOLUTION;
+    private static final int OPACITY_OFFSET = PIXEL_COUNT / 2;
+    private static final int IMAGE_SIZE = OPACITY_OFFSET + PIXEL_COUNT / 8;
+
+    /**
+     * The colors pixels may have, in the ABGR format used by native images.
+     */
+    private static final int[] PALETTE = new int[16];
+
+    static {
+        for (int i = 0; i < PALETTE.length; i++) {
+            final int color = ColorUtils.getColorByIndex(i);
+            PALETTE[i] = (color & 0xFF00FF00) | ((color & 0xFF0000) >> 16) | ((color & 0xFF) << 16);
+        }
+    }
+
     // Don't allow displaying stuff on the edge of the casing. I mean we could,
     // technically, but that'd usually look pretty weird. Also it's more
     // intuitive that the usable area start in the inner, black part.
@@ -114,11 +122,7 @@ public final class DisplayModule extends AbstractModuleWithRotation {
     private static final String TAG_DRAW_CALL = "drawCall";
 
     // Data packet types.
-    private static final byte DATA_TYPE_CLEAR = 0;
-
-    // Runtime client-side bookkeeping
-    @Environment(EnvType.CLIENT)
-    private static int textureIdCounter = 1;
+    private static final byte DATA_TYPE_IMAGE = 0;
 
     // --------------------------------------------------------------------- //
 
@@ -126,6 +130,16 @@ public final class DisplayModule extends AbstractModuleWithRotation {
         super(casing, face);
     }
 
+    // --------------------------------------------------------------------- //
+    // IdleAwareModule
+
+    @Override
+    public boolean isIdle() {
+        // Drawing only advances when a value is read, so steps can only have
+        // an effect after one of our pipes changed state.
+        return true;
+    }
+
     // --------------------------------------------------------------------- //
     // Module
 
@@ -138,37 +152,42 @@ public final class DisplayModule extends AbstractModuleWithRotation {
 
     @Override
     public void onDisabled() {
-        Arrays.fill(image, 0);
+        Arrays.fill(image, (byte)0);
         state = State.COLOR;
-        imageDirty = true;
+        markDirty();
 
-        sendClear();
+        sendImage();
     }
 
     @Override
     public void onDisposed() {
         if (getCasing().getCasingWorld().isClient) {
             //noinspection MethodCallSideOnly Guarded by isClient check.
-            deleteTexture();
+            releaseAtlasSlot();
         }
     }
 
-    @Override
-    @Environment(EnvType.CLIENT)
-    public void finalize() {
-        LeakDetector.add(backingTexture);
-    }
-
     @Override
     public void onData(final ByteBuf data) {
-        if (data.readBoolean()) {
-            Arrays.fill(image, 0);
-        } else {
-            data.readBytes(drawCall);
-            applyDrawCall(drawCall);
+        if (data.readableBytes() != image.length) {
+            return;
         }
 
-        imageDirty = true;
+        // Only mark the pixels of bytes that actually changed, so that only
+        // the parts of the image changed by draw calls get uploaded.
+        final int start = data.readerIndex();
+        for (int i = 0; i < image.length; i++) {
+            final byte value = data.getByte(start + i);
+            if (value != image[i]) {
+                image[i] = value;
+                if (i < OPACITY_OFFSET) {
+                    markPixelsDirty(i * 2, 2);
+                } else {
+                    markPixelsDirty((i - OPACITY_OFFSET) * 8, 8);
+                }
+            }
+        }
+        data.skipBytes(image.length);
     }
 
     @Environment(EnvType.CLIENT)
@@ -183,11 +202,11 @@ public final class DisplayModule extends AbstractModuleWithRotation {
         matrices.push();
         rotateForRendering(matrices);
 
-        final RenderLayer rl = getRenderLayer();
-        updateBackingTexture();
+        final DisplayAtlas.Slot slot = getAtlasSlot();
+        updateAtlasSlot(slot);
 
-        final VertexConsumer vc = vcp.getBuffer(rl);
-        RenderUtil.drawQuad(matrices.peek(), vc, RenderUtil.maxLight, overlay);
+        final VertexConsumer vc = vcp.getBuffer(slot.getRenderLayer());
+        RenderUtil.drawQuad(matrices.peek(), vc, 0, 0, 1, 1, slot.getU0(), slot.getV0(), slot.getU1(), slot.getV1(), RenderUtil.maxLight, overlay);
 
         matrices.pop();
     }
@@ -196,9 +215,13 @@ public final class DisplayModule extends AbstractModuleWithRotation {
     public void readFromNBT(final CompoundTag nbt) {
         super.readFromNBT(nbt);
 
-        final int[] imageNbt = nbt.getIntArray(TAG_IMAGE);
-        System.arraycopy(imageNbt, 0, image, 0, Math.min(imageNbt.length, image.length));
-        imageDirty = true;
+        if (nbt.contains(TAG_IMAGE, NBTIds.TAG_INT_ARRAY)) {
+            readLegacyImage(nbt.getIntArray(TAG_IMAGE));
+        } else {
+            final byte[] imageNbt = nbt.getByteArray(TAG_IMAGE);
+            System.arraycopy(imageNbt, 0, image, 0, Math.min(imageNbt.length, image.length));
+        }
+        markDirty();
 
         state = EnumUtils.readFromNBT(State.class, TAG_STATE, nbt);
 
@@ -210,7 +233,7 @@ public final class DisplayModule extends AbstractModuleWithRotation {
     public void writeToNBT(final CompoundTag nbt) {
         super.writeToNBT(nbt);
 
-        nbt.putIntArray(TAG_IMAGE, image);
+        nbt.putByteArray(TAG_IMAGE, image.clone());
         EnumUtils.writeToNBT(state, TAG_STATE, nbt);
         nbt.putByteArray(TAG_DRAW_CALL, drawCall.clone());
     }
@@ -242,7 +265,7 @@ public final class DisplayModule extends AbstractModuleWithRotation {
         if (state == State.COLOR) {
             // Draw call completed, apply and send to client.
             applyDrawCall(drawCall);
-            sendDrawCall();
+            sendImage();
         }
     }
 
@@ -252,7 +275,7 @@ public final class DisplayModule extends AbstractModuleWithRotation {
      * @param drawCall the draw call to apply.
      */
     private void applyDrawCall(final byte[] drawCall) {
-        final byte color = drawCall[State.COLOR.ordinal()];
+        final int color = Math.max(0, drawCall[State.COLOR.ordinal()]) % PALETTE.length;
         final byte xin = drawCall[State.X.ordinal()];
         final byte yin = drawCall[State.Y.ordinal()];
         final byte w = drawCall[State.W.ordinal()];
@@ -266,115 +289,159 @@ public final class DisplayModule extends AbstractModuleWithRotation {
         for (int y = y0; y < y1; y++) {
             final int offset = y * RESOLUTION;
             for (int x = x0; x < x1; x++) {
-                final int index = offset + x;
-                int v = ColorUtils.getColorByIndex(Math.max(0, color));
-                v = (v & 0xFF00FF00) | ((v & 0xFF0000) >> 16) | ((v & 0xFF) << 16);
-                image[index] = v;
+                setPixel(offset + x, color);
             }
         }
     }
 
     /**
-     * Gets the texture backed by our NativeImage, creating it if required
+     * Set the color of a pixel and mark it as drawn.
+     *
+     * @param index the index of the pixel, i.e. <tt>y * RESOLUTION + x</tt>.
+     * @param color the index of the color in the palette.
      */
-    @Environment(EnvType.CLIENT)
-    private NativeImageBackedTexture getBackingTexture() {
-        if (backingTexture == null) {
-            backingTexture = new NativeImageBackedTexture(RESOLUTION, RESOLUTION, false);
-        }
-
-        return backingTexture;
+    private void setPixel(final int index, final int color) {
+        final int shift = (index & 1) << 2;
+        image[index >> 1] = (byte)((image[index >> 1] & ~(0xF << shift)) | (color << shift));
+        image[OPACITY_OFFSET + (index >> 3)] |= 1 << (index & 7);
     }
 
     /**
-     * Blit the raw image RGBA to @img
+     * Get the color of a pixel.
      *
-     * @param img the NativeImage to blit to
+     * @param index the index of the pixel, i.e. <tt>y * RESOLUTION + x</tt>.
+     * @return the color as ABGR, fully transparent if the pixel was not drawn.
      */
-    @Environment(EnvType.CLIENT)
-    private void blitToNativeImage(final NativeImage img) {
-        int ip = 0;
-        for (int iy = 0; iy < RESOLUTION; iy++) {
-            for (int ix = 0; ix < RESOLUTION; ix++, ip++) {
-                img.setPixelColor(ix, iy, image[ip]);
-            }
+    private int getPixel(final int index) {
+        if ((image[OPACITY_OFFSET + (index >> 3)] & (1 << (index & 7))) == 0) {
+            return 0;
         }
+        return PALETTE[(image[index >> 1] >> ((index & 1) << 2)) & 0xF];
     }
 
     /**
-     * Check if any image updates happened, and update the
-     * GPU-side texture apporpriately
+     * Convert an image stored as one ABGR value per pixel, as done by older
+     * versions, mapping colors not in the palette to transparent.
+     *
+     * @param legacyImage the image to convert.
      */
-    @Environment(EnvType.CLIENT)
-    private void updateBackingTexture() {
-        if (!imageDirty) {
-            return;
+    private void readLegacyImage(final int[] legacyImage) {
+        Arrays.fill(image, (byte)0);
+        for (int index = 0; index < Math.min(legacyImage.length, PIXEL_COUNT); index++) {
+            for (int color = 0; color < PALETTE.length; color++) {
+                if (PALETTE[color] == legacyImage[index]) {
+                    setPixel(index, color);
+                    break;
+                }
+            }
         }
+    }
 
-        final NativeImageBackedTexture texture = getBackingTexture();
-        blitToNativeImage(texture.getImage());
-        texture.upload();
+    /**
+     * Mark the whole image as changed, so it gets uploaded completely.
+     */
+    private void markDirty() {
+        dirtyX0 = 0;
+        dirtyY0 = 0;
+        dirtyX1 = RESOLUTION;
+        dirtyY1 = RESOLUTION;
+    }
 
-        imageDirty = false;
+    /**
+     * Mark a run of pixels in a single row as changed.
+     *
+     * @param index the index of the first pixel, i.e. <tt>y * RESOLUTION + x</tt>.
+     * @param count the number of pixels in the run.
+     */
+    private void markPixelsDirty(final int index, final int count) {
+        final int x = index % RESOLUTION;
+        final int y = index / RESOLUTION;
+        if (dirtyX0 >= dirtyX1 || dirtyY0 >= dirtyY1) {
+            dirtyX0 = x;
+            dirtyY0 = y;
+            dirtyX1 = x + count;
+            dirtyY1 = y + 1;
+        } else {
+            dirtyX0 = Math.min(dirtyX0, x);
+            dirtyY0 = Math.min(dirtyY0, y);
+            dirtyX1 = Math.max(dirtyX1, x + count);
+            dirtyY1 = Math.max(dirtyY1, y + 1);
+        }
     }
 
+    /**
+     * Gets our slot in the shared display textures, reserving one if required.
+     */
     @Environment(EnvType.CLIENT)
-    static private Identifier generateDynTextureId() {
-        final int id = textureIdCounter++;
-        return new Identifier("tis3d", "dynamic/dispmod_" + id);
+    private DisplayAtlas.Slot getAtlasSlot() {
+        if (atlasSlot == null || atlasSlot.isReleased()) {
+            atlasSlot = DisplayAtlas.INSTANCE.allocate();
+            markDirty();
+        }
+
+        return atlasSlot;
     }
 
     /**
-     * Gets the render layer associated with our texture, creating it if required.
+     * Copy the changed region of the image into our slot and upload it.
+     *
+     * @param slot the slot to update.
      */
     @Environment(EnvType.CLIENT)
-    private RenderLayer getRenderLayer() {
-        if (renderLayer == null) {
-            final TextureManager texMan = MinecraftClient.getInstance().getTextureManager();
-            final NativeImageBackedTexture tex = getBackingTexture();
-            backingTextureId = generateDynTextureId();
-
-            texMan.registerTexture(backingTextureId, tex);
+    private void updateAtlasSlot(final DisplayAtlas.Slot slot) {
+        if (dirtyX0 >= dirtyX1 || dirtyY0 >= dirtyY1) {
+            return;
+        }
 
-            renderLayer = RenderLayerAccess.getCutoutNoDiffLight(backingTextureId);
+        for (int y = dirtyY0; y < dirtyY1; y++) {
+            for (int x = dirtyX0; x < dirtyX1; x++) {
+                slot.setPixel(x, y, getPixel(y * RESOLUTION + x));
+            }
         }
+        slot.upload(dirtyX0, dirtyY0, dirtyX1, dirtyY1);
 
-        return renderLayer;
+        dirtyX0 = dirtyY0 = dirtyX1 = dirtyY1 = 0;
     }
 
     /**
-     * Deletes our texture from the GPU, if we have one.
+     * Gives back our slot in the shared display textures, if we have one.
      */
     @Environment(EnvType.CLIENT)
-    private void deleteTexture() {
-        if (backingTextureId != null) {
-            final TextureManager texMan = MinecraftClient.getInstance().getTextureManager();
-            TextureManagerExt.from(texMan).unregisterTexture(backingTextureId);
-        }
-
-        if (backingTexture != null) {
-            // Also closes the associated image
-            backingTexture.close();
-            backingTexture = null;
+    private void releaseAtlasSlot() {
+        if (atlasSlot != null) {
+            DisplayAtlas.INSTANCE.release(atlasSlot);
+            atlasSlot = null;
         }
     }
 
     /**
-     * Indicate to our client representation to clear the image data.
+     * Send the current image to our client representation.
      */
-    private void sendClear() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeBoolean(true);
-        getCasing().sendData(getFace(), data, DATA_TYPE_CLEAR);
+    private void sendImage() {
+        // Only the latest image gets sent, so when stepping off-thread it is
+        // enough to defer this once per batch of steps.
+        if (DeferredEffects.isActive()) {
+            if (!isImageDeferred) {
+                isImageDeferred = true;
+                DeferredEffects.add(this::sendImage, () -> isImageDeferred = false);
+            }
+            return;
+        }
+        isImageDeferred = false;
+
+        // Serialized when the network queue is flushed, so all draw calls of
+        // a tick are sent together, as the delta to the image each client has.
+        Network.INSTANCE.sendModuleState(getCasing(), getFace(), imageWriter, DATA_TYPE_IMAGE);
     }
 
     /**
-     * Send a draw call to our client representation.
+     * Serialize the current image.
+     *
+     * @param data the buffer to write the image to.
+     * @return always <tt>true</tt>.
      */
-    private void sendDrawCall() {
-        final ByteBuf data = Unpooled.buffer();
-        data.writeBoolean(false);
-        data.writeBytes(drawCall);
-        getCasing().sendData(getFace(), data);
+    private boolean writeImage(final ByteBuf data) {
+        data.writeBytes(image);
+        return true;
     }
 }
@@ -1,7 +1,6 @@
 package li.cil.tis3d.common.module;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Port;
@@ -12,12 +11,18 @@ import li.cil.tis3d.client.init.Textures;
 import li.cil.tis3d.client.render.font.AbstractFontRenderer;
 import li.cil.tis3d.client.render.font.SmallFontRenderer;
 import li.cil.tis3d.common.Constants;
+import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.init.Items;
 import li.cil.tis3d.common.item.CodeBookItem;
+import li.cil.tis3d.common.machine.DeferredEffects;
+import li.cil.tis3d.common.machine.IdleAwareModule;
+import li.cil.tis3d.common.machine.StepBatch;
 import li.cil.tis3d.common.module.execution.MachineImpl;
 import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.network.ModuleStateWriter;
+import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.util.ColorUtils;
 import li.cil.tis3d.util.EnumUtils;
 import li.cil.tis3d.util.NBTIds;
@@ -46,7 +51,7 @@ import java.util.*;
 /**
  * The programmable execution module.
  */
-public final class ExecutionModule extends AbstractModuleWithRotation implements BlockChangeAware {
+public final class ExecutionModule extends AbstractModuleWithRotation implements BlockChangeAware, IdleAwareModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -57,6 +62,28 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
     // --------------------------------------------------------------------- //
     // Computed data
 
+    /**
+     * Whether the last step did not change our state, and nothing else did since.
+     */
+    private boolean isIdle;
+
+    /**
+     * Our partial state writer, kept to avoid allocating it for each update.
+     */
+    private final ModuleStateWriter partialStateWriter = this::writePartialState;
+
+    /**
+     * Whether sending the partial state has been deferred already, see {@link #sendPartialState()}.
+     */
+    private boolean isPartialStateDeferred;
+
+    /**
+     * The number of upcoming steps the machine already ran ahead of time,
+     * see {@link MachineImpl#fastForward(int)}. Only ever non-zero during a
+     * batch of steps.
+     */
+    private int fastForwardedSteps;
+
     private enum State {
         IDLE,
         ERR,
@@ -103,14 +130,28 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
     @Override
     public void step() {
+        isIdle = false;
+        if (fastForwardedSteps > 0) {
+            // Already ran this step, and it only touched registers.
+            fastForwardedSteps--;
+            return;
+        }
+
         final State prevState = state;
+        getState().ensureCompiled();
 
         if (compileError != null) {
             state = State.ERR;
-        } else if (getState().instructions.isEmpty()) {
+        } else if (getState().program.instructions.isEmpty()) {
             state = State.IDLE;
         } else if (machine.step()) {
             state = State.RUN;
+            if (Settings.fastForwardExecution) {
+                final int remainingSteps = StepBatch.getRemainingSteps();
+                if (remainingSteps > 0) {
+                    fastForwardedSteps = machine.fastForward(remainingSteps);
+                }
+            }
             getCasing().markDirty();
             sendPartialState();
             return; // Don't send data twice.
@@ -121,16 +162,22 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         if (prevState != state) {
             getCasing().markDirty();
             sendPartialState();
+        } else {
+            // The current instruction is stuck, e.g. waiting on a pipe.
+            isIdle = true;
         }
     }
 
     @Override
     public void onEnabled() {
+        isIdle = false;
         sendFullState();
     }
 
     @Override
     public void onDisabled() {
+        isIdle = false;
+        fastForwardedSteps = 0;
         getState().reset();
         state = State.IDLE;
 
@@ -139,6 +186,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
     @Override
     public void onBeforeWriteComplete(final Port port) {
+        isIdle = false;
         if (compileError == null) {
             machine.onBeforeWriteComplete(port);
         }
@@ -146,6 +194,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
     @Override
     public void onWriteComplete(final Port port) {
+        isIdle = false;
         if (compileError == null) {
             machine.onWriteCompleted(port);
         }
@@ -176,8 +225,9 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         // Code book? Store current program on it if sneaking.
         if (Items.isBookCode(heldItem) && player.isSneaking()) {
             final CodeBookItem.Data data = CodeBookItem.Data.loadFromStack(heldItem);
-            if (getState().code != null && getState().code.length > 0) {
-                data.addOrSelectProgram(Arrays.asList(getState().code));
+            final String[] code = getState().program.code;
+            if (code != null && code.length > 0) {
+                data.addOrSelectProgram(Arrays.asList(code));
                 CodeBookItem.Data.saveToStack(heldItem, data);
             }
 
@@ -254,7 +304,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
 
         // Render detailed state when player is close.
         final MachineState machineState = getState();
-        if (machineState.code != null && rendererDispatcher.camera.getBlockPos().getSquaredDistance(getCasing().getPosition()) < 64) {
+        if (machineState.program.code != null && rendererDispatcher.camera.getBlockPos().getSquaredDistance(getCasing().getPosition()) < 64) {
             renderState(matrices, vcp, RenderUtil.maxLight, overlay, machineState);
         }
 
@@ -264,9 +314,11 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
     @Override
     public void readFromNBT(final CompoundTag nbt) {
         super.readFromNBT(nbt);
+        isIdle = false;
 
+        // Clients only render the code, so only compile it once it runs.
         final CompoundTag machineNbt = nbt.getCompound(TAG_MACHINE);
-        getState().readFromNBT(machineNbt);
+        getState().readFromNBT(machineNbt, false);
         state = EnumUtils.readFromNBT(State.class, TAG_STATE, nbt);
 
         if (nbt.contains(TAG_COMPILE_ERROR)) {
@@ -296,6 +348,14 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         }
     }
 
+    // --------------------------------------------------------------------- //
+    // IdleAwareModule
+
+    @Override
+    public boolean isIdle() {
+        return isIdle;
+    }
+
     // --------------------------------------------------------------------- //
     // BlockChangeAware
 
@@ -318,6 +378,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
      * @param player the player that issued the compile.
      */
     private void compile(final Iterable<String> code, final PlayerEntity player) {
+        isIdle = false;
         compileError = null;
         try {
             getState().clear();
@@ -341,20 +402,45 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
      * Send the current execution state to the client.
      */
     private void sendPartialState() {
-        if (!isVisible()) {
+        // Visibility checks need world access, so when stepping off-thread
+        // defer the whole thing. Only the latest state gets sent anyway, so
+        // deferring it once per batch of steps is enough.
+        if (DeferredEffects.isActive()) {
+            if (!isPartialStateDeferred) {
+                isPartialStateDeferred = true;
+                DeferredEffects.add(this::sendPartialState, () -> isPartialStateDeferred = false);
+            }
             return;
         }
+        isPartialStateDeferred = false;
+
+        // Serialized when the network queue is flushed, so this is cheap
+        // to call often, only the latest state is sent.
+        Network.INSTANCE.sendModuleState(getCasing(), getFace(), partialStateWriter, DATA_TYPE_INCREMENTAL);
+    }
 
-        final ByteBuf data = Unpooled.buffer();
+    /**
+     * Serialize the current execution state, if it can be seen by clients.
+     *
+     * @param data the buffer to write the state to.
+     * @return whether the state should be sent.
+     */
+    private boolean writePartialState(final ByteBuf data) {
+        if (!isVisible()) {
+            return false;
+        }
 
-        data.writeShort((short)getState().pc);
-        data.writeShort(getState().acc);
-        data.writeShort(getState().bak);
-        data.writeBoolean(getState().last.isPresent());
-        getState().last.ifPresent(port -> data.writeByte((byte)port.ordinal()));
+        final MachineState machineState = getState();
+        data.writeShort((short)machineState.pc);
+        data.writeShort(machineState.acc);
+        data.writeShort(machineState.bak);
+        data.writeBoolean(machineState.last.isPresent());
+        if (machineState.last.isPresent()) {
+            data.writeByte((byte)machineState.last.get().ordinal());
+        }
         data.writeByte(state.ordinal());
 
-        getCasing().sendData(getFace(), data, DATA_TYPE_INCREMENTAL);
+        return true;
     }
 
     @Environment(EnvType.CLIENT)
@@ -385,10 +471,10 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         // If we have more lines than fit on our "screen", offset so that the
         // current line is in the middle, but don't let last line scroll in.
         final int maxLines = 50 / (fontRenderer.getCharHeight() + 1);
-        final int totalLines = machineState.code.length;
+        final int totalLines = machineState.program.code.length;
         final int currentLine;
-        if (machineState.lineNumbers.size() > 0) {
-            currentLine = Optional.ofNullable(machineState.lineNumbers.get(machineState.pc)).orElse(-1);
+        if (machineState.program.lineNumbers.size() > 0) {
+            currentLine = Optional.ofNullable(machineState.program.lineNumbers.get(machineState.pc)).orElse(-1);
         } else if (compileError != null) {
             currentLine = compileError.getLineNumber();
         } else {
@@ -405,7 +491,7 @@ public final class ExecutionModule extends AbstractModuleWithRotation implements
         int currentLineOffset = -1;
 
         for (int lineNumber = offset; lineNumber < Math.min(totalLines, offset + maxLines); lineNumber++) {
-            final String line = machineState.code[lineNumber];
+            final String line = machineState.program.code[lineNumber];
             if (lineNumber == currentLine) {
                 if (state == State.WAIT) {
                     currentLineBgColor = 0xFFA8A8A8;
@@ -12,6 +12,7 @@ import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.init.Textures;
 import li.cil.tis3d.common.API;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.machine.StaticRenderModule;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.render.RenderLayer;
@@ -31,7 +32,7 @@ import net.minecraft.world.World;
 import java.util.Deque;
 import java.util.LinkedList;
 
-public final class InfraredModule extends AbstractModule implements InfraredReceiver {
+public final class InfraredModule extends AbstractModule implements InfraredReceiver, StaticRenderModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
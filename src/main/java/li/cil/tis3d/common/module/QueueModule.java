@@ -11,6 +11,8 @@ import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.init.Textures;
 import li.cil.tis3d.client.render.font.AbstractFontRenderer;
 import li.cil.tis3d.client.render.font.SmallFontRenderer;
+import li.cil.tis3d.common.machine.CachedPipes;
+import li.cil.tis3d.common.machine.IdleAwareModule;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.render.RenderLayer;
@@ -29,7 +31,7 @@ import net.minecraft.util.math.MathHelper;
  * <p>
  * While it is not full, it will receive data on all ports and push them back.
  */
-public final class QueueModule extends AbstractModuleWithRotation {
+public final class QueueModule extends AbstractModuleWithRotation implements IdleAwareModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -54,10 +56,26 @@ public final class QueueModule extends AbstractModuleWithRotation {
      */
     private static final int QUEUE_SIZE = 17;
 
+    /**
+     * The pipes on our face, only looked up again when they change.
+     */
+    private final CachedPipes pipes;
+
     // --------------------------------------------------------------------- //
 
     public QueueModule(final Casing casing, final Face face) {
         super(casing, face);
+        pipes = new CachedPipes(casing, face);
+    }
+
+    // --------------------------------------------------------------------- //
+    // IdleAwareModule
+
+    @Override
+    public boolean isIdle() {
+        // The queue only changes when values are read or written, so steps
+        // can only have an effect after one of our pipes changed state.
+        return true;
     }
 
     // --------------------------------------------------------------------- //
@@ -222,7 +240,7 @@ public final class QueueModule extends AbstractModuleWithRotation {
         }
 
         for (final Port port : Port.VALUES) {
-            final Pipe sendingPipe = getCasing().getSendingPipe(getFace(), port);
+            final Pipe sendingPipe = pipes.getSendingPipe(port);
             if (!sendingPipe.isWriting()) {
                 sendingPipe.beginWrite(peek());
             }
@@ -240,7 +258,7 @@ public final class QueueModule extends AbstractModuleWithRotation {
             }
 
             // Continuously read from all ports, push back last received value.
-            final Pipe receivingPipe = getCasing().getReceivingPipe(getFace(), port);
+            final Pipe receivingPipe = pipes.getReceivingPipe(port);
             if (!receivingPipe.isReading()) {
                 receivingPipe.beginRead();
             }
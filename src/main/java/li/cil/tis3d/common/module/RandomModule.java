@@ -7,6 +7,7 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.module.AbstractModule;
 import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.init.Textures;
+import li.cil.tis3d.common.machine.StaticRenderModule;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.render.RenderLayer;
@@ -19,7 +20,7 @@ import net.minecraft.world.World;
 
 import java.util.Random;
 
-public final class RandomModule extends AbstractModule {
+public final class RandomModule extends AbstractModule implements StaticRenderModule {
     public RandomModule(final Casing casing, final Face face) {
         super(casing, face);
     }
@@ -12,6 +12,7 @@ import li.cil.tis3d.api.serial.SerialInterfaceProvider;
 import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.init.Textures;
 import li.cil.tis3d.common.API;
+import li.cil.tis3d.common.machine.StaticRenderModule;
 import li.cil.tis3d.util.WorldUtils;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -36,7 +37,7 @@ import java.util.Optional;
  * While it is not full, it will receive data on all ports and push them back.
  */
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-public final class SerialPortModule extends AbstractModule implements BlockChangeAware {
+public final class SerialPortModule extends AbstractModule implements BlockChangeAware, StaticRenderModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
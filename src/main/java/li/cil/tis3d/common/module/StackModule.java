@@ -11,6 +11,8 @@ import li.cil.tis3d.api.util.RenderUtil;
 import li.cil.tis3d.client.init.Textures;
 import li.cil.tis3d.client.render.font.AbstractFontRenderer;
 import li.cil.tis3d.client.render.font.SmallFontRenderer;
+import li.cil.tis3d.common.machine.CachedPipes;
+import li.cil.tis3d.common.machine.IdleAwareModule;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.render.RenderLayer;
@@ -29,7 +31,7 @@ import net.minecraft.util.math.MathHelper;
  * <p>
  * While it is not full, it will receive data on all ports and push them back.
  */
-public final class StackModule extends AbstractModuleWithRotation {
+public final class StackModule extends AbstractModuleWithRotation implements IdleAwareModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -51,10 +53,26 @@ public final class StackModule extends AbstractModuleWithRotation {
      */
     private static final int STACK_SIZE = 16;
 
+    /**
+     * The pipes on our face, only looked up again when they change.
+     */
+    private final CachedPipes pipes;
+
     // --------------------------------------------------------------------- //
 
     public StackModule(final Casing casing, final Face face) {
         super(casing, face);
+        pipes = new CachedPipes(casing, face);
+    }
+
+    // --------------------------------------------------------------------- //
+    // IdleAwareModule
+
+    @Override
+    public boolean isIdle() {
+        // The stack only changes when values are read or written, so steps
+        // can only have an effect after one of our pipes changed state.
+        return true;
     }
 
     // --------------------------------------------------------------------- //
@@ -215,7 +233,7 @@ public final class StackModule extends AbstractModuleWithRotation {
         }
 
         for (final Port port : Port.VALUES) {
-            final Pipe sendingPipe = getCasing().getSendingPipe(getFace(), port);
+            final Pipe sendingPipe = pipes.getSendingPipe(port);
             if (!sendingPipe.isWriting()) {
                 sendingPipe.beginWrite(peek());
             }
@@ -233,7 +251,7 @@ public final class StackModule extends AbstractModuleWithRotation {
             }
 
             // Continuously read from all ports, push back last received value.
-            final Pipe receivingPipe = getCasing().getReceivingPipe(getFace(), port);
+            final Pipe receivingPipe = pipes.getReceivingPipe(port);
             if (!receivingPipe.isReading()) {
                 receivingPipe.beginRead();
             }
@@ -0,0 +1,276 @@
+package li.cil.tis3d.common.module.execution;
+
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import java.util.List;
+
+/**
+ * Packed representation of a program, as lowered from the {@link Instruction}s
+ * produced by the {@link li.cil.tis3d.common.module.execution.compiler.Compiler}.
+ * <p>
+ * Each instruction is stored as a single <tt>int</tt>, indexed by the program
+ * counter. The lowest byte holds the opcode, the next two nibbles the first and
+ * second {@link Target} operand (by ordinal), and the upper 16 bits an immediate
+ * value or a pre-resolved jump address. This allows {@link MachineImpl} to run
+ * programs through a single switch without virtual dispatch or label lookups.
+ * <p>
+ * The {@link Instruction} classes remain the reference semantics; this is
+ * purely a faster encoding of the same program.
+ * <p>
+ * Lowering also runs a small analysis pass, finding instructions that only
+ * use registers and simple counting loops, which allows {@link MachineImpl}
+ * to fast-forward through code that does not access any ports.
+ */
+public final class CompiledProgram {
+    // --------------------------------------------------------------------- //
+    // Opcodes
+
+    public static final int OP_HCF = 0;
+    public static final int OP_JMP = 1;
+    public static final int OP_JEZ = 2;
+    public static final int OP_JGZ = 3;
+    public static final int OP_JLZ = 4;
+    public static final int OP_JNZ = 5;
+    public static final int OP_JRO = 6;
+    public static final int OP_JRO_IMM = 7;
+    public static final int OP_MOV = 8;
+    public static final int OP_MOV_IMM = 9;
+    public static final int OP_SAV = 10;
+    public static final int OP_SWP = 11;
+    public static final int OP_NEG = 12;
+    public static final int OP_ADD = 13;
+    public static final int OP_ADD_IMM = 14;
+    public static final int OP_SUB = 15;
+    public static final int OP_SUB_IMM = 16;
+    public static final int OP_MUL = 17;
+    public static final int OP_MUL_IMM = 18;
+    public static final int OP_DIV = 19;
+    public static final int OP_DIV_IMM = 20;
+    public static final int OP_NOT = 21;
+    public static final int OP_AND = 22;
+    public static final int OP_AND_IMM = 23;
+    public static final int OP_OR = 24;
+    public static final int OP_OR_IMM = 25;
+    public static final int OP_XOR = 26;
+    public static final int OP_XOR_IMM = 27;
+    public static final int OP_SHL = 28;
+    public static final int OP_SHL_IMM = 29;
+    public static final int OP_SHR = 30;
+    public static final int OP_SHR_IMM = 31;
+    public static final int OP_RLLAST = 32;
+    public static final int OP_RRLAST = 33;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The packed instructions, indexed by address.
+     */
+    private final int[] code;
+
+    /**
+     * Whether the instruction at an address only uses registers, i.e. always
+     * completes in a single step without touching any pipes.
+     */
+    private final boolean[] isLocal;
+
+    /**
+     * For addresses starting a counting loop, i.e. an immediate addition
+     * followed by a conditional jump back to it, the value added to ACC per
+     * iteration. Zero for all other addresses.
+     */
+    private final int[] loopDelta;
+
+    // --------------------------------------------------------------------- //
+
+    private CompiledProgram(final int[] code) {
+        this.code = code;
+        this.isLocal = new boolean[code.length];
+        this.loopDelta = new int[code.length];
+        for (int address = 0; address < code.length; address++) {
+            isLocal[address] = isLocalInstruction(code[address]);
+        }
+        for (int address = 0; address + 1 < code.length; address++) {
+            loopDelta[address] = computeLoopDelta(code[address], code[address + 1], address);
+        }
+    }
+
+    /**
+     * Lower the program currently held by the specified machine state. Must
+     * only be called after all labels have been validated.
+     *
+     * @param state the state holding the instructions and labels to lower.
+     * @return the compiled representation of the program.
+     */
+    public static CompiledProgram lower(final MachineState state) {
+        final List<Instruction> instructions = state.program.instructions;
+        final int[] code = new int[instructions.size()];
+        for (int address = 0; address < code.length; address++) {
+            code[address] = instructions.get(address).lower(state);
+        }
+        return new CompiledProgram(code);
+    }
+
+    /**
+     * The number of instructions in the program.
+     *
+     * @return the length of the program.
+     */
+    public int size() {
+        return code.length;
+    }
+
+    /**
+     * Get the packed instruction at the specified address.
+     *
+     * @param address the address of the instruction.
+     * @return the packed instruction.
+     */
+    public int get(final int address) {
+        return code[address];
+    }
+
+    /**
+     * Whether the instruction at the specified address only uses registers,
+     * so that running it does not depend on or affect anything outside the
+     * machine state, and always completes in a single step.
+     *
+     * @param address the address of the instruction.
+     * @return <tt>true</tt> if the instruction only uses registers.
+     */
+    public boolean isLocal(final int address) {
+        return isLocal[address];
+    }
+
+    /**
+     * Get the value added to ACC per iteration of the counting loop starting
+     * at the specified address. A counting loop is an immediate addition or
+     * subtraction followed by a <tt>JGZ</tt>, <tt>JLZ</tt> or <tt>JNZ</tt>
+     * back to it, so each iteration takes two steps and the number of
+     * iterations only depends on ACC.
+     *
+     * @param address the address to check.
+     * @return the value added per iteration, or zero if no loop starts there.
+     */
+    public int getLoopDelta(final int address) {
+        return loopDelta[address];
+    }
+
+    // --------------------------------------------------------------------- //
+    // Analysis
+
+    private static boolean isLocalInstruction(final int word) {
+        switch (opcode(word)) {
+            case OP_JMP:
+            case OP_JEZ:
+            case OP_JGZ:
+            case OP_JLZ:
+            case OP_JNZ:
+            case OP_JRO_IMM:
+            case OP_SAV:
+            case OP_SWP:
+            case OP_NEG:
+            case OP_ADD_IMM:
+            case OP_SUB_IMM:
+            case OP_MUL_IMM:
+            case OP_NOT:
+            case OP_AND_IMM:
+            case OP_OR_IMM:
+            case OP_XOR_IMM:
+            case OP_SHL_IMM:
+            case OP_SHR_IMM:
+            case OP_RLLAST:
+            case OP_RRLAST:
+                return true;
+            case OP_DIV_IMM:
+                // Division by zero halts and catches fire.
+                return value(word) != 0;
+            case OP_MOV_IMM:
+                return isRegister(targetB(word));
+            case OP_MOV:
+                return isRegister(targetA(word)) && isRegister(targetB(word));
+            case OP_JRO:
+            case OP_ADD:
+            case OP_SUB:
+            case OP_MUL:
+            case OP_AND:
+            case OP_OR:
+            case OP_XOR:
+            case OP_SHL:
+            case OP_SHR:
+                return isRegister(targetA(word));
+            default:
+                // HCF, reads and writes of ports, divisions by a register.
+                return false;
+        }
+    }
+
+    private static boolean isRegister(final Target target) {
+        return target == Target.ACC || target == Target.NIL;
+    }
+
+    private static int computeLoopDelta(final int word, final int next, final int address) {
+        final int delta;
+        switch (opcode(word)) {
+            case OP_ADD_IMM:
+                delta = value(word);
+                break;
+            case OP_SUB_IMM:
+                delta = -value(word);
+                break;
+            default:
+                return 0;
+        }
+
+        switch (opcode(next)) {
+            case OP_JGZ:
+            case OP_JLZ:
+            case OP_JNZ:
+                return value(next) == address ? delta : 0;
+            default:
+                return 0;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+    // Encoding
+
+    public static int encode(final int opcode) {
+        return opcode & 0xFF;
+    }
+
+    public static int encode(final int opcode, final Target a) {
+        return encode(opcode) | (a.ordinal() << 8);
+    }
+
+    public static int encode(final int opcode, final Target a, final Target b) {
+        return encode(opcode, a) | (b.ordinal() << 12);
+    }
+
+    public static int encode(final int opcode, final short value) {
+        return encode(opcode) | (value << 16);
+    }
+
+    public static int encode(final int opcode, final short value, final Target a) {
+        return encode(opcode, a) | (value << 16);
+    }
+
+    // --------------------------------------------------------------------- //
+    // Decoding
+
+    public static int opcode(final int word) {
+        return word & 0xFF;
+    }
+
+    public static Target targetA(final int word) {
+        return Target.VALUES[(word >>> 8) & 0xF];
+    }
+
+    public static Target targetB(final int word) {
+        return Target.VALUES[(word >>> 12) & 0xF];
+    }
+
+    public static short value(final int word) {
+        return (short)(word >> 16);
+    }
+}
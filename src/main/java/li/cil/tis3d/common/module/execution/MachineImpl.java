@@ -1,14 +1,14 @@
 package li.cil.tis3d.common.module.execution;
 
-import com.google.common.collect.ImmutableMap;
 import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.HaltAndCatchFireException;
 import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.module.ExecutionModule;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.common.module.execution.target.*;
 
 import javax.annotation.Nullable;
-import java.util.Map;
 
 /**
  * Track machine state and ease communicating with ports of an execution module.
@@ -22,24 +22,47 @@ public final class MachineImpl implements Machine {
     // Computed data
 
     private final ExecutionModule module;
-    private final Map<Target, TargetInterface> interfaces;
+    private final Face face;
+
+    /**
+     * Interfaces for all targets, indexed by target ordinal, ignoring the
+     * module's rotation.
+     */
+    private final TargetInterface[] interfaces;
+
+    /**
+     * Interfaces for all targets, indexed by target ordinal, taking into
+     * account the module's rotation as of {@link #dispatchFacing}.
+     */
+    private final TargetInterface[] dispatch = new TargetInterface[Target.VALUES.length];
+
+    /**
+     * The facing of the module {@link #dispatch} was built for.
+     */
+    @Nullable
+    private Port dispatchFacing;
+
+    /**
+     * The value fetched by the last successful call to {@link #tryRead(Target)}.
+     */
+    private short readValue;
 
     // --------------------------------------------------------------------- //
 
     public MachineImpl(final ExecutionModule module, final Face face) {
         this.state = new MachineState();
         this.module = module;
-        this.interfaces = ImmutableMap.<Target, TargetInterface>builder().
-            put(Target.ACC, new AccTargetInterface(this)).
-            put(Target.BAK, new BakTargetInterface(this)).
-            put(Target.NIL, new NilTargetInterface(this)).
-            put(Target.LEFT, new SideTargetInterface(this, module, face, Port.LEFT)).
-            put(Target.RIGHT, new SideTargetInterface(this, module, face, Port.RIGHT)).
-            put(Target.UP, new SideTargetInterface(this, module, face, Port.UP)).
-            put(Target.DOWN, new SideTargetInterface(this, module, face, Port.DOWN)).
-            put(Target.ANY, new AnyTargetInterface(this, module, face)).
-            put(Target.LAST, new LastTargetInterface(this, module, face)).
-            build();
+        this.face = face;
+        this.interfaces = new TargetInterface[Target.VALUES.length];
+        interfaces[Target.ACC.ordinal()] = new AccTargetInterface(this);
+        interfaces[Target.BAK.ordinal()] = new BakTargetInterface(this);
+        interfaces[Target.NIL.ordinal()] = new NilTargetInterface(this);
+        interfaces[Target.LEFT.ordinal()] = new SideTargetInterface(this, module, face, Port.LEFT);
+        interfaces[Target.RIGHT.ordinal()] = new SideTargetInterface(this, module, face, Port.RIGHT);
+        interfaces[Target.UP.ordinal()] = new SideTargetInterface(this, module, face, Port.UP);
+        interfaces[Target.DOWN.ordinal()] = new SideTargetInterface(this, module, face, Port.DOWN);
+        interfaces[Target.ANY.ordinal()] = new AnyTargetInterface(this, module, face);
+        interfaces[Target.LAST.ordinal()] = new LastTargetInterface(this, module, face);
     }
 
     /**
@@ -49,14 +72,74 @@ public final class MachineImpl implements Machine {
      * @return <tt>true</tt> if the current instruction changed (even if it's the same again).
      */
     public boolean step() {
-        final Instruction instruction = getInstruction();
-        if (instruction != null) {
-            instruction.step(this);
+        final CompiledProgram program = getProgram();
+        if (program != null) {
+            if (state.pc >= 0 && state.pc < program.size()) {
+                execute(program.get(state.pc));
+            }
+        } else {
+            final Instruction instruction = getInstruction();
+            if (instruction != null) {
+                instruction.step(this);
+            }
         }
 
         return state.finishCycle();
     }
 
+    /**
+     * Run the upcoming steps ahead of time, for as long as they only use
+     * registers. Stops before the first instruction that accesses a port or
+     * would leave the program counter unchanged, so the state after the
+     * returned number of steps is exactly the one stepping would produce.
+     * <p>
+     * Counting loops are skipped in one go, computing the number of
+     * iterations from ACC instead of running them.
+     *
+     * @param maxSteps the maximum number of steps to run.
+     * @return the number of steps that were run.
+     */
+    public int fastForward(final int maxSteps) {
+        final CompiledProgram program = getProgram();
+        if (program == null) {
+            return 0;
+        }
+
+        int steps = 0;
+        while (steps < maxSteps) {
+            final int pc = state.pc;
+            if (pc < 0 || pc >= program.size() || !program.isLocal(pc)) {
+                break;
+            }
+
+            final int delta = program.getLoopDelta(pc);
+            if (delta != 0 && maxSteps - steps >= 2) {
+                final int iterations = getLoopIterations(program.get(pc + 1), state.acc, delta);
+                final int budget = (maxSteps - steps) / 2;
+                final int runIterations = Math.min(iterations, budget);
+
+                // Saturation does not change the outcome of adding the same
+                // value repeatedly, so this equals adding one at a time.
+                state.acc = saturate(state.acc + (long)runIterations * delta);
+                state.pc = runIterations == iterations ? pc + 2 : pc;
+                state.finishCycle();
+                steps += runIterations * 2;
+                continue;
+            }
+
+            execute(program.get(pc));
+            if (!state.finishCycle()) {
+                // Jumped to itself, which only has an effect on the state of
+                // the module, so leave that to the regular step. The machine
+                // state is unchanged by this, so nothing to undo.
+                break;
+            }
+            steps++;
+        }
+
+        return steps;
+    }
+
     /**
      * Inform the active instruction that a write operation will be completed.
      *
@@ -64,9 +147,19 @@ public final class MachineImpl implements Machine {
      * @see li.cil.tis3d.api.module.Module#onBeforeWriteComplete(Port)
      */
     public void onBeforeWriteComplete(final Port port) {
-        final Instruction instruction = getInstruction();
-        if (instruction != null) {
-            instruction.onBeforeWriteComplete(this, port);
+        final CompiledProgram program = getProgram();
+        if (program != null) {
+            if (state.pc >= 0 && state.pc < program.size()) {
+                final int word = program.get(state.pc);
+                if (isMove(word)) {
+                    getInterface(CompiledProgram.targetB(word)).onBeforeWriteComplete(port);
+                }
+            }
+        } else {
+            final Instruction instruction = getInstruction();
+            if (instruction != null) {
+                instruction.onBeforeWriteComplete(this, port);
+            }
         }
     }
 
@@ -79,9 +172,16 @@ public final class MachineImpl implements Machine {
      * @param port the port on which the write operation was completed.
      */
     public void onWriteCompleted(final Port port) {
-        final Instruction instruction = getInstruction();
-        if (instruction != null) {
-            instruction.onWriteCompleted(this, port);
+        final CompiledProgram program = getProgram();
+        if (program != null) {
+            if (state.pc >= 0 && state.pc < program.size() && isMove(program.get(state.pc))) {
+                state.pc++;
+            }
+        } else {
+            final Instruction instruction = getInstruction();
+            if (instruction != null) {
+                instruction.onWriteCompleted(this, port);
+            }
         }
     }
 
@@ -92,12 +192,22 @@ public final class MachineImpl implements Machine {
      */
     @Nullable
     private Instruction getInstruction() {
-        if (state.pc >= 0 && state.pc < state.instructions.size()) {
-            return state.instructions.get(state.pc);
+        if (state.pc >= 0 && state.pc < state.program.instructions.size()) {
+            return state.program.instructions.get(state.pc);
         }
         return null;
     }
 
+    /**
+     * Get the packed program to run, if the packed interpreter is enabled.
+     *
+     * @return the compiled program, or <tt>null</tt> to use the reference instructions.
+     */
+    @Nullable
+    private CompiledProgram getProgram() {
+        return Settings.compiledExecution ? state.program.compiled : null;
+    }
+
     // --------------------------------------------------------------------- //
     // Machine
 
@@ -108,28 +218,45 @@ public final class MachineImpl implements Machine {
 
     @Override
     public TargetInterface getInterface(final Target target) {
-        final Target rotatedTarget = getRotatedTarget(target);
-        return interfaces.get(rotatedTarget);
+        final Port facing = module.getFacing();
+        if (facing != dispatchFacing) {
+            buildDispatch(facing);
+        }
+        return dispatch[target.ordinal()];
     }
 
     // --------------------------------------------------------------------- //
 
+    /**
+     * Rebuild the table of interfaces per target for the specified facing of
+     * the execution module. Only needed when the module was rotated.
+     *
+     * @param facing the current facing of the module.
+     */
+    private void buildDispatch(final Port facing) {
+        for (final Target target : Target.VALUES) {
+            dispatch[target.ordinal()] = interfaces[getRotatedTarget(target, facing).ordinal()];
+        }
+        dispatchFacing = facing;
+    }
+
     /**
      * Adjust the specified target based on the execution module's rotation.
      * <p>
      * Will only do something for port targets.
      *
      * @param target the target to transform.
+     * @param facing the facing of the module.
      * @return the adjusted target.
      */
-    private Target getRotatedTarget(final Target target) {
+    private Target getRotatedTarget(final Target target, final Port facing) {
         switch (target) {
             case LEFT:
             case RIGHT:
             case UP:
             case DOWN:
-                int rotation = Port.ROTATION[module.getFacing().ordinal()];
-                if (module.getFace() == Face.Y_NEG) {
+                int rotation = Port.ROTATION[facing.ordinal()];
+                if (face == Face.Y_NEG) {
                     rotation = -rotation;
                 }
                 final Port port = Target.toPort(target);
@@ -138,4 +265,264 @@ public final class MachineImpl implements Machine {
         }
         return target;
     }
+
+    // --------------------------------------------------------------------- //
+    // Packed program interpreter. Must mirror the semantics of the classes in
+    // the instruction package exactly, those are the reference implementation.
+
+    /**
+     * Execute a single packed instruction.
+     *
+     * @param word the packed instruction to execute.
+     */
+    private void execute(final int word) {
+        switch (CompiledProgram.opcode(word)) {
+            case CompiledProgram.OP_HCF:
+                throw new HaltAndCatchFireException();
+
+            case CompiledProgram.OP_JMP:
+                state.pc = CompiledProgram.value(word);
+                break;
+            case CompiledProgram.OP_JEZ:
+                state.pc = state.acc == 0 ? CompiledProgram.value(word) : state.pc + 1;
+                break;
+            case CompiledProgram.OP_JGZ:
+                state.pc = state.acc > 0 ? CompiledProgram.value(word) : state.pc + 1;
+                break;
+            case CompiledProgram.OP_JLZ:
+                state.pc = state.acc < 0 ? CompiledProgram.value(word) : state.pc + 1;
+                break;
+            case CompiledProgram.OP_JNZ:
+                state.pc = state.acc != 0 ? CompiledProgram.value(word) : state.pc + 1;
+                break;
+            case CompiledProgram.OP_JRO:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.pc += readValue;
+                }
+                break;
+            case CompiledProgram.OP_JRO_IMM:
+                state.pc += CompiledProgram.value(word);
+                break;
+
+            case CompiledProgram.OP_MOV: {
+                final TargetInterface destination = getInterface(CompiledProgram.targetB(word));
+                if (!destination.isWriting() && tryRead(CompiledProgram.targetA(word))) {
+                    if (destination.beginWrite(readValue)) {
+                        state.pc++;
+                    }
+                }
+                break;
+            }
+            case CompiledProgram.OP_MOV_IMM: {
+                final TargetInterface destination = getInterface(CompiledProgram.targetB(word));
+                if (!destination.isWriting()) {
+                    if (destination.beginWrite(CompiledProgram.value(word))) {
+                        state.pc++;
+                    }
+                }
+                break;
+            }
+            case CompiledProgram.OP_SAV:
+                state.bak = state.acc;
+                state.pc++;
+                break;
+            case CompiledProgram.OP_SWP: {
+                final short tmp = state.acc;
+                state.acc = state.bak;
+                state.bak = tmp;
+                state.pc++;
+                break;
+            }
+
+            case CompiledProgram.OP_NEG:
+                state.acc = (short)-state.acc;
+                state.pc++;
+                break;
+            case CompiledProgram.OP_ADD:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc = saturate(state.acc + readValue);
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_ADD_IMM:
+                state.acc = saturate(state.acc + CompiledProgram.value(word));
+                state.pc++;
+                break;
+            case CompiledProgram.OP_SUB:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc = saturate(state.acc - readValue);
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_SUB_IMM:
+                state.acc = saturate(state.acc - CompiledProgram.value(word));
+                state.pc++;
+                break;
+            case CompiledProgram.OP_MUL:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc = saturate(state.acc * readValue);
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_MUL_IMM:
+                state.acc = saturate(state.acc * CompiledProgram.value(word));
+                state.pc++;
+                break;
+            case CompiledProgram.OP_DIV:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    divide(readValue);
+                }
+                break;
+            case CompiledProgram.OP_DIV_IMM:
+                divide(CompiledProgram.value(word));
+                break;
+
+            case CompiledProgram.OP_NOT:
+                state.acc = (short)~state.acc;
+                state.pc++;
+                break;
+            case CompiledProgram.OP_AND:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc &= readValue;
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_AND_IMM:
+                state.acc &= CompiledProgram.value(word);
+                state.pc++;
+                break;
+            case CompiledProgram.OP_OR:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc |= readValue;
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_OR_IMM:
+                state.acc |= CompiledProgram.value(word);
+                state.pc++;
+                break;
+            case CompiledProgram.OP_XOR:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc ^= readValue;
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_XOR_IMM:
+                state.acc ^= CompiledProgram.value(word);
+                state.pc++;
+                break;
+            case CompiledProgram.OP_SHL:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc <<= readValue;
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_SHL_IMM:
+                state.acc <<= CompiledProgram.value(word);
+                state.pc++;
+                break;
+            case CompiledProgram.OP_SHR:
+                if (tryRead(CompiledProgram.targetA(word))) {
+                    state.acc >>= readValue;
+                    state.pc++;
+                }
+                break;
+            case CompiledProgram.OP_SHR_IMM:
+                state.acc >>= CompiledProgram.value(word);
+                state.pc++;
+                break;
+
+            case CompiledProgram.OP_RLLAST:
+                state.last = state.last.map(p -> p.rotated(-1));
+                state.pc++;
+                break;
+            case CompiledProgram.OP_RRLAST:
+                state.last = state.last.map(p -> p.rotated(1));
+                state.pc++;
+                break;
+
+            default:
+                throw new IllegalStateException("Invalid opcode in compiled program.");
+        }
+    }
+
+    /**
+     * Begin reading from the specified target if necessary and fetch the value
+     * if it can be transferred, storing it in {@link #readValue}.
+     *
+     * @param target the target to read from.
+     * @return <tt>true</tt> if a value was read, <tt>false</tt> otherwise.
+     */
+    private boolean tryRead(final Target target) {
+        final TargetInterface source = getInterface(target);
+        if (!source.isReading()) {
+            source.beginRead();
+        }
+        if (source.canTransfer()) {
+            readValue = source.read();
+            return true;
+        }
+        return false;
+    }
+
+    private void divide(final int value) {
+        if (value == 0) {
+            throw new HaltAndCatchFireException();
+        }
+
+        state.acc = saturate(state.acc / value);
+        state.pc++;
+    }
+
+    private static short saturate(final int value) {
+        return (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    private static short saturate(final long value) {
+        return (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    /**
+     * Compute the number of iterations of a counting loop, including the last
+     * one, in which the jump back is not taken.
+     *
+     * @param jump  the packed conditional jump closing the loop.
+     * @param acc   the value of ACC when entering the loop.
+     * @param delta the value added to ACC per iteration.
+     * @return the number of iterations, or {@link Integer#MAX_VALUE} if the loop never exits.
+     */
+    private static int getLoopIterations(final int jump, final int acc, final int delta) {
+        switch (CompiledProgram.opcode(jump)) {
+            case CompiledProgram.OP_JGZ:
+                return getIterationsWhilePositive(acc, delta);
+            case CompiledProgram.OP_JLZ:
+                return getIterationsWhilePositive(-acc, -delta);
+            case CompiledProgram.OP_JNZ:
+                // ACC can only become zero by hitting it exactly, saturation
+                // never produces zero. Afterwards ACC keeps moving away from it.
+                if (-acc % delta == 0 && -acc / delta > 0) {
+                    return -acc / delta;
+                }
+                return Integer.MAX_VALUE;
+            default:
+                throw new IllegalStateException("Invalid loop in compiled program.");
+        }
+    }
+
+    private static int getIterationsWhilePositive(final int acc, final int delta) {
+        if (acc + delta <= 0) {
+            return 1;
+        }
+        if (delta > 0) {
+            // Moving away from zero, saturation keeps it positive.
+            return Integer.MAX_VALUE;
+        }
+        // First iteration where acc + n * delta <= 0.
+        return (acc - delta - 1) / -delta;
+    }
+
+    private static boolean isMove(final int word) {
+        final int opcode = CompiledProgram.opcode(word);
+        return opcode == CompiledProgram.OP_MOV || opcode == CompiledProgram.OP_MOV_IMM;
+    }
 }
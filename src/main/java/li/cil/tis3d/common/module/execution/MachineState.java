@@ -2,11 +2,10 @@ package li.cil.tis3d.common.module.execution;
 
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.common.Constants;
-import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
-import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.util.EnumUtils;
+import li.cil.tis3d.util.NBTIds;
 import net.minecraft.nbt.CompoundTag;
 
 import java.util.*;
@@ -39,20 +38,16 @@ public final class MachineState {
      */
     public Optional<Port> last = Optional.empty();
 
-    /**
-     * Lines of original code this state was compiled from.
-     */
-    public String[] code;
-
     /**
      * State of program counter after last call to {@link #finishCycle()}.
      */
-    private int pcPrev;
+    int pcPrev;
 
     // --------------------------------------------------------------------- //
     // Computed data
 
     // NBT tag names.
+    private static final String TAG_DATA = "data";
     private static final String TAG_CODE = "code";
     private static final String TAG_PC = "pc";
     private static final String TAG_ACC = "acc";
@@ -61,19 +56,11 @@ public final class MachineState {
     private static final String TAG_PC_PREV = "pcPrev";
 
     /**
-     * List of instructions (the program) stored in the machine.
-     */
-    public final List<Instruction> instructions = new ArrayList<>(Settings.maxLinesPerProgram);
-
-    /**
-     * List of labels and associated addresses.
+     * The program stored in the machine, shared with all machines running the
+     * same code. Recreated from its code when loading, so it is not persisted
+     * directly.
      */
-    public final HashMap<String, Integer> labels = new HashMap<>(Settings.maxLinesPerProgram);
-
-    /**
-     * Instruction address to line number mapping.
-     */
-    public final HashMap<Integer, Integer> lineNumbers = new HashMap<>(Settings.maxLinesPerProgram);
+    public Program program = Program.EMPTY;
 
     // --------------------------------------------------------------------- //
 
@@ -92,7 +79,7 @@ public final class MachineState {
 
         // Set to zero even when running out at the end to have programs
         // restart automatically.
-        if (pc < 0 || pc >= instructions.size()) {
+        if (pc < 0 || pc >= program.instructions.size()) {
             pc = 0;
         }
 
@@ -117,22 +104,63 @@ public final class MachineState {
     public void clear() {
         reset();
 
-        instructions.clear();
-        labels.clear();
-        code = null;
-        lineNumbers.clear();
+        program = Program.EMPTY;
+    }
+
+    /**
+     * Compile the program if it was loaded without compiling it, keeping the
+     * current register values.
+     */
+    public void ensureCompiled() {
+        if (!program.isListing || program.code == null) {
+            return;
+        }
+
+        final int pc = this.pc;
+        final short acc = this.acc;
+        final short bak = this.bak;
+        final Optional<Port> last = this.last;
+        final int pcPrev = this.pcPrev;
+        try {
+            Compiler.compile(Arrays.asList(program.code), this);
+        } catch (final ParseException ignored) {
+            // Code is also saved in errored state.
+        }
+        this.pc = pc;
+        this.acc = acc;
+        this.bak = bak;
+        this.last = last;
+        this.pcPrev = pcPrev;
     }
 
     // --------------------------------------------------------------------- //
 
     public void readFromNBT(final CompoundTag nbt) {
+        readFromNBT(nbt, true);
+    }
+
+    /**
+     * Load the state from the specified tag.
+     * <p>
+     * Clients only display the program, so they may skip compiling it. The
+     * program then only has its code and line numbers, and must be compiled
+     * via {@link #ensureCompiled()} before running it.
+     *
+     * @param nbt     the tag to load the state from.
+     * @param compile whether to compile the loaded code.
+     */
+    public void readFromNBT(final CompoundTag nbt, final boolean compile) {
+        if (nbt.contains(TAG_DATA, NBTIds.TAG_BYTE_ARRAY)) {
+            MachineStateCodec.decode(nbt.getByteArray(TAG_DATA), this, compile);
+            return;
+        }
+
+        // Backwards compatibility.
         if (nbt.contains(TAG_CODE)) {
             try {
                 Compiler.compile(Arrays.asList(Constants.PATTERN_LINES.split(nbt.getString(TAG_CODE))), this);
             } catch (final ParseException ignored) {
-                // Silent because this is also used to send code to the
-                // clients to visualize errors, and code is also saved
-                // in errored state.
+                // Silent because code is also saved in errored state.
             }
         }
 
@@ -148,14 +176,6 @@ public final class MachineState {
     }
 
     public void writeToNBT(final CompoundTag nbt) {
-        nbt.putInt(TAG_PC, pc);
-        nbt.putShort(TAG_ACC, acc);
-        nbt.putShort(TAG_BAK, bak);
-        last.ifPresent(port -> EnumUtils.writeToNBT(port, TAG_LAST, nbt));
-        nbt.putInt(TAG_PC_PREV, pcPrev);
-
-        if (code != null) {
-            nbt.putString(TAG_CODE, String.join("\n", code));
-        }
+        nbt.putByteArray(TAG_DATA, MachineStateCodec.encode(this));
     }
 }
@@ -0,0 +1,273 @@
+package li.cil.tis3d.common.module.execution;
+
+import io.netty.buffer.Unpooled;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.API;
+import li.cil.tis3d.common.Constants;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import net.minecraft.network.PacketByteBuf;
+import org.apache.logging.log4j.LogManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary encoding of a {@link MachineState}, used for saving and
+ * for sending the state to clients.
+ * <p>
+ * Layout, with integers other than registers stored as var-ints:
+ * <ul>
+ * <li>format version, flags</li>
+ * <li><tt>pc</tt>, <tt>acc</tt>, <tt>bak</tt>, <tt>pcPrev</tt>, <tt>last</tt> if set</li>
+ * <li>if there is code: its length in bytes, the deflated or raw UTF-8 code,
+ * and the instruction address to line number mapping as runs of consecutive
+ * lines, each stored as the number of lines skipped before it and its length</li>
+ * </ul>
+ * The line mapping allows clients to display the program without compiling it.
+ */
+final class MachineStateCodec {
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_LAST = 1;
+    private static final int FLAG_CODE = 1 << 1;
+    private static final int FLAG_COMPRESSED = 1 << 2;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Encode the specified machine state.
+     *
+     * @param state the state to encode.
+     * @return the encoded state.
+     */
+    static byte[] encode(final MachineState state) {
+        final PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+        final String[] code = state.program.code;
+
+        EncodedCode encodedCode = null;
+        int flags = 0;
+        if (state.last.isPresent()) {
+            flags |= FLAG_LAST;
+        }
+        if (code != null) {
+            flags |= FLAG_CODE;
+            encodedCode = getEncodedCode(state.program, code);
+            if (encodedCode.isCompressed) {
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+
+        buffer.writeByte(VERSION);
+        buffer.writeByte(flags);
+
+        buffer.writeVarInt(state.pc);
+        buffer.writeShort(state.acc);
+        buffer.writeShort(state.bak);
+        buffer.writeVarInt(state.pcPrev);
+        state.last.ifPresent(port -> buffer.writeByte(port.ordinal()));
+
+        if (encodedCode != null) {
+            buffer.writeBytes(encodedCode.data);
+        }
+
+        final byte[] data = new byte[buffer.readableBytes()];
+        buffer.readBytes(data);
+        buffer.release();
+        return data;
+    }
+
+    /**
+     * Decode a machine state from the specified data into the specified state.
+     * <p>
+     * If <tt>compile</tt> is <tt>false</tt> the code is not compiled, the
+     * resulting program only has its code and line numbers, which is enough
+     * to display it, but not to run it, see {@link Program#listing(String[], Map)}.
+     *
+     * @param data    the encoded state.
+     * @param state   the state to decode into.
+     * @param compile whether to compile the code.
+     */
+    static void decode(final byte[] data, final MachineState state, final boolean compile) {
+        final PacketByteBuf buffer = new PacketByteBuf(Unpooled.wrappedBuffer(data));
+        try {
+            if (buffer.readByte() != VERSION) {
+                LogManager.getLogger(API.MOD_ID).warn("Broken save, unknown execution state version.");
+                state.clear();
+                return;
+            }
+            final int flags = buffer.readByte();
+
+            final int pc = buffer.readVarInt();
+            final short acc = buffer.readShort();
+            final short bak = buffer.readShort();
+            final int pcPrev = buffer.readVarInt();
+            final Optional<Port> last = (flags & FLAG_LAST) != 0 ? Optional.of(Port.values()[buffer.readByte()]) : Optional.empty();
+
+            if ((flags & FLAG_CODE) != 0) {
+                final int length = buffer.readVarInt();
+                final byte[] codeBytes = buffer.readByteArray();
+                final String source = new String((flags & FLAG_COMPRESSED) != 0 ? inflate(codeBytes, length) : codeBytes, StandardCharsets.UTF_8);
+                final String[] code = Constants.PATTERN_LINES.split(source);
+                final Map<Integer, Integer> lineNumbers = readLineNumbers(buffer);
+
+                if (compile) {
+                    try {
+                        Compiler.compile(Arrays.asList(code), state);
+                    } catch (final ParseException ignored) {
+                        // Code is also saved in errored state.
+                    }
+                } else {
+                    state.program = Program.listing(code, lineNumbers);
+                }
+            } else {
+                state.program = Program.EMPTY;
+            }
+
+            state.pc = pc;
+            state.acc = acc;
+            state.bak = bak;
+            state.pcPrev = pcPrev;
+            state.last = last;
+        } catch (final IndexOutOfBoundsException | DataFormatException e) {
+            // This can only happen if someone messes with the save.
+            LogManager.getLogger(API.MOD_ID).warn("Broken save, execution state is invalid.", e);
+            state.clear();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The encoded code and line numbers of a program, which only depend on the
+     * program and are cached on it, see {@link Program#encodedCode}.
+     */
+    static final class EncodedCode {
+        final boolean isCompressed;
+        final byte[] data;
+
+        EncodedCode(final boolean isCompressed, final byte[] data) {
+            this.isCompressed = isCompressed;
+            this.data = data;
+        }
+    }
+
+    private static EncodedCode getEncodedCode(final Program program, final String[] code) {
+        EncodedCode encodedCode = program.encodedCode;
+        if (encodedCode == null) {
+            // Programs are immutable, so concurrent encoders at worst both
+            // encode the code and one of the equal results is kept.
+            encodedCode = encodeCode(code, program.lineNumbers);
+            program.encodedCode = encodedCode;
+        }
+        return encodedCode;
+    }
+
+    private static EncodedCode encodeCode(final String[] code, final Map<Integer, Integer> lineNumbers) {
+        final byte[] codeBytes = String.join("\n", code).getBytes(StandardCharsets.UTF_8);
+        final byte[] compressedBytes = deflate(codeBytes);
+        final boolean isCompressed = compressedBytes.length < codeBytes.length;
+
+        final PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+        buffer.writeVarInt(codeBytes.length);
+        buffer.writeByteArray(isCompressed ? compressedBytes : codeBytes);
+        writeLineNumbers(buffer, lineNumbers);
+
+        final byte[] data = new byte[buffer.readableBytes()];
+        buffer.readBytes(data);
+        buffer.release();
+        return new EncodedCode(isCompressed, data);
+    }
+
+    private static void writeLineNumbers(final PacketByteBuf buffer, final Map<Integer, Integer> lineNumbers) {
+        // Addresses are contiguous and their line numbers increasing, so
+        // collect runs of instructions on consecutive lines.
+        final int count = lineNumbers.size();
+        final int[] runs = new int[count * 2];
+        int runCount = 0;
+        int nextLine = 0;
+        for (int address = 0; address < count; ) {
+            final int firstLine = lineNumbers.getOrDefault(address, nextLine);
+            int length = 1;
+            while (address + length < count && lineNumbers.getOrDefault(address + length, -1) == firstLine + length) {
+                length++;
+            }
+
+            runs[runCount * 2] = firstLine - nextLine;
+            runs[runCount * 2 + 1] = length;
+            runCount++;
+
+            nextLine = firstLine + length;
+            address += length;
+        }
+
+        buffer.writeVarInt(runCount);
+        for (int i = 0; i < runCount * 2; i++) {
+            buffer.writeVarInt(runs[i]);
+        }
+    }
+
+    private static Map<Integer, Integer> readLineNumbers(final PacketByteBuf buffer) {
+        final Map<Integer, Integer> lineNumbers = new HashMap<>();
+        final int runs = buffer.readVarInt();
+        int address = 0;
+        int line = 0;
+        for (int run = 0; run < runs; run++) {
+            line += buffer.readVarInt();
+            final int length = buffer.readVarInt();
+            for (int i = 0; i < length; i++) {
+                lineNumbers.put(address++, line++);
+            }
+        }
+        return lineNumbers;
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(data.length);
+            final byte[] chunk = new byte[256];
+            while (!deflater.finished()) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] data, final int length) throws DataFormatException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            final byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                final int count = inflater.inflate(result, offset, length - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated code.");
+                }
+                offset += count;
+            }
+            if (offset != length) {
+                throw new DataFormatException("Truncated code.");
+            }
+            return result;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private MachineStateCodec() {
+    }
+}
@@ -0,0 +1,102 @@
+package li.cil.tis3d.common.module.execution;
+
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of compiling a piece of code: the instructions and debug info
+ * generated from it, or the error that prevented it from compiling.
+ * <p>
+ * Programs are immutable and shared by all {@link MachineState}s running the
+ * same code, which only keep their own registers. The
+ * {@link li.cil.tis3d.common.module.execution.compiler.Compiler} caches them
+ * as long as any machine state still uses them.
+ */
+public final class Program {
+    /**
+     * The program of machine states that have no code.
+     */
+    public static final Program EMPTY = new Program(null, Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), null, null);
+
+    /**
+     * Lines of original code this program was compiled from.
+     */
+    @Nullable
+    public final String[] code;
+
+    /**
+     * List of instructions (the program).
+     */
+    public final List<Instruction> instructions;
+
+    /**
+     * List of labels and associated addresses.
+     */
+    public final Map<String, Integer> labels;
+
+    /**
+     * Instruction address to line number mapping.
+     */
+    public final Map<Integer, Integer> lineNumbers;
+
+    /**
+     * The packed representation of {@link #instructions}, if the program
+     * compiled successfully.
+     */
+    @Nullable
+    public final CompiledProgram compiled;
+
+    /**
+     * The error the code failed to compile with, if any.
+     */
+    @Nullable
+    public final ParseException error;
+
+    /**
+     * Whether this program was loaded without compiling its code, so it only
+     * has its code and line numbers, see {@link #listing(String[], Map)}.
+     */
+    public final boolean isListing;
+
+    /**
+     * The code and line numbers as saved and sent to clients, computed when
+     * first needed. Saves and syncs happen often while the code rarely
+     * changes, so this avoids compressing it each time.
+     */
+    @Nullable
+    volatile MachineStateCodec.EncodedCode encodedCode;
+
+    // --------------------------------------------------------------------- //
+
+    public Program(@Nullable final String[] code, final List<Instruction> instructions, final Map<String, Integer> labels, final Map<Integer, Integer> lineNumbers, @Nullable final CompiledProgram compiled, @Nullable final ParseException error) {
+        this(code, instructions, labels, lineNumbers, compiled, error, false);
+    }
+
+    private Program(@Nullable final String[] code, final List<Instruction> instructions, final Map<String, Integer> labels, final Map<Integer, Integer> lineNumbers, @Nullable final CompiledProgram compiled, @Nullable final ParseException error, final boolean isListing) {
+        this.code = code;
+        this.instructions = Collections.unmodifiableList(instructions);
+        this.labels = Collections.unmodifiableMap(labels);
+        this.lineNumbers = Collections.unmodifiableMap(lineNumbers);
+        this.compiled = compiled;
+        this.error = error;
+        this.isListing = isListing;
+    }
+
+    /**
+     * Create a program that only holds code and line numbers, for displaying
+     * it without compiling it. Must be compiled before it can run, see
+     * {@link MachineState#ensureCompiled()}.
+     *
+     * @param code        the lines of code of the program.
+     * @param lineNumbers the instruction address to line number mapping.
+     * @return the program.
+     */
+    public static Program listing(final String[] code, final Map<Integer, Integer> lineNumbers) {
+        return new Program(code, Collections.emptyList(), Collections.emptyMap(), lineNumbers, null, null, true);
+    }
+}
@@ -4,14 +4,14 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Program;
 import li.cil.tis3d.common.module.execution.compiler.instruction.*;
 import li.cil.tis3d.common.module.execution.instruction.*;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Compiles TIS-100 assembly code into instructions.
@@ -22,7 +22,9 @@ public final class Compiler {
     /**
      * Parse the specified piece of assembly code into the specified machine state.
      * <p>
-     * Note that the machine state will be hard reset.
+     * Note that the machine state will be hard reset. Programs are shared by
+     * all machine states running the same code, so code that is already in
+     * use elsewhere is not parsed again.
      *
      * @param code  the code to parse and compile.
      * @param state the machine state to store the instructions and debug info in.
@@ -39,71 +41,91 @@ public final class Compiler {
             lines[lineNumber] = lines[lineNumber].toUpperCase(Locale.US);
         }
 
-        state.code = lines;
+        final String source = String.join("\n", lines);
+        Program program = ProgramCache.get(source);
+        if (program == null) {
+            program = compile(lines);
+            ProgramCache.put(source, program);
+        }
+
+        state.program = program;
+
+        final ParseException error = program.error;
+        if (error != null) {
+            // Don't hand out the cached instance, callers may adjust it.
+            throw new ParseException(error.getMessage(), error.getLineNumber(), error.getStart(), error.getEnd());
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Parse the specified normalized lines of assembly code into a new program.
+     * <p>
+     * Package-private so benchmarks can compile without the program cache.
+     *
+     * @param lines the code to parse and compile.
+     * @return the compiled program, holding the error if the code is invalid.
+     */
+    static Program compile(final String[] lines) {
+        final List<Instruction> instructions = new ArrayList<>(lines.length);
+        final Map<String, Integer> labels = new HashMap<>();
+        final Map<Integer, Integer> lineNumbers = new HashMap<>();
 
         try {
-            // Parse all lines into the specified machine state.
+            // Parse all lines into the new program.
             final List<Validator> validators = new ArrayList<>();
             final Map<String, String> defines = new HashMap<>();
+            final ParsedLine line = new ParsedLine();
             for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
                 // Enforce max line length.
                 if (lines[lineNumber].length() > Settings.maxColumnsPerLine) {
                     throw new ParseException(Constants.MESSAGE_TOO_MANY_COLUMNS, lineNumber, Settings.maxColumnsPerLine, Settings.maxColumnsPerLine);
                 }
 
-                // Check for defines, also trims whitespace.
-                final Matcher defineMatcher = PATTERN_DEFINE.matcher(lines[lineNumber]);
-                if (defineMatcher.matches()) {
-                    parseDefine(defineMatcher, defines);
-                }
+                // Split into tokens, strips comments and whitespace.
+                line.parse(lines[lineNumber]);
 
-                final Matcher undefineMatcher = PATTERN_UNDEFINE.matcher(lines[lineNumber]);
-                if (undefineMatcher.matches()) {
-                    parseUndefine(undefineMatcher, defines);
-                }
+                // Check for defines.
+                parseDefine(line, defines);
+                parseUndefine(line, defines);
 
-                // Get current line, strip comments.
-                final Matcher commentMatcher = PATTERN_COMMENT.matcher(lines[lineNumber]);
-                final String line = commentMatcher.replaceFirst("").trim();
-
-                // Extract a label, if any, pass the rest onto the instruction parser. Also trims.
-                final Matcher lineMatcher = PATTERN_LINE.matcher(line);
-                if (lineMatcher.matches()) {
-                    parseLabel(lineMatcher, state, lineNumber);
-                    parseInstruction(lineMatcher, state, lineNumber, defines, validators);
-                } else {
-                    // This should be pretty much impossible...
-                    throw new ParseException(Constants.MESSAGE_INVALID_FORMAT, lineNumber, 0, 0);
-                }
+                // Extract a label, if any, then the instruction.
+                parseLabel(line, instructions, labels, lineNumber);
+                parseInstruction(line, instructions, lineNumbers, lineNumber, defines, validators);
             }
 
             // Run all registered validators as a post-processing step. This is used
             // to check jumps reference existing labels, for example.
+            final MachineState state = new MachineState();
+            state.program = new Program(lines, instructions, labels, lineNumbers, null, null);
             for (final Validator validator : validators) {
                 validator.accept(state);
             }
+
+            // All labels are known to be valid now, lower the program into its
+            // packed representation for the interpreter.
+            return new Program(lines, instructions, labels, lineNumbers, CompiledProgram.lower(state), null);
         } catch (final ParseException e) {
-            state.clear();
-            state.code = lines;
-            throw e;
+            return new Program(lines, Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), null, e);
         }
     }
 
     // --------------------------------------------------------------------- //
 
     /**
-     * Parse a define from the specified match and put it in the map of defines.
+     * Parse a define from the specified line and put it in the map of defines.
      *
-     * @param matcher the matcher for the line to parse.
+     * @param line    the tokens of the line to parse.
      * @param defines the map with defines to add results to.
      */
-    private static void parseDefine(final Matcher matcher, final Map<String, String> defines) {
-        final String key = matcher.group("key");
+    private static void parseDefine(final ParsedLine line, final Map<String, String> defines) {
+        final String key = line.getDefineKey();
         if (key == null) {
             return;
         }
 
-        String value = matcher.group("value");
+        String value = line.getDefineValue();
         if (value == null) {
             return;
         }
@@ -122,13 +144,13 @@ public final class Compiler {
     }
 
     /**
-     * Parse an undefine from the specified match and remove it from the map of defines.
+     * Parse an undefine from the specified line and remove it from the map of defines.
      *
-     * @param matcher the matcher for the line to parse.
+     * @param line    the tokens of the line to parse.
      * @param defines the map with defines to remove results from.
      */
-    private static void parseUndefine(final Matcher matcher, final Map<String, String> defines) {
-        final String key = matcher.group("key");
+    private static void parseUndefine(final ParsedLine line, final Map<String, String> defines) {
+        final String key = line.getUndefineKey();
         if (key == null) {
             return;
         }
@@ -139,56 +161,54 @@ public final class Compiler {
     /**
      * Look for a label on the specified line and store it if present.
      *
-     * @param matcher    the matcher for the line to parse.
-     * @param state      the machine state to store the label in.
-     * @param lineNumber the current line number.
+     * @param line         the tokens of the line to parse.
+     * @param instructions the instructions parsed so far.
+     * @param labels       the labels to store the label in.
+     * @param lineNumber   the current line number.
      */
-    private static void parseLabel(final Matcher matcher, final MachineState state, final int lineNumber) throws ParseException {
-        final String label = matcher.group("label");
+    private static void parseLabel(final ParsedLine line, final List<Instruction> instructions, final Map<String, Integer> labels, final int lineNumber) throws ParseException {
+        final String label = line.get(ParsedLine.Token.LABEL);
         if (label == null) {
             return;
         }
 
         // Got a label, store it and the address it represents.
-        if (state.labels.containsKey(label)) {
-            throw new ParseException(Constants.MESSAGE_LABEL_DUPLICATE, lineNumber, matcher.start("label"), matcher.end("label"));
+        if (labels.containsKey(label)) {
+            throw new ParseException(Constants.MESSAGE_LABEL_DUPLICATE, lineNumber, line.start(ParsedLine.Token.LABEL), line.end(ParsedLine.Token.LABEL));
         }
-        state.labels.put(label, state.instructions.size());
+        labels.put(label, instructions.size());
     }
 
     /**
      * Look for an instruction on the specified line and store it if present.
      *
-     * @param matcher    the matcher for the line to parse.
-     * @param state      the machine state to store the generated instruction in.
-     * @param lineNumber the number of the line we're parsing (for exceptions).
-     * @param defines    the map of currently active defines.
-     * @param validators list of validators instruction emitters may add to.
+     * @param line         the tokens of the line to parse.
+     * @param instructions the instructions to store the generated instruction in.
+     * @param lineNumbers  the instruction address to line number mapping to update.
+     * @param lineNumber   the number of the line we're parsing (for exceptions).
+     * @param defines      the map of currently active defines.
+     * @param validators   list of validators instruction emitters may add to.
      * @throws ParseException if there was a syntax error.
      */
-    private static void parseInstruction(final Matcher matcher, final MachineState state, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
-        final String name = matcher.group("name");
+    private static void parseInstruction(final ParsedLine line, final List<Instruction> instructions, final Map<Integer, Integer> lineNumbers, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final String name = line.get(ParsedLine.Token.NAME);
         if (name == null) {
             return;
         }
 
         // Got an instruction, process arguments and instantiate it.
         final Instruction instruction = EMITTER_MAP.getOrDefault(name, EMITTER_MISSING).
-            compile(matcher, lineNumber, defines, validators);
+            compile(line, lineNumber, defines, validators);
 
         // Remember line numbers for debugging.
-        state.lineNumbers.put(state.instructions.size(), lineNumber);
+        lineNumbers.put(instructions.size(), lineNumber);
 
-        // Store the instruction in the machine state (after just to skip the -1 :P).
-        state.instructions.add(instruction);
+        // Store the instruction in the program (after just to skip the -1 :P).
+        instructions.add(instruction);
     }
 
     // --------------------------------------------------------------------- //
 
-    private static final Pattern PATTERN_COMMENT = Pattern.compile("#.*$");
-    private static final Pattern PATTERN_DEFINE = Pattern.compile("#DEFINE\\s+(?<key>\\S+)\\s*(?<value>\\S+)\\s*$");
-    private static final Pattern PATTERN_UNDEFINE = Pattern.compile("#UNDEF\\s+(?<key>\\S+)\\s*$");
-    private static final Pattern PATTERN_LINE = Pattern.compile("^\\s*(?:(?<label>[^:\\s]+)\\s*:\\s*)?(?:(?<name>\\S+)\\s*(?<arg1>[^,\\s]+)?\\s*,?\\s*(?<arg2>[^,\\s]+)?\\s*(?<excess>.+)?)?\\s*$");
     private static final String INSTRUCTION_NO_NAME = "NOP";
     private static final Instruction INSTRUCTION_NOP = new AddInstruction(Target.NIL);
     private static final InstructionEmitter EMITTER_MISSING = new MissingInstructionEmitter();
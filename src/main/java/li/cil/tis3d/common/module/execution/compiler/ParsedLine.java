@@ -0,0 +1,275 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import javax.annotation.Nullable;
+
+/**
+ * The tokens of a single line of assembly code.
+ * <p>
+ * Lines are split in a single pass, without any intermediate strings other
+ * than the tokens themselves. Instances are reused for all lines of a program,
+ * so tokens and their positions must be copied if they are needed after the
+ * next call to {@link #parse(String)}.
+ * <p>
+ * Positions are columns relative to the first non-whitespace character of
+ * the line, with comments removed. Tokens are split exactly like this regular
+ * expression would split the line:
+ * <pre>
+ * ^\s*(?:(?&lt;label&gt;[^:\s]+)\s*:\s*)?(?:(?&lt;name&gt;\S+)\s*(?&lt;arg1&gt;[^,\s]+)?\s*,?\s*(?&lt;arg2&gt;[^,\s]+)?\s*(?&lt;excess&gt;.+)?)?\s*$
+ * </pre>
+ */
+public final class ParsedLine {
+    /**
+     * The tokens a line may contain.
+     */
+    public enum Token {
+        LABEL,
+        NAME,
+        ARG1,
+        ARG2,
+        EXCESS
+    }
+
+    private static final Token[] TOKENS = Token.values();
+    private static final String DIRECTIVE_DEFINE = "#DEFINE";
+    private static final String DIRECTIVE_UNDEFINE = "#UNDEF";
+
+    // --------------------------------------------------------------------- //
+
+    private final String[] values = new String[TOKENS.length];
+    private final int[] starts = new int[TOKENS.length];
+    private final int[] ends = new int[TOKENS.length];
+    private int length;
+
+    @Nullable
+    private String defineKey, defineValue, undefineKey;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Split the specified line into its tokens, replacing the ones of the
+     * previously parsed line.
+     *
+     * @param line the normalized line to parse.
+     */
+    public void parse(final String line) {
+        for (final Token token : TOKENS) {
+            clear(token);
+        }
+        parseDirectives(line);
+
+        // Strip comments and surrounding whitespace.
+        int begin = 0;
+        int limit = line.indexOf('#');
+        if (limit < 0) {
+            limit = line.length();
+        }
+        while (begin < limit && line.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (limit > begin && line.charAt(limit - 1) <= ' ') {
+            limit--;
+        }
+        length = limit - begin;
+
+        int index = begin;
+
+        // Label, only if followed by a colon.
+        final int labelEnd = skipWord(line, index, limit, true, false);
+        if (labelEnd > index) {
+            final int colon = skipWhitespace(line, labelEnd, limit);
+            if (colon < limit && line.charAt(colon) == ':') {
+                set(Token.LABEL, line, begin, index, labelEnd);
+                index = skipWhitespace(line, colon + 1, limit);
+            }
+        }
+
+        if (index >= limit) {
+            return;
+        }
+
+        // Instruction name, may contain anything but whitespace.
+        final int nameEnd = skipWord(line, index, limit, false, false);
+        set(Token.NAME, line, begin, index, nameEnd);
+        index = skipWhitespace(line, nameEnd, limit);
+
+        // Arguments, optionally separated by a comma.
+        index = parseArgument(Token.ARG1, line, begin, index, limit);
+        if (index < limit && line.charAt(index) == ',') {
+            index = skipWhitespace(line, index + 1, limit);
+        }
+        index = parseArgument(Token.ARG2, line, begin, index, limit);
+
+        // Anything else is in excess.
+        if (index < limit) {
+            set(Token.EXCESS, line, begin, index, limit);
+        }
+    }
+
+    /**
+     * Get the value of a token of the last parsed line.
+     *
+     * @param token the token to get.
+     * @return the value of the token, <tt>null</tt> if the line does not have it.
+     */
+    @Nullable
+    public String get(final Token token) {
+        return values[token.ordinal()];
+    }
+
+    /**
+     * Get the start column of a token of the last parsed line.
+     *
+     * @param token the token to get the position of.
+     * @return the start column of the token, <tt>-1</tt> if the line does not have it.
+     */
+    public int start(final Token token) {
+        return starts[token.ordinal()];
+    }
+
+    /**
+     * Get the end column of a token of the last parsed line.
+     *
+     * @param token the token to get the position of.
+     * @return the end column of the token, <tt>-1</tt> if the line does not have it.
+     */
+    public int end(final Token token) {
+        return ends[token.ordinal()];
+    }
+
+    /**
+     * Get the end column of the last parsed line.
+     *
+     * @return the length of the line without comments and surrounding whitespace.
+     */
+    public int end() {
+        return length;
+    }
+
+    /**
+     * The name defined by the last parsed line, if it is a <tt>#DEFINE</tt>.
+     *
+     * @return the defined name, <tt>null</tt> if the line does not define one.
+     */
+    @Nullable
+    public String getDefineKey() {
+        return defineKey;
+    }
+
+    /**
+     * The value defined by the last parsed line, if it is a <tt>#DEFINE</tt>.
+     *
+     * @return the defined value, <tt>null</tt> if the line does not define one.
+     */
+    @Nullable
+    public String getDefineValue() {
+        return defineValue;
+    }
+
+    /**
+     * The name removed by the last parsed line, if it is an <tt>#UNDEF</tt>.
+     *
+     * @return the undefined name, <tt>null</tt> if the line does not undefine one.
+     */
+    @Nullable
+    public String getUndefineKey() {
+        return undefineKey;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Parse <tt>#DEFINE key value</tt> and <tt>#UNDEF key</tt> directives,
+     * which must start at the very beginning of the line.
+     * <p>
+     * Like the patterns <tt>#DEFINE\s+(\S+)\s*(\S+)\s*$</tt> and
+     * <tt>#UNDEF\s+(\S+)\s*$</tt> this splits off the last character as the
+     * value if a define only has a single word.
+     *
+     * @param line the line to parse.
+     */
+    private void parseDirectives(final String line) {
+        defineKey = null;
+        defineValue = null;
+        undefineKey = null;
+
+        final int limit = line.length();
+        if (line.startsWith(DIRECTIVE_DEFINE)) {
+            final int keyStart = skipWhitespace(line, DIRECTIVE_DEFINE.length(), limit);
+            if (keyStart == DIRECTIVE_DEFINE.length() || keyStart >= limit) {
+                return;
+            }
+
+            final int keyEnd = skipWord(line, keyStart, limit, false, false);
+            final int valueStart = skipWhitespace(line, keyEnd, limit);
+            if (valueStart >= limit) {
+                if (keyEnd - keyStart > 1) {
+                    defineKey = line.substring(keyStart, keyEnd - 1);
+                    defineValue = line.substring(keyEnd - 1, keyEnd);
+                }
+                return;
+            }
+
+            final int valueEnd = skipWord(line, valueStart, limit, false, false);
+            if (skipWhitespace(line, valueEnd, limit) >= limit) {
+                defineKey = line.substring(keyStart, keyEnd);
+                defineValue = line.substring(valueStart, valueEnd);
+            }
+        } else if (line.startsWith(DIRECTIVE_UNDEFINE)) {
+            final int keyStart = skipWhitespace(line, DIRECTIVE_UNDEFINE.length(), limit);
+            if (keyStart == DIRECTIVE_UNDEFINE.length() || keyStart >= limit) {
+                return;
+            }
+
+            final int keyEnd = skipWord(line, keyStart, limit, false, false);
+            if (skipWhitespace(line, keyEnd, limit) >= limit) {
+                undefineKey = line.substring(keyStart, keyEnd);
+            }
+        }
+    }
+
+    private int parseArgument(final Token token, final String line, final int begin, final int index, final int limit) {
+        final int end = skipWord(line, index, limit, false, true);
+        if (end == index) {
+            return index;
+        }
+        set(token, line, begin, index, end);
+        return skipWhitespace(line, end, limit);
+    }
+
+    private void set(final Token token, final String line, final int begin, final int start, final int end) {
+        values[token.ordinal()] = line.substring(start, end);
+        starts[token.ordinal()] = start - begin;
+        ends[token.ordinal()] = end - begin;
+    }
+
+    private void clear(final Token token) {
+        values[token.ordinal()] = null;
+        starts[token.ordinal()] = -1;
+        ends[token.ordinal()] = -1;
+    }
+
+    private static int skipWord(final String line, int index, final int limit, final boolean stopAtColon, final boolean stopAtComma) {
+        while (index < limit) {
+            final char c = line.charAt(index);
+            if (isWhitespace(c) || (stopAtColon && c == ':') || (stopAtComma && c == ',')) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipWhitespace(final String line, int index, final int limit) {
+        while (index < limit && isWhitespace(line.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Whitespace as matched by <tt>\s</tt> in regular expressions.
+     */
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
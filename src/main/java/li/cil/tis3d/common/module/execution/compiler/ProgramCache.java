@@ -0,0 +1,73 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.module.execution.Program;
+
+import javax.annotation.Nullable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of compiled programs, keyed by their normalized source.
+ * <p>
+ * Programs are only weakly referenced, so they stay cached exactly as long
+ * as some machine state still runs them. Entries of collected programs are
+ * removed on the next access. Used from the server, client and render
+ * threads alike, so all access is synchronized.
+ */
+final class ProgramCache {
+    private static final Map<String, ProgramReference> programs = new HashMap<>();
+    private static final ReferenceQueue<Program> collected = new ReferenceQueue<>();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the program compiled from the specified source, if it is still alive.
+     *
+     * @param source the normalized source of the program.
+     * @return the cached program, or <tt>null</tt>.
+     */
+    @Nullable
+    static synchronized Program get(final String source) {
+        removeCollected();
+        final ProgramReference reference = programs.get(source);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Store the program compiled from the specified source.
+     *
+     * @param source  the normalized source of the program.
+     * @param program the program compiled from the source.
+     */
+    static synchronized void put(final String source, final Program program) {
+        removeCollected();
+        programs.put(source, new ProgramReference(source, program, collected));
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void removeCollected() {
+        Reference<? extends Program> reference;
+        while ((reference = collected.poll()) != null) {
+            final ProgramReference programReference = (ProgramReference)reference;
+            programs.remove(programReference.source, programReference);
+        }
+    }
+
+    private static final class ProgramReference extends WeakReference<Program> {
+        final String source;
+
+        ProgramReference(final String source, final Program program, final ReferenceQueue<Program> queue) {
+            super(program, queue);
+            this.source = source;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ProgramCache() {
+    }
+}
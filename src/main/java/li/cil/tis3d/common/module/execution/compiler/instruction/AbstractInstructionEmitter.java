@@ -2,26 +2,26 @@ package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.ParsedLine;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 import java.util.Map;
-import java.util.regex.Matcher;
 
 /**
  * Base implementation for instruction emitters.
  */
 abstract class AbstractInstructionEmitter implements InstructionEmitter {
-    static void checkExcess(final int lineNumber, final Matcher matcher, final String name) throws ParseException {
-        final int start = matcher.start(name);
+    static void checkExcess(final int lineNumber, final ParsedLine line, final ParsedLine.Token token) throws ParseException {
+        final int start = line.start(token);
         if (start >= 0) {
-            throw new ParseException(Constants.MESSAGE_PARAMETER_OVERFLOW, lineNumber, start, matcher.end());
+            throw new ParseException(Constants.MESSAGE_PARAMETER_OVERFLOW, lineNumber, start, line.end());
         }
     }
 
-    static String checkArg(final int lineNumber, final Matcher matcher, final String name, final String previous) throws ParseException {
-        final String arg = matcher.group(name);
+    static String checkArg(final int lineNumber, final ParsedLine line, final ParsedLine.Token token, final ParsedLine.Token previous) throws ParseException {
+        final String arg = line.get(token);
         if (arg == null) {
-            throw new ParseException(Constants.MESSAGE_PARAMETER_UNDERFLOW, lineNumber, matcher.end(previous) + 1, matcher.end(previous) + 1);
+            throw new ParseException(Constants.MESSAGE_PARAMETER_UNDERFLOW, lineNumber, line.end(previous) + 1, line.end(previous) + 1);
         }
         return arg;
     }
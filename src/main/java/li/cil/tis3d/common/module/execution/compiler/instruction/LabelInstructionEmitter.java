@@ -3,13 +3,13 @@ package li.cil.tis3d.common.module.execution.compiler.instruction;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.ParsedLine;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public final class LabelInstructionEmitter extends AbstractInstructionEmitter {
     private final Function<String, Instruction> constructor;
@@ -19,18 +19,21 @@ public final class LabelInstructionEmitter extends AbstractInstructionEmitter {
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
-        final String label = checkArg(lineNumber, matcher, "arg1", "name");
-        checkExcess(lineNumber, matcher, "arg2");
+    public Instruction compile(final ParsedLine line, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final String label = checkArg(lineNumber, line, ParsedLine.Token.ARG1, ParsedLine.Token.NAME);
+        checkExcess(lineNumber, line, ParsedLine.Token.ARG2);
 
-        validators.add(state -> validateLabel(state, label, matcher, lineNumber));
+        // Remember the position, the line will be reused for the next one.
+        final int start = line.start(ParsedLine.Token.ARG1);
+        final int end = line.end(ParsedLine.Token.ARG1);
+        validators.add(state -> validateLabel(state, label, lineNumber, start, end));
 
         return constructor.apply(label);
     }
 
-    private static void validateLabel(final MachineState state, final String label, final Matcher matcher, final int lineNumber) throws ParseException {
-        if (!state.labels.containsKey(label)) {
-            throw new ParseException(Constants.MESSAGE_LABEL_NOT_FOUND, lineNumber, matcher.start("arg1"), matcher.end("arg1"));
+    private static void validateLabel(final MachineState state, final String label, final int lineNumber, final int start, final int end) throws ParseException {
+        if (!state.program.labels.containsKey(label)) {
+            throw new ParseException(Constants.MESSAGE_LABEL_NOT_FOUND, lineNumber, start, end);
         }
     }
 }
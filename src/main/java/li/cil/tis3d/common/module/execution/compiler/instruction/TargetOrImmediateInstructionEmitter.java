@@ -1,6 +1,7 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.ParsedLine;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.common.module.execution.target.Target;
@@ -8,7 +9,6 @@ import li.cil.tis3d.common.module.execution.target.Target;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public final class TargetOrImmediateInstructionEmitter extends AbstractInstructionEmitter {
     private final Function<Target, Instruction> constructorTarget;
@@ -20,10 +20,10 @@ public final class TargetOrImmediateInstructionEmitter extends AbstractInstructi
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
-        final Object src = checkTargetOrNumber(checkArg(lineNumber, matcher, "arg1", "name"),
-                                               lineNumber, defines, matcher.start("arg1"), matcher.end("arg1"));
-        checkExcess(lineNumber, matcher, "arg2");
+    public Instruction compile(final ParsedLine line, final int lineNumber, final Map<String, String> defines, final List<Validator> validators) throws ParseException {
+        final Object src = checkTargetOrNumber(checkArg(lineNumber, line, ParsedLine.Token.ARG1, ParsedLine.Token.NAME),
+                                               lineNumber, defines, line.start(ParsedLine.Token.ARG1), line.end(ParsedLine.Token.ARG1));
+        checkExcess(lineNumber, line, ParsedLine.Token.ARG2);
 
         if (src instanceof Target) {
             return constructorTarget.apply((Target)src);
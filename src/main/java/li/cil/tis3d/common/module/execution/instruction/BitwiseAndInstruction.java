@@ -1,5 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.target.Target;
@@ -18,6 +19,11 @@ public final class BitwiseAndInstruction extends AbstractInstructionRead {
         state.pc++;
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_AND, source);
+    }
+
     @Override
     public String toString() {
         return NAME + " " + source;
@@ -1,5 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
 
@@ -14,6 +15,11 @@ public final class BitwiseNotInstruction implements Instruction {
         state.pc++;
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_NOT);
+    }
+
     @Override
     public String toString() {
         return NAME;
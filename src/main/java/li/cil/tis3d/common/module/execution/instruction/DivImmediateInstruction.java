@@ -1,6 +1,7 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
 
@@ -22,6 +23,11 @@ public final class DivImmediateInstruction implements Instruction {
         state.pc++;
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_DIV_IMM, value);
+    }
+
     @Override
     public String toString() {
         return DivInstruction.NAME + " " + value;
@@ -1,6 +1,7 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.target.Target;
@@ -23,6 +24,11 @@ public final class DivInstruction extends AbstractInstructionRead {
         state.pc++;
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_DIV, source);
+    }
+
     @Override
     public String toString() {
         return NAME + " " + source;
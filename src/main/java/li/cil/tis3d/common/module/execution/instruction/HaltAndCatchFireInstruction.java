@@ -1,7 +1,9 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.api.machine.HaltAndCatchFireException;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
 
 public final class HaltAndCatchFireInstruction implements Instruction {
     public static final String NAME = "HCF";
@@ -12,6 +14,11 @@ public final class HaltAndCatchFireInstruction implements Instruction {
         throw new HaltAndCatchFireException();
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_HCF);
+    }
+
     @Override
     public String toString() {
         return NAME;
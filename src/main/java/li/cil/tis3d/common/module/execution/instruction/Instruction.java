@@ -1,8 +1,10 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineImpl;
+import li.cil.tis3d.common.module.execution.MachineState;
 
 /**
  * A single instruction that can be executed by the execution module.
@@ -20,6 +22,16 @@ public interface Instruction {
      */
     void step(final Machine machine);
 
+    /**
+     * Lower the instruction into its packed representation as used by
+     * {@link CompiledProgram}. Called after all labels of the program
+     * have been validated, so jump targets may be resolved here.
+     *
+     * @param state the state holding the program this instruction belongs to.
+     * @return the packed instruction.
+     */
+    int lower(final MachineState state);
+
     /**
      * Take action based on pending write operation completion, e.g. to abort other
      * writes when a value should only be readable once.
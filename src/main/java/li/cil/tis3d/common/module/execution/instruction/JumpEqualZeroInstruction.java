@@ -1,5 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.MachineState;
 
 public final class JumpEqualZeroInstruction extends AbstractInstructionJumpConditional {
@@ -14,6 +15,11 @@ public final class JumpEqualZeroInstruction extends AbstractInstructionJumpCondi
         return state.acc == 0;
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_JEZ, state.program.labels.get(label).shortValue());
+    }
+
     @Override
     public String toString() {
         return NAME + " " + label;
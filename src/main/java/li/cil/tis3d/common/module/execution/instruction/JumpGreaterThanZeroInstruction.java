@@ -1,5 +1,6 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.MachineState;
 
 public final class JumpGreaterThanZeroInstruction extends AbstractInstructionJumpConditional {
@@ -14,6 +15,11 @@ public final class JumpGreaterThanZeroInstruction extends AbstractInstructionJum
         return state.acc > 0;
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_JGZ, state.program.labels.get(label).shortValue());
+    }
+
     @Override
     public String toString() {
         return NAME + " " + label;
@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
 
 public final class JumpRelativeImmediateInstruction implements Instruction {
     private final short delta;
@@ -14,6 +16,11 @@ public final class JumpRelativeImmediateInstruction implements Instruction {
         machine.getState().pc += delta;
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_JRO_IMM, delta);
+    }
+
     @Override
     public String toString() {
         return JumpRelativeInstruction.NAME + " " + delta;
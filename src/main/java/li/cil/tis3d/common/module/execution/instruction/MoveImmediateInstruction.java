@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.target.Target;
 import li.cil.tis3d.common.module.execution.target.TargetInterface;
 
@@ -23,6 +25,11 @@ public final class MoveImmediateInstruction extends AbstractInstructionMove {
         }
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_MOV_IMM, value, destination);
+    }
+
     @Override
     public String toString() {
         return MoveInstruction.NAME + " " + value + " " + destination;
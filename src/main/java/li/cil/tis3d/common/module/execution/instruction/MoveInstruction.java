@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
+import li.cil.tis3d.common.module.execution.CompiledProgram;
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.target.Target;
 import li.cil.tis3d.common.module.execution.target.TargetInterface;
 
@@ -32,6 +34,11 @@ public final class MoveInstruction extends AbstractInstructionMove {
         }
     }
 
+    @Override
+    public int lower(final MachineState state) {
+        return CompiledProgram.encode(CompiledProgram.OP_MOV, source, destination);
+    }
+
     @Override
     public String toString() {
         return NAME + " " + source + " " + destination;
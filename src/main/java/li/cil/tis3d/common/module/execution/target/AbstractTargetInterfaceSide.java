@@ -1,58 +1,50 @@
 package li.cil.tis3d.common.module.execution.target;
 
-import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.machine.CachedPipes;
 import li.cil.tis3d.common.module.ExecutionModule;
 import li.cil.tis3d.common.module.execution.Machine;
 
 abstract class AbstractTargetInterfaceSide extends AbstractTargetInterface {
-    private final ExecutionModule module;
-    private final Face face;
+    private final CachedPipes pipes;
 
     protected AbstractTargetInterfaceSide(final Machine machine, final ExecutionModule module, final Face face) {
         super(machine);
-        this.module = module;
-        this.face = face;
+        this.pipes = new CachedPipes(module.getCasing(), face);
     }
 
     // --------------------------------------------------------------------- //
 
     protected final void beginWrite(final Port port, final short value) {
-        getCasing().getSendingPipe(face, port).beginWrite(value);
+        pipes.getSendingPipe(port).beginWrite(value);
     }
 
     protected final void cancelWrite(final Port port) {
-        getCasing().getSendingPipe(face, port).cancelWrite();
+        pipes.getSendingPipe(port).cancelWrite();
     }
 
     protected final boolean isWriting(final Port port) {
-        return getCasing().getSendingPipe(face, port).isWriting();
+        return pipes.getSendingPipe(port).isWriting();
     }
 
     protected final void beginRead(final Port port) {
-        getCasing().getReceivingPipe(face, port).beginRead();
+        pipes.getReceivingPipe(port).beginRead();
     }
 
     protected final void cancelRead(final Port port) {
-        getCasing().getReceivingPipe(face, port).cancelRead();
+        pipes.getReceivingPipe(port).cancelRead();
     }
 
     protected final boolean isReading(final Port port) {
-        return getCasing().getReceivingPipe(face, port).isReading();
+        return pipes.getReceivingPipe(port).isReading();
     }
 
     protected final boolean canTransfer(final Port port) {
-        return getCasing().getReceivingPipe(face, port).canTransfer();
+        return pipes.getReceivingPipe(port).canTransfer();
     }
 
     protected final short read(final Port port) {
-        return getCasing().getReceivingPipe(face, port).read();
-    }
-
-    // --------------------------------------------------------------------- //
-
-    private Casing getCasing() {
-        return module.getCasing();
+        return pipes.getReceivingPipe(port).read();
     }
 }
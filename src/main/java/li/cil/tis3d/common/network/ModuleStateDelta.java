@@ -0,0 +1,108 @@
+package li.cil.tis3d.common.network;
+
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.Nullable;
+
+/**
+ * Binary delta encoding between two snapshots of a module's state.
+ * <p>
+ * A delta consists of the length of the state, followed by any number of runs
+ * of changed bytes, each stored as its offset, its length and the new bytes.
+ * Deltas can only be computed between states of the same length.
+ */
+public final class ModuleStateDelta {
+    /**
+     * The maximum number of bytes in a single run.
+     */
+    private static final int MAX_RUN_LENGTH = 0xFF;
+
+    /**
+     * The size of the header of a run, i.e. its offset and length. Runs of
+     * unchanged bytes shorter than this are included in the surrounding run.
+     */
+    private static final int RUN_HEADER_SIZE = 3;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Write the delta between two states into the specified buffer.
+     * <p>
+     * If no delta can be computed, or it would not be smaller than the current
+     * state itself, nothing is written.
+     *
+     * @param previous the state the receiver already knows.
+     * @param current  the state to send to the receiver.
+     * @param data     the buffer to write the delta to.
+     * @return <tt>true</tt> if the delta was written, <tt>false</tt> otherwise.
+     */
+    public static boolean write(final byte[] previous, final byte[] current, final ByteBuf data) {
+        if (previous.length != current.length) {
+            return false;
+        }
+
+        final int start = data.writerIndex();
+        data.writeShort(current.length);
+
+        int offset = 0;
+        while (offset < current.length) {
+            if (previous[offset] == current[offset]) {
+                offset++;
+                continue;
+            }
+
+            int last = offset;
+            for (int i = offset + 1; i < current.length && i - offset < MAX_RUN_LENGTH; i++) {
+                if (previous[i] != current[i]) {
+                    last = i;
+                } else if (i - last > RUN_HEADER_SIZE) {
+                    break;
+                }
+            }
+
+            final int count = last + 1 - offset;
+            data.writeShort(offset);
+            data.writeByte(count);
+            data.writeBytes(current, offset, count);
+            if (data.writerIndex() - start >= current.length) {
+                data.writerIndex(start);
+                return false;
+            }
+
+            offset = last + 1;
+        }
+
+        return true;
+    }
+
+    /**
+     * Apply a delta read from the specified buffer to a state.
+     *
+     * @param previous the state the delta was computed against.
+     * @param data     the buffer to read the delta from.
+     * @return the new state, or <tt>null</tt> if the delta does not apply.
+     */
+    @Nullable
+    public static byte[] apply(final byte[] previous, final ByteBuf data) {
+        if (data.readUnsignedShort() != previous.length) {
+            return null;
+        }
+
+        final byte[] current = previous.clone();
+        while (data.readableBytes() > 0) {
+            final int offset = data.readUnsignedShort();
+            final int count = data.readUnsignedByte();
+            if (offset + count > current.length || count > data.readableBytes()) {
+                return null;
+            }
+            data.readBytes(current, offset, count);
+        }
+
+        return current;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ModuleStateDelta() {
+    }
+}
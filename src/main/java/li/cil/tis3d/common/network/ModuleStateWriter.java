@@ -0,0 +1,23 @@
+package li.cil.tis3d.common.network;
+
+import io.netty.buffer.ByteBuf;
+import li.cil.tis3d.api.machine.Face;
+
+/**
+ * Serializes the current state of a module for sending it to clients.
+ * <p>
+ * Used with {@link Network#sendModuleState(li.cil.tis3d.api.machine.Casing, Face, ModuleStateWriter, byte)}
+ * for data that changes often and where only the latest value matters, to
+ * serialize it once when the network queues are flushed, instead of each time
+ * it changes. Modules should keep a single instance of their writer around.
+ */
+@FunctionalInterface
+public interface ModuleStateWriter {
+    /**
+     * Write the current state into the specified buffer.
+     *
+     * @param data the buffer to write the state to.
+     * @return <tt>true</tt> if the state should be sent, <tt>false</tt> to skip it.
+     */
+    boolean writeState(final ByteBuf data);
+}
@@ -5,15 +5,21 @@ import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.client.network.handler.*;
 import li.cil.tis3d.common.API;
 import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.TIS3D;
+import li.cil.tis3d.common.block.entity.CasingBlockEntity;
 import li.cil.tis3d.common.network.handler.AbstractMessageHandler;
 import li.cil.tis3d.common.network.handler.CasingDataMessageHandler;
 import li.cil.tis3d.common.network.handler.CodeBookDataMessageHandler;
+import li.cil.tis3d.common.network.handler.PipeActivityHiddenMessageHandler;
 import li.cil.tis3d.common.network.handler.ReadOnlyMemoryModuleDataServerMessageHandler;
 import li.cil.tis3d.common.network.message.*;
+import li.cil.tis3d.common.profiler.FlightRecorderEvents;
+import li.cil.tis3d.common.profiler.NetworkFlushEvent;
+import li.cil.tis3d.common.profiler.TickProfiler;
 import li.cil.tis3d.util.Side;
 import li.cil.tis3d.util.WorldUtils;
 import net.fabricmc.api.EnvType;
@@ -21,7 +27,9 @@ import net.fabricmc.api.Environment;
 import net.fabricmc.fabric.api.network.ClientSidePacketRegistry;
 import net.fabricmc.fabric.api.network.PacketRegistry;
 import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
+import net.fabricmc.fabric.api.server.PlayerStream;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.entity.player.PlayerEntity;
@@ -33,12 +41,14 @@ import net.minecraft.network.packet.c2s.play.CustomPayloadC2SPacket;
 import net.minecraft.network.packet.s2c.play.CustomPayloadS2CPacket;
 import net.minecraft.network.packet.s2c.play.ParticleS2CPacket;
 import net.minecraft.particle.DustParticleEffect;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
 
@@ -49,6 +59,10 @@ import java.util.*;
  * for throttling package throughput to avoid overloading the network when a large
  * number of casings are active and nearby players. Throttling is applied to particle
  * effect emission and module packets where possible.
+ * <p>
+ * Module packets are only sent to players tracking the chunk the casing is in,
+ * and module states are sent to each of these players as a delta to the state
+ * that was last sent to them.
  */
 public final class Network {
     public static final Network INSTANCE = new Network();
@@ -59,6 +73,12 @@ public final class Network {
 
     private final Map<Class<AbstractMessage>, Identifier> messageIdCache = new HashMap<>();
 
+    /**
+     * Connections of players whose clients do not show pipe activity, weakly
+     * referenced so they are dropped when the player disconnects.
+     */
+    private final Set<ServerPlayNetworkHandler> pipeActivityHidden = Collections.newSetFromMap(new WeakHashMap<>());
+
     // --------------------------------------------------------------------- //
 
     @Environment(EnvType.CLIENT)
@@ -68,6 +88,7 @@ public final class Network {
         registerMessage(new CasingLockedStateMessageHandler(), CasingLockedStateMessage.class, Side.CLIENT);
         registerMessage(new CasingInventoryMessageHandler(), CasingInventoryMessage.class, Side.CLIENT);
         registerMessage(new HaltAndCatchFireMessageHandler(), HaltAndCatchFireMessage.class, Side.CLIENT);
+        registerMessage(new PipeActivityMessageHandler(), PipeActivityMessage.class, Side.CLIENT);
         registerMessage(new PipeLockedStateMessageHandler(), PipeLockedStateMessage.class, Side.CLIENT);
         registerMessage(new ReadOnlyMemoryModuleDataClientMessageHandler(), ReadOnlyMemoryModuleDataMessage.class, Side.CLIENT);
     }
@@ -75,6 +96,7 @@ public final class Network {
     public void initServer() {
         registerMessage(new CodeBookDataMessageHandler(), CodeBookDataMessage.class, Side.SERVER);
         registerMessage(new CasingDataMessageHandler(), CasingDataMessage.class, Side.SERVER);
+        registerMessage(new PipeActivityHiddenMessageHandler(), PipeActivityHiddenMessage.class, Side.SERVER);
         registerMessage(new ReadOnlyMemoryModuleDataServerMessageHandler(), ReadOnlyMemoryModuleDataMessage.class, Side.SERVER);
     }
 
@@ -88,6 +110,22 @@ public final class Network {
         getQueueFor(casing).queueData(face, data, type);
     }
 
+    /**
+     * Queue sending the current state of a module, serialized by the specified
+     * writer when the queue is flushed.
+     * <p>
+     * Queueing the same writer multiple times before a flush does not queue
+     * additional data, the state is only serialized once, as it is when flushing.
+     *
+     * @param casing the casing containing the module.
+     * @param face   the face the module is installed on.
+     * @param writer the writer serializing the module's state.
+     * @param type   the type of the data.
+     */
+    public void sendModuleState(final Casing casing, final Face face, final ModuleStateWriter writer, final byte type) {
+        getQueueFor(casing).queueState(face, writer, type);
+    }
+
     public void sendRedstoneEffect(final World world, final double x, final double y, final double z) {
         final BlockPos position = new BlockPos(x, y, z);
         if (!WorldUtils.isBlockLoaded(world, position)) {
@@ -156,6 +194,69 @@ public final class Network {
         networkHandler.sendPacket(packet);
     }
 
+    private int sendToClients(final AbstractMessage message, final List<ServerPlayerEntity> players) {
+        final Identifier id = getMessageIdentifier(message.getClass());
+        final PacketByteBuf buffer = serializeMessage(message);
+        final CustomPayloadS2CPacket packet = new CustomPayloadS2CPacket(id, buffer);
+
+        int sent = 0;
+        for (final ServerPlayerEntity player : players) {
+            player.networkHandler.sendPacket(packet);
+            if (!player.networkHandler.connection.isLocal()) {
+                sent++;
+            }
+        }
+
+        return sent;
+    }
+
+    /**
+     * Send pipe activity to clients near the specified location, except for
+     * those that told us they do not show it, see {@link #hidePipeActivity}.
+     *
+     * @param message the pipe activity to send.
+     * @param world   the world the multi-block is in.
+     * @param pos     the position of the controller.
+     * @return the number of non-local players the message was sent to.
+     */
+    public int sendPipeActivity(final PipeActivityMessage message, final World world, final BlockPos pos) {
+        if (world.getPlayers().isEmpty()) {
+            return 0;
+        }
+
+        final Identifier id = getMessageIdentifier(message.getClass());
+        final PacketByteBuf buffer = serializeMessage(message);
+        final CustomPayloadS2CPacket packet = new CustomPayloadS2CPacket(id, buffer);
+
+        final int rangeSq = RANGE_MEDIUM * RANGE_MEDIUM;
+        int sent = 0;
+        for (final PlayerEntity player : world.getPlayers()) {
+            if (player instanceof ServerPlayerEntity) {
+                final ServerPlayerEntity networkedPlayer = (ServerPlayerEntity)player;
+                if (player.squaredDistanceTo(Vec3d.of(pos)) < rangeSq && !pipeActivityHidden.contains(networkedPlayer.networkHandler)) {
+                    networkedPlayer.networkHandler.sendPacket(packet);
+                    if (!networkedPlayer.networkHandler.connection.isLocal()) {
+                        sent++;
+                    }
+                }
+            }
+        }
+
+        TickProfiler.INSTANCE.recordPipeActivity(sent);
+
+        return sent;
+    }
+
+    /**
+     * Stop sending pipe activity to the specified player, because their
+     * client does not show it. Lasts until the player disconnects.
+     *
+     * @param player the player to stop sending pipe activity to.
+     */
+    public void hidePipeActivity(final ServerPlayerEntity player) {
+        pipeActivityHidden.add(player.networkHandler);
+    }
+
     private int sendToClientsNearLocation(final Packet<?> packet, final World world, final BlockPos pos, final int range) {
         final int rangeSq = range * range;
         int sent = 0;
@@ -219,6 +320,7 @@ public final class Network {
     public void serverTick() {
         flushCasingQueues(Side.SERVER);
         flushParticleQueue();
+        sweepStateSnapshots();
     }
 
     public void clientTick() {
@@ -248,6 +350,7 @@ public final class Network {
 
         particlesSent = 0;
         particleQueue.forEach(Position::sendMessage);
+        TickProfiler.INSTANCE.recordInfraredParticles(particlesSent);
 
         if (particlesSent > Settings.maxParticlesPerTick) {
             final int throttle = (int)Math.ceil(particlesSent / (float)Settings.maxParticlesPerTick);
@@ -358,6 +461,282 @@ public final class Network {
         }
     }
 
+    // --------------------------------------------------------------------- //
+    // Module data interest management
+
+    /**
+     * Interval in ticks after which a module state is sent in full again
+     * instead of as a delta, to recover clients that lost their base state
+     * in ways the server cannot tell, independent of how often it changes.
+     */
+    private static final int STATE_KEYFRAME_INTERVAL = 20;
+
+    /**
+     * Interval in ticks in which snapshots of players no longer tracking a
+     * casing, and of casings no longer present, are removed.
+     */
+    private static final int STATE_SWEEP_INTERVAL = 20;
+
+    private static final List<ServerPlayerEntity> interestedPlayers = new ArrayList<>();
+    private static final Map<Casing, CasingStateSnapshots> stateSnapshots = new HashMap<>();
+    private static int ticksUntilSweep = STATE_SWEEP_INTERVAL;
+
+    /**
+     * Forget the module states sent to players for the specified casing, so
+     * that they get the full states next.
+     * <p>
+     * Called when the full data of the casing is sent to clients, e.g. when a
+     * player starts tracking its chunk, which replaces the modules on the
+     * client side, and with them the base states for deltas.
+     *
+     * @param casing the casing to forget the sent module states for.
+     */
+    public void resetModuleStates(final Casing casing) {
+        stateSnapshots.remove(casing);
+    }
+
+    /**
+     * Send collected casing data to all players tracking the casing.
+     * <p>
+     * Module states in the data are sent to each player as the delta to the
+     * state last sent to that player, and not at all if they did not change.
+     *
+     * @param casing   the casing the data belongs to.
+     * @param data     the collected data, with module states in full.
+     * @param hasState whether the data may contain module states.
+     * @return the number of non-local players the data was sent to.
+     */
+    private static int sendToInterestedClients(final Casing casing, final ByteBuf data, final boolean hasState) {
+        collectInterestedPlayers(casing, interestedPlayers);
+        try {
+            if (interestedPlayers.isEmpty()) {
+                stateSnapshots.remove(casing);
+                return 0;
+            }
+
+            final CasingStateSnapshots snapshots = hasState
+                ? stateSnapshots.computeIfAbsent(casing, c -> new CasingStateSnapshots())
+                : stateSnapshots.get(casing);
+            if (snapshots == null) {
+                return Network.INSTANCE.sendToClients(new CasingDataMessage(casing, data), interestedPlayers);
+            }
+
+            snapshots.retainPlayers(interestedPlayers);
+            if (!hasState) {
+                // Other data may change the module state on the client side, so
+                // make sure the next state is sent, even if it didn't change.
+                snapshots.invalidateModules(data);
+                return Network.INSTANCE.sendToClients(new CasingDataMessage(casing, data), interestedPlayers);
+            }
+
+            int sent = 0;
+            for (final ServerPlayerEntity player : interestedPlayers) {
+                final ByteBuf playerData = Unpooled.buffer();
+                snapshots.writeData(casing, player, data, playerData);
+                if (playerData.readableBytes() > 0) {
+                    sent += Network.INSTANCE.sendToClients(new CasingDataMessage(casing, playerData), Collections.singletonList(player));
+                }
+            }
+            return sent;
+        } finally {
+            interestedPlayers.clear();
+        }
+    }
+
+    /**
+     * Collect all players tracking the chunk the specified casing is in and
+     * close enough to see what's going on.
+     *
+     * @param casing  the casing to get the interested players for.
+     * @param players the list to add the interested players to.
+     */
+    private static void collectInterestedPlayers(final Casing casing, final List<ServerPlayerEntity> players) {
+        final Vec3d position = Vec3d.of(casing.getPosition());
+        final int rangeSq = RANGE_HIGH * RANGE_HIGH;
+        PlayerStream.watching(casing.getCasingWorld(), casing.getPosition()).forEach(player -> {
+            if (player instanceof ServerPlayerEntity && player.squaredDistanceTo(position) < rangeSq) {
+                players.add((ServerPlayerEntity)player);
+            }
+        });
+    }
+
+    /**
+     * Periodically remove snapshots of players that stopped tracking a casing
+     * without any data being sent for it since, and of casings that are gone.
+     */
+    private static void sweepStateSnapshots() {
+        if (--ticksUntilSweep > 0) {
+            return;
+        }
+        ticksUntilSweep = STATE_SWEEP_INTERVAL;
+
+        final Iterator<Map.Entry<Casing, CasingStateSnapshots>> iterator = stateSnapshots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Casing, CasingStateSnapshots> entry = iterator.next();
+            final Casing casing = entry.getKey();
+            final World world = casing.getCasingWorld();
+            if (!WorldUtils.isBlockLoaded(world, casing.getPosition())) {
+                iterator.remove();
+                continue;
+            }
+
+            final BlockEntity blockEntity = world.getBlockEntity(casing.getPosition());
+            if (!(blockEntity instanceof CasingBlockEntity) || ((CasingBlockEntity)blockEntity).getCasing() != casing) {
+                iterator.remove();
+                continue;
+            }
+
+            collectInterestedPlayers(casing, interestedPlayers);
+            entry.getValue().retainPlayers(interestedPlayers);
+            interestedPlayers.clear();
+            if (entry.getValue().isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * The module states last sent to each player interested in a single casing.
+     */
+    private static final class CasingStateSnapshots {
+        private final Map<ServerPlayerEntity, Map<Integer, StateSnapshot>> playerSnapshots = new HashMap<>();
+
+        private boolean isEmpty() {
+            return playerSnapshots.isEmpty();
+        }
+
+        /**
+         * Forget the states sent to players not in the specified list, so that
+         * they get the full state if they become interested again.
+         *
+         * @param players the players currently interested in the casing.
+         */
+        private void retainPlayers(final List<ServerPlayerEntity> players) {
+            playerSnapshots.keySet().retainAll(players);
+        }
+
+        /**
+         * Mark the states of all modules with data in the specified buffer as
+         * possibly out of sync on the client.
+         *
+         * @param data the collected casing data.
+         */
+        private void invalidateModules(final ByteBuf data) {
+            final ByteBuf input = data.duplicate();
+            while (input.readableBytes() > 0) {
+                final int face = input.readByte();
+                input.skipBytes(input.readShort());
+                for (final Map<Integer, StateSnapshot> snapshots : playerSnapshots.values()) {
+                    invalidateModule(snapshots, face);
+                }
+            }
+        }
+
+        /**
+         * Write the collected casing data for the specified player, replacing
+         * full module states with deltas where possible.
+         *
+         * @param casing     the casing the data belongs to.
+         * @param player     the player to write the data for.
+         * @param data       the collected data, with module states in full.
+         * @param playerData the buffer to write the data for the player to.
+         */
+        private void writeData(final Casing casing, final ServerPlayerEntity player, final ByteBuf data, final ByteBuf playerData) {
+            final Map<Integer, StateSnapshot> snapshots = playerSnapshots.computeIfAbsent(player, p -> new HashMap<>());
+            final long time = casing.getCasingWorld().getTime();
+            final ByteBuf input = data.duplicate();
+            while (input.readableBytes() > 0) {
+                final int face = input.readByte();
+                final ByteBuf moduleData = input.readSlice(input.readShort());
+                final Module module = casing.getModule(Face.VALUES[face]);
+
+                final int start = playerData.writerIndex();
+                playerData.writeByte(face);
+                playerData.writeShort(0);
+                while (moduleData.readableBytes() > 0) {
+                    final byte kind = moduleData.readByte();
+                    final ByteBuf entry = moduleData.readSlice(moduleData.readShort());
+                    if (kind == CasingDataMessage.DATA_KIND_STATE) {
+                        writeState(snapshots, module, face, entry, playerData, time);
+                    } else {
+                        invalidateModule(snapshots, face);
+                        playerData.writeByte(kind);
+                        playerData.writeShort(entry.readableBytes());
+                        playerData.writeBytes(entry);
+                    }
+                }
+
+                final int length = playerData.writerIndex() - start - 3;
+                if (length > 0) {
+                    playerData.setShort(start + 1, length);
+                } else {
+                    playerData.writerIndex(start);
+                }
+            }
+        }
+
+        private static void writeState(final Map<Integer, StateSnapshot> snapshots, @Nullable final Module module, final int face, final ByteBuf entry, final ByteBuf playerData, final long time) {
+            final byte type = entry.readByte();
+            final byte[] state = new byte[entry.readableBytes()];
+            entry.readBytes(state);
+
+            final int key = (face << 8) | (type & 0xFF);
+            StateSnapshot snapshot = snapshots.get(key);
+            if (snapshot != null && snapshot.module == module) {
+                if (!snapshot.isInvalid && Arrays.equals(snapshot.state, state)) {
+                    return;
+                }
+
+                if (time - snapshot.keyframeTime < STATE_KEYFRAME_INTERVAL) {
+                    final int start = playerData.writerIndex();
+                    playerData.writeByte(CasingDataMessage.DATA_KIND_STATE_DELTA);
+                    playerData.writeShort(0);
+                    playerData.writeByte(type);
+                    if (ModuleStateDelta.write(snapshot.state, state, playerData)) {
+                        playerData.setShort(start + 1, playerData.writerIndex() - start - 3);
+                        snapshot.state = state;
+                        snapshot.isInvalid = false;
+                        return;
+                    }
+                    playerData.writerIndex(start);
+                }
+            }
+
+            playerData.writeByte(CasingDataMessage.DATA_KIND_STATE);
+            playerData.writeShort(state.length + 1);
+            playerData.writeByte(type);
+            playerData.writeBytes(state);
+
+            if (snapshot == null) {
+                snapshot = new StateSnapshot();
+                snapshots.put(key, snapshot);
+            }
+            snapshot.module = module;
+            snapshot.state = state;
+            snapshot.isInvalid = false;
+            snapshot.keyframeTime = time;
+        }
+
+        private static void invalidateModule(final Map<Integer, StateSnapshot> snapshots, final int face) {
+            for (final Map.Entry<Integer, StateSnapshot> entry : snapshots.entrySet()) {
+                if ((entry.getKey() >> 8) == face) {
+                    entry.getValue().isInvalid = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * A module state as last sent to a player.
+     */
+    private static final class StateSnapshot {
+        @Nullable
+        public Module module;
+        public byte[] state;
+        public boolean isInvalid;
+        public long keyframeTime;
+    }
+
     // --------------------------------------------------------------------- //
     // Module data queueing
 
@@ -365,6 +744,11 @@ public final class Network {
     private static final Map<Casing, CasingSendQueue> clientQueues = new HashMap<>();
     private static final Map<Casing, CasingSendQueue> serverQueues = new HashMap<>();
 
+    /**
+     * Size of the data sent to clients in the current flush, server side only.
+     */
+    private static long bytesFlushed;
+
     private static Map<Casing, CasingSendQueue> getQueues(final Side side) {
         if (side == Side.CLIENT) {
             return clientQueues;
@@ -397,9 +781,15 @@ public final class Network {
             return;
         }
 
+        final NetworkFlushEvent event = side == Side.SERVER ? FlightRecorderEvents.beginNetworkFlush() : null;
+
         resetPacketsSent(side);
+        if (side == Side.SERVER) {
+            bytesFlushed = 0;
+        }
 
         final Map<Casing, CasingSendQueue> queues = getQueues(side);
+        final int casings = queues.size();
         queues.forEach(Network::flushCasingQueue);
         clearQueues(queues);
 
@@ -408,6 +798,8 @@ public final class Network {
             final int throttle = (int)Math.min(40, Math.ceil(sent / (float)Settings.maxPacketsPerTick));
             setThrottle(side, throttle);
         }
+
+        FlightRecorderEvents.endNetworkFlush(event, casings, bytesFlushed, sent, getThrottle(side));
     }
 
     private static void flushCasingQueue(final Casing casing, final CasingSendQueue queue) {
@@ -441,6 +833,10 @@ public final class Network {
             moduleQueues[face.ordinal()].queueData(data, type);
         }
 
+        private void queueState(final Face face, final ModuleStateWriter writer, final byte type) {
+            moduleQueues[face.ordinal()].queueState(writer, type);
+        }
+
         /**
          * Flush the casing's queue, sending all queued packets to clients.
          *
@@ -450,16 +846,17 @@ public final class Network {
             final World world = casing.getCasingWorld();
             final Side side = world.isClient ? Side.CLIENT : Side.SERVER;
             final ByteBuf data = Unpooled.buffer();
-            collectData(data);
+            final boolean hasState = collectData(data);
             if (data.readableBytes() > 0) {
-                final CasingDataMessage message = new CasingDataMessage(casing, data);
                 final boolean didSend;
                 if (side == Side.CLIENT) {
                     //noinspection MethodCallSideOnly Guarded by == Side.CLIENT check.
-                    Network.INSTANCE.sendToServer(message);
+                    Network.INSTANCE.sendToServer(new CasingDataMessage(casing, data));
                     didSend = true;
                 } else {
-                    didSend = Network.INSTANCE.sendToClientsNearLocation(message, casing.getCasingWorld(), casing.getPosition(), Network.RANGE_HIGH) > 0;
+                    TickProfiler.INSTANCE.recordNetworkData(data.readableBytes());
+                    bytesFlushed += data.readableBytes();
+                    didSend = sendToInterestedClients(casing, data, hasState) > 0;
                 }
                 if (didSend) {
                     incrementPacketsSent(side);
@@ -467,15 +864,28 @@ public final class Network {
             }
         }
 
-        private void collectData(final ByteBuf data) {
+        /**
+         * Write the data queued for all modules into the specified buffer.
+         *
+         * @param data the buffer to write the collected data to.
+         * @return <tt>true</tt> if the data may contain module states.
+         */
+        private boolean collectData(final ByteBuf data) {
+            boolean hasState = false;
             for (int i = 0; i < moduleQueues.length; i++) {
-                final ByteBuf moduleData = moduleQueues[i].collectData();
-                if (moduleData.readableBytes() > 0) {
-                    data.writeByte(i);
-                    data.writeShort(moduleData.readableBytes());
-                    data.writeBytes(moduleData);
+                hasState |= moduleQueues[i].hasQueuedState();
+                // Write module data directly, filling in the length after.
+                final int start = data.writerIndex();
+                data.writeByte(i);
+                data.writeShort(0);
+                final int length = moduleQueues[i].collectData(data);
+                if (length > 0) {
+                    data.setShort(start + 1, length);
+                } else {
+                    data.writerIndex(start);
                 }
             }
+            return hasState;
         }
     }
 
@@ -485,6 +895,17 @@ public final class Network {
     private static final class ModuleSendQueue {
         private final List<QueueEntry> sendQueue = new ArrayList<>();
         private final BitSet sentTypes = new BitSet(0xFF);
+        private final List<QueueEntryState> statePool = new ArrayList<>();
+        private boolean hasQueuedState;
+
+        /**
+         * Whether any module states were queued since the last collect.
+         *
+         * @return <tt>true</tt> if states were queued, <tt>false</tt> otherwise.
+         */
+        private boolean hasQueuedState() {
+            return hasQueuedState;
+        }
 
         /**
          * Enqueue the specified data packet.
@@ -507,11 +928,40 @@ public final class Network {
         }
 
         /**
-         * Collect all data in a tag list and clear the queue.
+         * Enqueue the latest state provided by the specified writer.
+         * <p>
+         * If the writer is already queued with the same type it is only moved
+         * to the end of the queue, to keep the order relative to other data.
+         *
+         * @param writer the writer providing the state to enqueue.
+         * @param type   the type of the data.
+         */
+        private void queueState(final ModuleStateWriter writer, final byte type) {
+            hasQueuedState = true;
+            for (int i = sendQueue.size() - 1; i >= 0; i--) {
+                final QueueEntry entry = sendQueue.get(i);
+                if (entry instanceof QueueEntryState && ((QueueEntryState)entry).writer == writer && entry.type == type) {
+                    if (i < sendQueue.size() - 1) {
+                        sendQueue.remove(i);
+                        sendQueue.add(entry);
+                    }
+                    return;
+                }
+            }
+
+            final QueueEntryState entry = statePool.isEmpty() ? new QueueEntryState() : statePool.remove(statePool.size() - 1);
+            entry.type = type;
+            entry.writer = writer;
+            sendQueue.add(entry);
+        }
+
+        /**
+         * Write all queued data into the specified buffer and clear the queue.
          *
-         * @return the collected data for the module.
+         * @param data the buffer to write the collected data for the module to.
+         * @return the number of bytes written.
          */
-        private ByteBuf collectData() {
+        private int collectData(final ByteBuf data) {
             // Building the list backwards to easily use the last data of
             // any type without having to remove from the queue. However,
             // that could lead to sending different types in the reverse
@@ -519,7 +969,7 @@ public final class Network {
             // actually send (by appending to the queue), and then sending
             // those selected packets -- in reverse again, to restore the
             // original order they were queued in.
-            final ByteBuf data = Unpooled.buffer();
+            final int start = data.writerIndex();
             final int firstToWrite = sendQueue.size();
             for (int i = sendQueue.size() - 1; i >= 0; i--) {
                 final byte type = sendQueue.get(i).type;
@@ -536,17 +986,27 @@ public final class Network {
                 sendQueue.get(i).write(data);
             }
 
+            // Recycle state entries, each is only in the original part once.
+            for (int i = 0; i < firstToWrite; i++) {
+                final QueueEntry entry = sendQueue.get(i);
+                if (entry instanceof QueueEntryState) {
+                    ((QueueEntryState)entry).writer = null;
+                    statePool.add((QueueEntryState)entry);
+                }
+            }
+
             sendQueue.clear();
             sentTypes.clear();
+            hasQueuedState = false;
 
-            return data;
+            return data.writerIndex() - start;
         }
 
         /**
          * Base class for collected data packets.
          */
         private static abstract class QueueEntry {
-            public final byte type;
+            public byte type;
 
             private QueueEntry(final byte type) {
                 this.type = type;
@@ -578,7 +1038,7 @@ public final class Network {
                 try {
                     NbtIo.writeCompressed(this.data, bos);
                     if (data.readableBytes() > 0) {
-                        buffer.writeBoolean(true);
+                        buffer.writeByte(CasingDataMessage.DATA_KIND_NBT);
                         buffer.writeShort(data.readableBytes());
                         buffer.writeBytes(data);
                     }
@@ -602,12 +1062,38 @@ public final class Network {
             @Override
             public void write(final ByteBuf buffer) {
                 if (data.readableBytes() > 0) {
-                    buffer.writeBoolean(false);
+                    buffer.writeByte(CasingDataMessage.DATA_KIND_RAW);
                     buffer.writeShort(data.readableBytes());
                     buffer.writeBytes(data);
                 }
             }
         }
+
+        /**
+         * Queue entry for the latest state of a module, serialized on write.
+         * Sent to players as a delta to the state they last received.
+         */
+        private static final class QueueEntryState extends QueueEntry {
+            public ModuleStateWriter writer;
+
+            private QueueEntryState() {
+                super((byte)0);
+            }
+
+            @Override
+            public void write(final ByteBuf buffer) {
+                final int start = buffer.writerIndex();
+                buffer.writeByte(CasingDataMessage.DATA_KIND_STATE);
+                buffer.writeShort(0);
+                buffer.writeByte(type);
+                final int dataStart = buffer.writerIndex();
+                if (writer != null && writer.writeState(buffer) && buffer.writerIndex() > dataStart) {
+                    buffer.setShort(start + 1, buffer.writerIndex() - dataStart + 1);
+                } else {
+                    buffer.writerIndex(start);
+                }
+            }
+        }
     }
 
     // --------------------------------------------------------------------- //
@@ -2,10 +2,12 @@ package li.cil.tis3d.common.network.handler;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.common.TIS3D;
 import li.cil.tis3d.common.block.entity.CasingBlockEntity;
+import li.cil.tis3d.common.network.ModuleStateDelta;
 import li.cil.tis3d.common.network.message.CasingDataMessage;
 import net.fabricmc.fabric.api.network.PacketContext;
 import net.minecraft.block.entity.BlockEntity;
@@ -13,8 +15,18 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtIo;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public final class CasingDataMessageHandler extends AbstractMessageHandlerWithLocation<CasingDataMessage> {
+    /**
+     * The last state received per module and type, the base for deltas.
+     */
+    private final Map<Module, Map<Byte, byte[]>> lastStates = new WeakHashMap<>();
+
+    // --------------------------------------------------------------------- //
+
     @Override
     protected void onMessageSynchronized(final CasingDataMessage message, final PacketContext context) {
         final BlockEntity blockEntity = getBlockEntity(message, context);
@@ -28,23 +40,66 @@ public final class CasingDataMessageHandler extends AbstractMessageHandlerWithLo
             final Module module = casing.getModule(Face.VALUES[data.readByte()]);
             final ByteBuf moduleData = data.readBytes(data.readShort());
             while (moduleData.readableBytes() > 0) {
-                final boolean isNbt = moduleData.readBoolean();
+                final byte kind = moduleData.readByte();
                 final int size = moduleData.readShort();
                 final ByteBuf packet = moduleData.readBytes(size);
                 if (module != null) {
-                    if (isNbt) {
-                        try {
-                            final ByteBufInputStream bis = new ByteBufInputStream(packet);
-                            final CompoundTag nbt = NbtIo.readCompressed(bis);
-                            module.onData(nbt);
-                        } catch (final IOException e) {
-                            TIS3D.getLog().warn("Invalid packet received.", e);
-                        }
-                    } else {
-                        module.onData(packet);
+                    switch (kind) {
+                        case CasingDataMessage.DATA_KIND_RAW:
+                            module.onData(packet);
+                            break;
+                        case CasingDataMessage.DATA_KIND_NBT:
+                            try {
+                                final ByteBufInputStream bis = new ByteBufInputStream(packet);
+                                final CompoundTag nbt = NbtIo.readCompressed(bis);
+                                module.onData(nbt);
+                            } catch (final IOException e) {
+                                TIS3D.getLog().warn("Invalid packet received.", e);
+                            }
+                            break;
+                        case CasingDataMessage.DATA_KIND_STATE:
+                            onState(module, packet);
+                            break;
+                        case CasingDataMessage.DATA_KIND_STATE_DELTA:
+                            onStateDelta(module, packet);
+                            break;
+                        default:
+                            TIS3D.getLog().warn("Invalid packet received.");
+                            break;
                     }
                 }
             }
         }
     }
+
+    // --------------------------------------------------------------------- //
+
+    private void onState(final Module module, final ByteBuf packet) {
+        final byte type = packet.readByte();
+        final byte[] state = new byte[packet.readableBytes()];
+        packet.readBytes(state);
+        lastStates.computeIfAbsent(module, m -> new HashMap<>()).put(type, state);
+        module.onData(Unpooled.wrappedBuffer(state));
+    }
+
+    private void onStateDelta(final Module module, final ByteBuf packet) {
+        final byte type = packet.readByte();
+        final Map<Byte, byte[]> states = lastStates.get(module);
+        final byte[] previous = states != null ? states.get(type) : null;
+        if (previous == null) {
+            // Module was recreated since we got the base state. The server
+            // sends the full state after sending us the casing's data, and
+            // periodically in any case, so skip until then.
+            return;
+        }
+
+        final byte[] state = ModuleStateDelta.apply(previous, packet);
+        if (state == null) {
+            TIS3D.getLog().warn("Invalid packet received.");
+            return;
+        }
+
+        states.put(type, state);
+        module.onData(Unpooled.wrappedBuffer(state));
+    }
 }
@@ -0,0 +1,17 @@
+package li.cil.tis3d.common.network.handler;
+
+import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.network.message.PipeActivityHiddenMessage;
+import net.fabricmc.fabric.api.network.PacketContext;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+public final class PipeActivityHiddenMessageHandler extends AbstractMessageHandler<PipeActivityHiddenMessage> {
+    @Override
+    protected void onMessageSynchronized(final PipeActivityHiddenMessage message, final PacketContext context) {
+        final PlayerEntity player = context.getPlayer();
+        if (player instanceof ServerPlayerEntity) {
+            Network.INSTANCE.hidePipeActivity((ServerPlayerEntity)player);
+        }
+    }
+}
@@ -4,6 +4,29 @@ import io.netty.buffer.ByteBuf;
 import li.cil.tis3d.api.machine.Casing;
 
 public final class CasingDataMessage extends AbstractMessageWithLocation {
+    /**
+     * Raw data passed to {@link li.cil.tis3d.api.module.Module#onData(ByteBuf)}.
+     */
+    public static final byte DATA_KIND_RAW = 0;
+
+    /**
+     * Compressed NBT data passed to {@link li.cil.tis3d.api.module.Module#onData(net.minecraft.nbt.CompoundTag)}.
+     */
+    public static final byte DATA_KIND_NBT = 1;
+
+    /**
+     * The full state of a module, prefixed with its type. Remembered by the
+     * receiver as the base for following deltas of the same type.
+     */
+    public static final byte DATA_KIND_STATE = 2;
+
+    /**
+     * The delta to the last state of the same type, prefixed with the type.
+     *
+     * @see li.cil.tis3d.common.network.ModuleStateDelta
+     */
+    public static final byte DATA_KIND_STATE_DELTA = 3;
+
     private ByteBuf data;
 
     public CasingDataMessage(final Casing casing, final ByteBuf data) {
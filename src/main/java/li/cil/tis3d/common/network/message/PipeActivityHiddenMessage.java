@@ -0,0 +1,17 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Sent by clients that do not show pipe activity when they receive some, so
+ * the server stops sending it to them for the rest of the connection.
+ */
+public final class PipeActivityHiddenMessage extends AbstractMessage {
+    @Override
+    public void fromBytes(final ByteBuf buf) {
+    }
+
+    @Override
+    public void toBytes(final ByteBuf buf) {
+    }
+}
@@ -0,0 +1,76 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Which pipes of a multi-block transferred values since the last message,
+ * sent by the controller at most once per tick. Clients show the transfers
+ * themselves, so the size of this only depends on the number of casings.
+ * <p>
+ * Only the first <tt>count</tt> hosts and masks are sent. Messages are
+ * serialized when sent, so the arrays may be reused afterwards.
+ */
+public final class PipeActivityMessage extends AbstractMessageWithLocation {
+    private BlockPos[] hosts;
+    private int[] masks;
+    private int count;
+
+    public PipeActivityMessage(final World world, final BlockPos controller, final BlockPos[] hosts, final int[] masks, final int count) {
+        super(world, controller);
+        this.hosts = hosts;
+        this.masks = masks;
+        this.count = count;
+    }
+
+    @SuppressWarnings("unused") // For deserialization.
+    public PipeActivityMessage() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    public int getHostCount() {
+        return count;
+    }
+
+    public BlockPos getHost(final int index) {
+        return hosts[index];
+    }
+
+    public int getMask(final int index) {
+        return masks[index];
+    }
+
+    // --------------------------------------------------------------------- //
+    // AbstractMessage
+
+    // There are 24 pipes per host, so the mask fits into three bytes.
+
+    @Override
+    public void fromBytes(final ByteBuf buf) {
+        super.fromBytes(buf);
+
+        final PacketByteBuf buffer = new PacketByteBuf(buf);
+        count = buffer.readVarInt();
+        hosts = new BlockPos[count];
+        masks = new int[count];
+        for (int i = 0; i < count; i++) {
+            hosts[i] = buffer.readBlockPos();
+            masks[i] = buffer.readUnsignedMedium();
+        }
+    }
+
+    @Override
+    public void toBytes(final ByteBuf buf) {
+        super.toBytes(buf);
+
+        final PacketByteBuf buffer = new PacketByteBuf(buf);
+        buffer.writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.writeBlockPos(hosts[i]);
+            buffer.writeMedium(masks[i]);
+        }
+    }
+}
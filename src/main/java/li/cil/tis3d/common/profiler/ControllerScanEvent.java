@@ -0,0 +1,29 @@
+package li.cil.tis3d.common.profiler;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for a controller scanning or updating its
+ * multi-block, see {@link FlightRecorderEvents}.
+ */
+@Name("li.cil.tis3d.ControllerScan")
+@Label("Controller Scan")
+@Description("A TIS-3D controller scanning or updating its multi-block")
+@Category("TIS-3D")
+@StackTrace(false)
+@Enabled(false)
+public final class ControllerScanEvent extends Event {
+    @Label("Position")
+    String position;
+
+    @Label("Incremental")
+    @Description("Whether only changed parts of the multi-block were scanned")
+    boolean incremental;
+
+    @Label("Casings")
+    int casings;
+
+    @Label("State")
+    @Description("The state of the controller after the scan")
+    String state;
+}
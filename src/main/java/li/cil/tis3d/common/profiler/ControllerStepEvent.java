@@ -0,0 +1,23 @@
+package li.cil.tis3d.common.profiler;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for a batch of steps run by a controller, see {@link FlightRecorderEvents}.
+ */
+@Name("li.cil.tis3d.ControllerStep")
+@Label("Controller Step")
+@Description("A batch of steps run by a TIS-3D controller")
+@Category("TIS-3D")
+@StackTrace(false)
+@Enabled(false)
+public final class ControllerStepEvent extends Event {
+    @Label("Position")
+    String position;
+
+    @Label("Steps")
+    int steps;
+
+    @Label("Casings")
+    int casings;
+}
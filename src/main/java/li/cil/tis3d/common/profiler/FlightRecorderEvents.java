@@ -0,0 +1,162 @@
+package li.cil.tis3d.common.profiler;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+
+/**
+ * Emits Java Flight Recorder events for controller steps and scans, network
+ * flushes and infrared packets.
+ * <p>
+ * The events are disabled by default. Enable them with the <tt>tis3d.jfc</tt>
+ * settings in the root of the mod jar, see the comment in there, or by
+ * enabling the <tt>li.cil.tis3d.*</tt> events in a custom profile.
+ * Events are only created while a recording has them enabled, otherwise the
+ * <tt>begin</tt> methods return <tt>null</tt>, so disabled events only cost
+ * checking their type.
+ * <p>
+ * Not all Java 8 runtimes come with the flight recorder API, notably the one
+ * bundled with the launcher. Event classes must therefore only ever be used
+ * through the methods here, which do nothing if the API is missing; the
+ * events returned by the <tt>begin</tt> methods are <tt>null</tt> then.
+ */
+public final class FlightRecorderEvents {
+    /**
+     * Whether the flight recorder API is present in this runtime.
+     */
+    private static final boolean IS_AVAILABLE = isAvailable();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Register all events with the flight recorder, so they show up in
+     * recordings and settings before they occur for the first time.
+     */
+    public static void register() {
+        if (IS_AVAILABLE) {
+            FlightRecorder.register(ControllerStepEvent.class);
+            FlightRecorder.register(ControllerScanEvent.class);
+            FlightRecorder.register(NetworkFlushEvent.class);
+            FlightRecorder.register(InfraredPacketEvent.class);
+        }
+    }
+
+    @Nullable
+    public static ControllerStepEvent beginControllerStep() {
+        if (!IS_AVAILABLE || !EventTypes.CONTROLLER_STEP.isEnabled()) {
+            return null;
+        }
+        final ControllerStepEvent event = new ControllerStepEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endControllerStep(@Nullable final ControllerStepEvent event, final BlockEntity controller, final int steps, final int casings) {
+        if (event != null && event.shouldCommit()) {
+            event.position = TickProfiler.getName(controller);
+            event.steps = steps;
+            event.casings = casings;
+            event.commit();
+        }
+    }
+
+    @Nullable
+    public static ControllerScanEvent beginScan() {
+        if (!IS_AVAILABLE || !EventTypes.CONTROLLER_SCAN.isEnabled()) {
+            return null;
+        }
+        final ControllerScanEvent event = new ControllerScanEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endScan(@Nullable final ControllerScanEvent event, final BlockEntity controller, final boolean incremental, final int casings, final Enum<?> state) {
+        if (event != null && event.shouldCommit()) {
+            event.position = TickProfiler.getName(controller);
+            event.incremental = incremental;
+            event.casings = casings;
+            event.state = state.name();
+            event.commit();
+        }
+    }
+
+    @Nullable
+    public static NetworkFlushEvent beginNetworkFlush() {
+        if (!IS_AVAILABLE || !EventTypes.NETWORK_FLUSH.isEnabled()) {
+            return null;
+        }
+        final NetworkFlushEvent event = new NetworkFlushEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endNetworkFlush(@Nullable final NetworkFlushEvent event, final int casings, final long bytes, final int messages, final int throttle) {
+        if (event != null && event.shouldCommit()) {
+            event.casings = casings;
+            event.bytes = bytes;
+            event.messages = messages;
+            event.throttle = throttle;
+            event.commit();
+        }
+    }
+
+    /**
+     * Start tracking the lifetime of an infrared packet. Unlike other events
+     * this is kept across ticks, until {@link #endInfraredPacket}.
+     *
+     * @return the event, if the flight recorder API is available and the event enabled.
+     */
+    @Nullable
+    public static InfraredPacketEvent beginInfraredPacket() {
+        if (!IS_AVAILABLE || !EventTypes.INFRARED_PACKET.isEnabled()) {
+            return null;
+        }
+        final InfraredPacketEvent event = new InfraredPacketEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void redirectInfraredPacket(@Nullable final InfraredPacketEvent event) {
+        if (event != null) {
+            event.redirects++;
+        }
+    }
+
+    public static void endInfraredPacket(@Nullable final InfraredPacketEvent event, final World world, final short value) {
+        if (event != null && event.shouldCommit()) {
+            event.dimension = world.getRegistryKey().getValue().toString();
+            event.value = value;
+            event.commit();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The types of the events, to check whether they are enabled in a running
+     * recording before creating them. Only loaded if the API is available.
+     */
+    private static final class EventTypes {
+        static final EventType CONTROLLER_STEP = EventType.getEventType(ControllerStepEvent.class);
+        static final EventType CONTROLLER_SCAN = EventType.getEventType(ControllerScanEvent.class);
+        static final EventType NETWORK_FLUSH = EventType.getEventType(NetworkFlushEvent.class);
+        static final EventType INFRARED_PACKET = EventType.getEventType(InfraredPacketEvent.class);
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+            return FlightRecorder.isAvailable();
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private FlightRecorderEvents() {
+    }
+}
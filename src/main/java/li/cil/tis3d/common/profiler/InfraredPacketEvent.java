@@ -0,0 +1,24 @@
+package li.cil.tis3d.common.profiler;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for the lifetime of an infrared packet, from being
+ * emitted until it expires or hits something, see {@link FlightRecorderEvents}.
+ */
+@Name("li.cil.tis3d.InfraredPacket")
+@Label("Infrared Packet")
+@Description("Lifetime of a TIS-3D infrared packet")
+@Category("TIS-3D")
+@StackTrace(false)
+@Enabled(false)
+public final class InfraredPacketEvent extends Event {
+    @Label("Dimension")
+    String dimension;
+
+    @Label("Value")
+    short value;
+
+    @Label("Redirects")
+    int redirects;
+}
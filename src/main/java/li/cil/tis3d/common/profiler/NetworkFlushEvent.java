@@ -0,0 +1,30 @@
+package li.cil.tis3d.common.profiler;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for sending the queued data of all casings to
+ * clients, see {@link FlightRecorderEvents}.
+ */
+@Name("li.cil.tis3d.NetworkFlush")
+@Label("Network Flush")
+@Description("TIS-3D sending queued casing data to clients")
+@Category("TIS-3D")
+@StackTrace(false)
+@Enabled(false)
+public final class NetworkFlushEvent extends Event {
+    @Label("Casings")
+    int casings;
+
+    @Label("Data")
+    @DataAmount
+    long bytes;
+
+    @Label("Messages")
+    @Description("Number of casings whose data was sent to at least one player")
+    int messages;
+
+    @Label("Throttle")
+    @Description("Number of ticks to skip before the next flush")
+    int throttle;
+}
@@ -0,0 +1,174 @@
+package li.cil.tis3d.common.profiler;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import li.cil.tis3d.common.API;
+import li.cil.tis3d.common.Constants;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.text.TranslatableText;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * The <tt>/tis3d profile</tt> command, reporting results of the {@link TickProfiler}.
+ * <ul>
+ * <li><tt>start [ticks]</tt> samples detailed timings for a number of ticks.</li>
+ * <li><tt>stop</tt> ends sampling early.</li>
+ * <li><tt>totals</tt> shows the always-on totals since the server started.</li>
+ * <li><tt>dump csv|json</tt> writes the last sampled results to a file in the game directory.</li>
+ * </ul>
+ */
+public final class ProfileCommand {
+    private static final int DEFAULT_WINDOW = 100;
+    private static final int MAX_WINDOW = 20 * 60 * 10;
+
+    /**
+     * Maximum number of entries per category shown in chat.
+     */
+    private static final int MAX_ENTRIES_SHOWN = 5;
+
+    // --------------------------------------------------------------------- //
+
+    public static void register(final CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal(API.MOD_ID)
+            .requires(source -> source.hasPermissionLevel(2))
+            .then(CommandManager.literal("profile")
+                .then(CommandManager.literal("start")
+                    .executes(context -> start(context.getSource(), DEFAULT_WINDOW))
+                    .then(CommandManager.argument("ticks", IntegerArgumentType.integer(1, MAX_WINDOW))
+                        .executes(context -> start(context.getSource(), IntegerArgumentType.getInteger(context, "ticks")))))
+                .then(CommandManager.literal("stop")
+                    .executes(context -> stop(context.getSource())))
+                .then(CommandManager.literal("totals")
+                    .executes(context -> totals(context.getSource())))
+                .then(CommandManager.literal("dump")
+                    .then(CommandManager.literal("csv")
+                        .executes(context -> dump(context.getSource(), false)))
+                    .then(CommandManager.literal("json")
+                        .executes(context -> dump(context.getSource(), true))))));
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static int start(final ServerCommandSource source, final int ticks) {
+        TickProfiler.INSTANCE.start(ticks, report -> sendReport(source, report));
+        source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_STARTED, ticks), true);
+        return 1;
+    }
+
+    private static int stop(final ServerCommandSource source) {
+        final Optional<ProfileReport> report = TickProfiler.INSTANCE.stop();
+        if (!report.isPresent()) {
+            source.sendError(new TranslatableText(Constants.MESSAGE_PROFILE_NOT_PROFILING));
+            return 0;
+        }
+        sendReport(source, report.get());
+        return 1;
+    }
+
+    private static int totals(final ServerCommandSource source) {
+        final ProfileReport report = TickProfiler.INSTANCE.getTotals();
+        source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_TOTALS, report.getTicks()), false);
+        sendTotal(source, report, ProfileReport.Category.CONTROLLER, Constants.MESSAGE_PROFILE_UNIT_STEPS);
+        sendTotal(source, report, ProfileReport.Category.SCAN, Constants.MESSAGE_PROFILE_UNIT_SCANS);
+        sendTotal(source, report, ProfileReport.Category.NETWORK, Constants.MESSAGE_PROFILE_UNIT_BYTES);
+        sendTotal(source, report, ProfileReport.Category.PIPE_ACTIVITY, Constants.MESSAGE_PROFILE_UNIT_MESSAGES);
+        sendTotal(source, report, ProfileReport.Category.INFRARED, Constants.MESSAGE_PROFILE_UNIT_EFFECTS);
+        sendTickTimes(source, report);
+        return 1;
+    }
+
+    private static int dump(final ServerCommandSource source, final boolean json) {
+        final Optional<ProfileReport> report = TickProfiler.INSTANCE.getLastReport();
+        if (!report.isPresent()) {
+            source.sendError(new TranslatableText(Constants.MESSAGE_PROFILE_NOTHING_PROFILED));
+            return 0;
+        }
+
+        final String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss", Locale.ROOT).format(new Date());
+        final File file = new File(FabricLoader.getInstance().getGameDirectory(), API.MOD_ID + "-profile-" + timestamp + (json ? ".json" : ".csv"));
+        try (final Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            if (json) {
+                report.get().writeJson(writer);
+            } else {
+                report.get().writeCsv(writer);
+            }
+        } catch (final IOException e) {
+            source.sendError(new TranslatableText(Constants.MESSAGE_PROFILE_SAVE_FAILED, file.getName(), String.valueOf(e.getMessage())));
+            return 0;
+        }
+
+        source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_SAVED, file.getName()), false);
+        return 1;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void sendReport(final ServerCommandSource source, final ProfileReport report) {
+        source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_REPORT, report.getTicks()), false);
+        sendCategory(source, report, ProfileReport.Category.CONTROLLER, Constants.MESSAGE_PROFILE_UNIT_STEPS);
+        sendCategory(source, report, ProfileReport.Category.MODULE, Constants.MESSAGE_PROFILE_UNIT_STEPS);
+        sendTotal(source, report, ProfileReport.Category.PIPES, Constants.MESSAGE_PROFILE_UNIT_UPDATES);
+        sendCategory(source, report, ProfileReport.Category.SCAN, Constants.MESSAGE_PROFILE_UNIT_SCANS);
+        sendTotal(source, report, ProfileReport.Category.NETWORK, Constants.MESSAGE_PROFILE_UNIT_BYTES);
+        sendTotal(source, report, ProfileReport.Category.PIPE_ACTIVITY, Constants.MESSAGE_PROFILE_UNIT_MESSAGES);
+        sendTotal(source, report, ProfileReport.Category.INFRARED, Constants.MESSAGE_PROFILE_UNIT_EFFECTS);
+        sendTickTimes(source, report);
+    }
+
+    private static void sendCategory(final ServerCommandSource source, final ProfileReport report, final ProfileReport.Category category, final String unit) {
+        sendTotal(source, report, category, unit);
+
+        int shown = 0;
+        for (final ProfileReport.Entry entry : report.getEntries()) {
+            if (entry.category == category && entry.count > 0) {
+                if (shown++ == MAX_ENTRIES_SHOWN) {
+                    source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_MORE), false);
+                    break;
+                }
+                source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_ENTRY, entry.name, format(report, entry, unit)), false);
+            }
+        }
+    }
+
+    private static void sendTotal(final ServerCommandSource source, final ProfileReport report, final ProfileReport.Category category, final String unit) {
+        final ProfileReport.Entry total = report.getTotal(category);
+        final Text name = new TranslatableText(Constants.MESSAGE_PROFILE_CATEGORY + "." + category.name().toLowerCase(Locale.ROOT));
+        source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_TOTAL, name, format(report, total, unit)), false);
+    }
+
+    private static void sendTickTimes(final ServerCommandSource source, final ProfileReport report) {
+        final TickTimeStatistics tickTimes = report.getTickTimes();
+        source.sendFeedback(new TranslatableText(Constants.MESSAGE_PROFILE_TICK_TIMES,
+            String.format(Locale.ROOT, "%.0f", tickTimes.getMean()),
+            String.format(Locale.ROOT, "%.0f", tickTimes.getStandardDeviation()),
+            tickTimes.getMax()), false);
+    }
+
+    private static Text format(final ProfileReport report, final ProfileReport.Entry entry, final String unit) {
+        final String count = String.format(Locale.ROOT, "%.1f", entry.count / (double)report.getTicks());
+        final Text unitName = new TranslatableText(unit);
+        if (entry.nanos == 0) {
+            return new TranslatableText(Constants.MESSAGE_PROFILE_RATE, count, unitName);
+        }
+        final String nanos = String.format(Locale.ROOT, "%.0f", entry.nanos / (double)report.getTicks());
+        return new TranslatableText(Constants.MESSAGE_PROFILE_RATE_TIMED, nanos, count, unitName);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ProfileCommand() {
+    }
+}
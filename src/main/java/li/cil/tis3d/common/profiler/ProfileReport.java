@@ -0,0 +1,158 @@
+package li.cil.tis3d.common.profiler;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Results of a sampling window of the {@link TickProfiler}.
+ * <p>
+ * Each entry is the total time spent on and number of occurrences of one
+ * thing over the whole window. For network data the count is the number of
+ * bytes, for everything else it is the number of steps, scans, messages or
+ * effects.
+ * <p>
+ * Additionally, the report has the distribution of the time spent stepping
+ * controllers and scanning per tick.
+ */
+public final class ProfileReport {
+    public enum Category {
+        CONTROLLER,
+        MODULE,
+        PIPES,
+        SCAN,
+        NETWORK,
+        PIPE_ACTIVITY,
+        INFRARED
+    }
+
+    public static final class Entry {
+        public final Category category;
+        public final String name;
+        public final long nanos;
+        public final long count;
+
+        Entry(final Category category, final String name, final long nanos, final long count) {
+            this.category = category;
+            this.name = name;
+            this.nanos = nanos;
+            this.count = count;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private final long ticks;
+    private final List<Entry> entries;
+    private final TickTimeStatistics tickTimes;
+
+    ProfileReport(final long ticks, final List<Entry> entries, final TickTimeStatistics tickTimes) {
+        this.ticks = ticks;
+        this.tickTimes = new TickTimeStatistics(tickTimes);
+        this.entries = new ArrayList<>(entries);
+        this.entries.sort(Comparator.comparing((Entry entry) -> entry.category).thenComparing(Comparator.comparingLong((Entry entry) -> entry.nanos).reversed()));
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The number of ticks the results were collected over.
+     *
+     * @return the number of ticks.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * The distribution of the time spent per tick.
+     *
+     * @return the tick time statistics.
+     */
+    public TickTimeStatistics getTickTimes() {
+        return tickTimes;
+    }
+
+    /**
+     * All entries, grouped by category, most expensive first.
+     *
+     * @return the entries of the report.
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Sum up the entries of the specified category.
+     *
+     * @param category the category to sum up.
+     * @return the total of the category, named <tt>total</tt>.
+     */
+    public Entry getTotal(final Category category) {
+        long nanos = 0;
+        long count = 0;
+        for (final Entry entry : entries) {
+            if (entry.category == category) {
+                nanos += entry.nanos;
+                count += entry.count;
+            }
+        }
+        return new Entry(category, "total", nanos, count);
+    }
+
+    /**
+     * Write the report as comma separated values, one line per entry,
+     * followed by the tick time statistics in the <tt>nanos</tt> column.
+     *
+     * @param writer the writer to write to.
+     * @throws IOException if writing fails.
+     */
+    public void writeCsv(final Writer writer) throws IOException {
+        writer.write("category,name,nanos,count,nanos_per_tick,count_per_tick\n");
+        for (final Entry entry : entries) {
+            writer.write(String.format(Locale.ROOT, "%s,\"%s\",%d,%d,%.1f,%.3f\n",
+                entry.category.name().toLowerCase(Locale.ROOT), entry.name.replace("\"", "\"\""),
+                entry.nanos, entry.count, entry.nanos / (double)ticks, entry.count / (double)ticks));
+        }
+        writer.write(String.format(Locale.ROOT, "tick_time,\"mean\",%.1f,%d,,\n", tickTimes.getMean(), ticks));
+        writer.write(String.format(Locale.ROOT, "tick_time,\"stddev\",%.1f,%d,,\n", tickTimes.getStandardDeviation(), ticks));
+        writer.write(String.format(Locale.ROOT, "tick_time,\"max\",%d,%d,,\n", tickTimes.getMax(), ticks));
+    }
+
+    /**
+     * Write the report as a JSON object.
+     *
+     * @param writer the writer to write to.
+     */
+    public void writeJson(final Writer writer) {
+        final JsonArray jsonEntries = new JsonArray();
+        for (final Entry entry : entries) {
+            final JsonObject jsonEntry = new JsonObject();
+            jsonEntry.addProperty("category", entry.category.name().toLowerCase(Locale.ROOT));
+            jsonEntry.addProperty("name", entry.name);
+            jsonEntry.addProperty("nanos", entry.nanos);
+            jsonEntry.addProperty("count", entry.count);
+            jsonEntries.add(jsonEntry);
+        }
+
+        final JsonObject jsonTickTimes = new JsonObject();
+        jsonTickTimes.addProperty("mean", tickTimes.getMean());
+        jsonTickTimes.addProperty("stddev", tickTimes.getStandardDeviation());
+        jsonTickTimes.addProperty("max", tickTimes.getMax());
+
+        final JsonObject json = new JsonObject();
+        json.addProperty("ticks", ticks);
+        json.add("tickTimes", jsonTickTimes);
+        json.add("entries", jsonEntries);
+
+        new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+    }
+}
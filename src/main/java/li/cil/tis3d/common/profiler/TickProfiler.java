@@ -0,0 +1,295 @@
+package li.cil.tis3d.common.profiler;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Measures where server time spent on TIS-3D goes.
+ * <p>
+ * A few totals are always counted, which costs next to nothing: time spent
+ * stepping controllers and scanning multi-blocks, and the amount of data,
+ * pipe activity and infrared particles sent to clients, as well as how much
+ * the time spent stepping and scanning varies from tick to tick. While a sampling window is active, this is
+ * additionally broken down by controller, module type and pipes, which adds
+ * a couple of timer reads per module step.
+ * <p>
+ * Controllers may be stepped on worker threads, see the parallel stepper,
+ * so everything recorded while stepping is thread safe. Scans and network
+ * data are only recorded on the server thread.
+ */
+public final class TickProfiler {
+    public static final TickProfiler INSTANCE = new TickProfiler();
+
+    /**
+     * Names used for entries that are not broken down any further.
+     */
+    private static final String NAME_TOTAL = "total";
+    private static final String NAME_BYTES = "bytes";
+    private static final String NAME_MESSAGES = "messages";
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Counter of time spent on and number of occurrences of something.
+     */
+    private static final class Sample {
+        final LongAdder nanos = new LongAdder();
+        final LongAdder count = new LongAdder();
+
+        void add(final long nanos, final long count) {
+            this.nanos.add(nanos);
+            this.count.add(count);
+        }
+
+        ProfileReport.Entry toEntry(final ProfileReport.Category category, final String name) {
+            return new ProfileReport.Entry(category, name, nanos.sum(), count.sum());
+        }
+    }
+
+    // Always on.
+    private final Sample totalSteps = new Sample();
+    private final Sample totalScans = new Sample();
+    private final Sample totalNetwork = new Sample();
+    private final Sample totalPipeActivity = new Sample();
+    private final Sample totalInfrared = new Sample();
+    private final TickTimeStatistics totalTickTimes = new TickTimeStatistics();
+    private final LongAdder tickNanos = new LongAdder();
+    private long totalTicks;
+
+    // Only while sampling.
+    private volatile boolean isSampling;
+    private final Map<BlockEntity, Sample> controllers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Sample> modules = new ConcurrentHashMap<>();
+    private final Map<BlockEntity, Sample> scans = new ConcurrentHashMap<>();
+    private final Sample pipes = new Sample();
+    private final Sample network = new Sample();
+    private final Sample pipeActivity = new Sample();
+    private final Sample infrared = new Sample();
+    private final TickTimeStatistics tickTimes = new TickTimeStatistics();
+    private int windowTicks;
+    private int sampledTicks;
+
+    @Nullable
+    private Consumer<ProfileReport> listener;
+    @Nullable
+    private ProfileReport lastReport;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Whether a sampling window is active, i.e. whether detailed timings
+     * should be recorded. Callers should check this once before measuring.
+     *
+     * @return <tt>true</tt> while sampling.
+     */
+    public boolean isSampling() {
+        return isSampling;
+    }
+
+    /**
+     * Start sampling for the specified number of ticks, replacing any
+     * running sampling window.
+     *
+     * @param ticks    the length of the sampling window in ticks.
+     * @param listener called with the results once the window is over.
+     */
+    public void start(final int ticks, final Consumer<ProfileReport> listener) {
+        clearSamples();
+        this.windowTicks = ticks;
+        this.sampledTicks = 0;
+        this.listener = listener;
+        isSampling = true;
+    }
+
+    /**
+     * Stop sampling early, reporting the results so far.
+     *
+     * @return the results so far, if sampling was active.
+     */
+    public Optional<ProfileReport> stop() {
+        if (!isSampling) {
+            return Optional.empty();
+        }
+        return Optional.of(finish());
+    }
+
+    /**
+     * The results of the last completed sampling window.
+     *
+     * @return the last results, if any.
+     */
+    public Optional<ProfileReport> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    /**
+     * The always-on totals since the server started.
+     *
+     * @return the totals.
+     */
+    public ProfileReport getTotals() {
+        final List<ProfileReport.Entry> entries = new ArrayList<>();
+        entries.add(totalSteps.toEntry(ProfileReport.Category.CONTROLLER, NAME_TOTAL));
+        entries.add(totalScans.toEntry(ProfileReport.Category.SCAN, NAME_TOTAL));
+        entries.add(totalNetwork.toEntry(ProfileReport.Category.NETWORK, NAME_BYTES));
+        entries.add(totalPipeActivity.toEntry(ProfileReport.Category.PIPE_ACTIVITY, NAME_MESSAGES));
+        entries.add(totalInfrared.toEntry(ProfileReport.Category.INFRARED, NAME_TOTAL));
+        return new ProfileReport(Math.max(1, totalTicks), entries, totalTickTimes);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Record a batch of steps run by a controller.
+     *
+     * @param controller the controller that was stepped.
+     * @param steps      the number of steps run.
+     * @param nanos      the time spent running them.
+     */
+    public void recordControllerSteps(final BlockEntity controller, final int steps, final long nanos) {
+        totalSteps.add(nanos, steps);
+        tickNanos.add(nanos);
+        if (isSampling) {
+            controllers.computeIfAbsent(controller, key -> new Sample()).add(nanos, steps);
+        }
+    }
+
+    /**
+     * Record a single step of a module. Only called while sampling.
+     *
+     * @param moduleClass the type of the module.
+     * @param nanos       the time spent stepping it.
+     */
+    public void recordModuleStep(final Class<?> moduleClass, final long nanos) {
+        modules.computeIfAbsent(moduleClass, key -> new Sample()).add(nanos, 1);
+    }
+
+    /**
+     * Record stepping all pipes of a controller once. Only called while sampling.
+     *
+     * @param nanos the time spent stepping the pipes.
+     */
+    public void recordPipeSteps(final long nanos) {
+        pipes.add(nanos, 1);
+    }
+
+    /**
+     * Record a full or incremental scan of a multi-block.
+     *
+     * @param controller the controller that scanned.
+     * @param nanos      the time spent scanning.
+     */
+    public void recordScan(final BlockEntity controller, final long nanos) {
+        totalScans.add(nanos, 1);
+        tickNanos.add(nanos);
+        if (isSampling) {
+            scans.computeIfAbsent(controller, key -> new Sample()).add(nanos, 1);
+        }
+    }
+
+    /**
+     * Record data of a casing being sent to clients.
+     *
+     * @param bytes the size of the data.
+     */
+    public void recordNetworkData(final int bytes) {
+        totalNetwork.add(0, bytes);
+        if (isSampling) {
+            network.add(0, bytes);
+        }
+    }
+
+    /**
+     * Record pipe activity of a multi-block being sent to clients.
+     *
+     * @param messages the number of clients the activity was sent to.
+     */
+    public void recordPipeActivity(final int messages) {
+        totalPipeActivity.add(0, messages);
+        if (isSampling) {
+            pipeActivity.add(0, messages);
+        }
+    }
+
+    /**
+     * Record particle effects of infrared packets being sent to clients.
+     *
+     * @param count the number of effects sent.
+     */
+    public void recordInfraredParticles(final int count) {
+        totalInfrared.add(0, count);
+        if (isSampling) {
+            infrared.add(0, count);
+        }
+    }
+
+    public void serverTick() {
+        totalTicks++;
+
+        final long nanos = tickNanos.sumThenReset();
+        totalTickTimes.add(nanos);
+        if (isSampling) {
+            tickTimes.add(nanos);
+        }
+
+        if (isSampling && ++sampledTicks >= windowTicks) {
+            final Consumer<ProfileReport> listener = this.listener;
+            final ProfileReport report = finish();
+            if (listener != null) {
+                listener.accept(report);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private ProfileReport finish() {
+        isSampling = false;
+        listener = null;
+
+        final List<ProfileReport.Entry> entries = new ArrayList<>();
+        controllers.forEach((controller, sample) -> entries.add(sample.toEntry(ProfileReport.Category.CONTROLLER, getName(controller))));
+        modules.forEach((moduleClass, sample) -> entries.add(sample.toEntry(ProfileReport.Category.MODULE, moduleClass.getSimpleName())));
+        entries.add(pipes.toEntry(ProfileReport.Category.PIPES, NAME_TOTAL));
+        scans.forEach((controller, sample) -> entries.add(sample.toEntry(ProfileReport.Category.SCAN, getName(controller))));
+        entries.add(network.toEntry(ProfileReport.Category.NETWORK, NAME_BYTES));
+        entries.add(pipeActivity.toEntry(ProfileReport.Category.PIPE_ACTIVITY, NAME_MESSAGES));
+        entries.add(infrared.toEntry(ProfileReport.Category.INFRARED, NAME_TOTAL));
+
+        lastReport = new ProfileReport(Math.max(1, sampledTicks), entries, tickTimes);
+        clearSamples();
+        return lastReport;
+    }
+
+    private void clearSamples() {
+        controllers.clear();
+        modules.clear();
+        scans.clear();
+        pipes.nanos.reset();
+        pipes.count.reset();
+        network.nanos.reset();
+        network.count.reset();
+        pipeActivity.nanos.reset();
+        pipeActivity.count.reset();
+        infrared.nanos.reset();
+        infrared.count.reset();
+        tickTimes.clear();
+    }
+
+    static String getName(final BlockEntity blockEntity) {
+        final World world = blockEntity.getWorld();
+        final BlockPos pos = blockEntity.getPos();
+        final String position = pos.getX() + " " + pos.getY() + " " + pos.getZ();
+        return world != null ? world.getRegistryKey().getValue() + " " + position : position;
+    }
+}
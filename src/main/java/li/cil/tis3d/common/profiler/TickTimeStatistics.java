@@ -0,0 +1,73 @@
+package li.cil.tis3d.common.profiler;
+
+/**
+ * Distribution of the time spent on TIS-3D per server tick.
+ * <p>
+ * The mean alone does not show load spikes, e.g. from many controllers
+ * stepping in the same tick, so this also tracks the standard deviation,
+ * computed incrementally using Welford's method, and the slowest tick.
+ */
+public final class TickTimeStatistics {
+    private long ticks;
+    private double mean;
+    private double sumOfSquares;
+    private long max;
+
+    // --------------------------------------------------------------------- //
+
+    TickTimeStatistics() {
+    }
+
+    TickTimeStatistics(final TickTimeStatistics other) {
+        ticks = other.ticks;
+        mean = other.mean;
+        sumOfSquares = other.sumOfSquares;
+        max = other.max;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The average time per tick.
+     *
+     * @return the mean in nanoseconds.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * How much the time per tick varies.
+     *
+     * @return the standard deviation in nanoseconds.
+     */
+    public double getStandardDeviation() {
+        return ticks > 1 ? Math.sqrt(sumOfSquares / (ticks - 1)) : 0;
+    }
+
+    /**
+     * The time of the slowest tick.
+     *
+     * @return the maximum in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    void add(final long nanos) {
+        ticks++;
+        final double delta = nanos - mean;
+        mean += delta / ticks;
+        sumOfSquares += delta * (nanos - mean);
+        max = Math.max(max, nanos);
+    }
+
+    void clear() {
+        ticks = 0;
+        mean = 0;
+        sumOfSquares = 0;
+        max = 0;
+    }
+}